@@ -50,6 +50,109 @@ public class BPTree<K extends Comparable<K>, V> implements BPTreeADT<K, V> {
     }
     
     
+    /**
+     * Builds a tree of keys.get(i) -> values.get(i) bottom-up, as one
+     * linear pass after a sort instead of one descent and possible split
+     * per pair. The pairs are sorted in parallel, stably and from the last
+     * index back, so equal keys end up latest first as repeated inserts
+     * would leave them; then leaves are packed left to right and each
+     * internal level is built from the one below.
+     * 
+     * @param fillFactor share of each node's room to fill, in (0, 1];
+     *        below 1 leaves space for later inserts before nodes split
+     * @return the tree
+     */
+    public static <K extends Comparable<K>, V> BPTree<K, V> bulkLoad(
+        List<K> keys, List<V> values, int branchingFactor, double fillFactor) {
+        if (values.size() < keys.size())
+            throw new IllegalArgumentException("Fewer values than keys");
+        if (!(fillFactor > 0 && fillFactor <= 1))
+            throw new IllegalArgumentException(
+               "Illegal fill factor: " + fillFactor);
+        BPTree<K, V> tree = new BPTree<K, V>(branchingFactor);
+        int n = keys.size();
+        if (n == 0)
+            return tree;
+        
+        // Copies, so every get below is constant time whatever the lists are
+        List<K> keyList = new ArrayList<K>(keys);
+        List<V> valueList = new ArrayList<V>(values);
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++)
+            order[i] = n - 1 - i;
+        Arrays.parallelSort(order, (a, b) -> keyList.get(a).compareTo(keyList.get(b)));
+        
+        // Leaves hold up to branchingFactor - 1 keys before they overflow
+        int perLeaf = Math.max(1, 
+            (int) Math.ceil(fillFactor * (branchingFactor - 1)));
+        int leafCount = nodeCount(n, perLeaf, 1);
+        List<BPTree<K, V>.Node> level = new ArrayList<BPTree<K, V>.Node>(leafCount);
+        // lowest key under each node of the level
+        List<K> lowest = new ArrayList<K>(leafCount);
+        BPTree<K, V>.LeafNode previous = null;
+        int next = 0;
+        for (int l = 0; l < leafCount; l++) {
+            BPTree<K, V>.LeafNode leaf = tree.new LeafNode();
+            int size = share(n, leafCount, l);
+            for (int i = 0; i < size; i++) {
+                int from = order[next++];
+                leaf.keys.add(keyList.get(from));
+                leaf.values.add(valueList.get(from));
+            }
+            leaf.previous = previous;
+            if (previous != null)
+                previous.next = leaf;
+            previous = leaf;
+            level.add(leaf);
+            lowest.add(leaf.keys.get(0));
+        }
+        
+        // Internal nodes hold up to branchingFactor children
+        int perNode = Math.max(2, (int) Math.ceil(fillFactor * branchingFactor));
+        while (level.size() > 1) {
+            int count = nodeCount(level.size(), perNode, 2);
+            List<BPTree<K, V>.Node> parents = new ArrayList<BPTree<K, V>.Node>(count);
+            List<K> parentLowest = new ArrayList<K>(count);
+            int child = 0;
+            for (int p = 0; p < count; p++) {
+                BPTree<K, V>.InternalNode parent = tree.new InternalNode();
+                int children = share(level.size(), count, p);
+                parentLowest.add(lowest.get(child));
+                for (int c = 0; c < children; c++, child++) {
+                    parent.children.add(level.get(child));
+                    // Separator: the lowest key under the child to its right
+                    if (c > 0)
+                        parent.keys.add(lowest.get(child));
+                }
+                parents.add(parent);
+            }
+            level = parents;
+            lowest = parentLowest;
+        }
+        tree.root = level.get(0);
+        return tree;
+    }
+    
+    /**
+     * @return how many nodes to spread items over at most perNode each,
+     *          fewer if that would leave a node with under minimum items
+     */
+    static int nodeCount(int items, int perNode, int minimum) {
+        int count = (items + perNode - 1) / perNode;
+        if (count > 1 && items / count < minimum)
+            count = items / minimum;
+        return Math.max(1, count);
+    }
+    
+    /**
+     * @return items in node index of count when items are spread evenly,
+     *          the first items % count nodes taking one more
+     */
+    static int share(int items, int count, int index) {
+        return items / count + (index < items % count ? 1 : 0);
+    }
+    
+    
     /*
      * (non-Javadoc)
      * @see BPTreeADT#insert(java.lang.Object, java.lang.Object)
@@ -443,6 +546,8 @@ public class BPTree<K extends Comparable<K>, V> implements BPTreeADT<K, V> {
             else if (comparator.equals("==") && 
                 key.compareTo(node.keys.get(index)) == 0)
                 list.add(node.values.get(index));
+            else if (comparator.equals("=="))
+                break;  // keys are sorted, no later key can match
             
             if (++index == node.keys.size()) {
                 node = node.next;
@@ -471,6 +576,9 @@ public class BPTree<K extends Comparable<K>, V> implements BPTreeADT<K, V> {
             else if (comparator.equals("==") &&
                 key.compareTo(node.keys.get(index))== 0)
                 list.add(node.values.get(index));
+            else if (comparator.equals("==") &&
+                key.compareTo(node.keys.get(index)) > 0)
+                break;  // keys are sorted, no earlier key can match
         
             if (--index < 0) {
                 node = node.previous;
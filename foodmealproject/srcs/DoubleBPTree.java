@@ -0,0 +1,537 @@
+package application;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * A B+ tree keyed by primitive doubles, for the nutrient indexes.
+ *
+ * BPTree<Double, V> keeps each key as a boxed Double in an ArrayList and
+ * finds positions by a linear scan with compareTo. Here every node holds
+ * its keys in a double[] and its values or children in a parallel array,
+ * and positions are found by binary search, so an insert allocates
+ * nothing but the occasional node and a search touches one key array per
+ * level.
+ *
+ * The default branching factor makes a node's key array exactly
+ * DEFAULT_CACHE_LINES cache lines: a binary search over it reads at most
+ * one line per step, and the whole array is fetched by the prefetcher as
+ * one run.
+ *
+ * Keys compare as Double.compare does, as they would in a BPTree. Duplicate
+ * keys are kept, and for "<=" and ">=" rangeSearch returns values in the
+ * same order a BPTree given the same inserts would. BPTree's order for
+ * "==" depends on where its leaves happen to split, so no tree with another
+ * branching factor could reproduce it; here it is simply key order.
+ *
+ * @param <V> value type
+ */
+public class DoubleBPTree<V> implements BPTreeADT<Double, V> {
+
+    /** bytes in a cache line on the x86 and ARM cores this runs on */
+    public static final int CACHE_LINE_BYTES = 64;
+
+    /** cache lines spanned by a node's key array at the default fanout */
+    public static final int DEFAULT_CACHE_LINES = 8;
+
+    // object header and length of a double[] with compressed class pointers
+    private static final int ARRAY_HEADER_BYTES = 16;
+
+    /** 62 keys: a 16 byte header plus 496 bytes of keys is 512 bytes */
+    public static final int DEFAULT_BRANCHING_FACTOR = branchingFactorForCacheLines(DEFAULT_CACHE_LINES);
+
+    /** share of each node bulkLoad fills: packed, for indexes mostly read */
+    public static final double DEFAULT_FILL_FACTOR = 1.0;
+
+    // bulkLoad sorts 11 bits at a time, in at most 6 passes
+    private static final int RADIX_BITS = 11;
+    private static final int RADIX_MASK = (1 << RADIX_BITS) - 1;
+
+    // Root of the tree
+    private Node root;
+
+    // Branching factor: a node splits when it reaches this many keys
+    private final int branchingFactor;
+
+    // Number of keys inserted
+    private int size;
+
+    // Separator the last split sent up to the parent
+    private double promoted;
+
+    /**
+     * Creates a tree with DEFAULT_BRANCHING_FACTOR.
+     */
+    public DoubleBPTree() {
+        this(DEFAULT_BRANCHING_FACTOR);
+    }
+
+    /**
+     * @param branchingFactor number of keys at which a node splits, at
+     *          least 3 as for BPTree
+     */
+    public DoubleBPTree(int branchingFactor) {
+        if (branchingFactor <= 2) {
+            throw new IllegalArgumentException(
+               "Illegal branching factor: " + branchingFactor);
+        }
+        this.branchingFactor = branchingFactor;
+    }
+
+    /**
+     * @return the branching factor whose key array fills exactly lines
+     *          cache lines
+     */
+    public static int branchingFactorForCacheLines(int lines) {
+        return (lines * CACHE_LINE_BYTES - ARRAY_HEADER_BYTES) / Double.BYTES;
+    }
+
+    /**
+     * Inserts a key boxed by the caller; see insertDouble.
+     */
+    @Override
+    public void insert(Double key, V value) {
+        insertDouble(key.doubleValue(), value);
+    }
+
+    /**
+     * Inserts key and value, before any values already under an equal key,
+     * without boxing the key. It has a name of its own because an
+     * insert(double, V) overload would make calls such as insert(1.5, 2) on
+     * a DoubleBPTree<Integer> ambiguous.
+     */
+    public void insertDouble(double key, V value) {
+        if (root == null)
+            root = new LeafNode();
+        root.insert(key, value);
+        if (root.isOverflow()) {
+            Node sibling = root.split();
+            InternalNode newRoot = new InternalNode();
+            newRoot.children[0] = root;
+            newRoot.children[1] = sibling;
+            newRoot.keys[0] = promoted;
+            newRoot.size = 1;
+            root = newRoot;
+        }
+        size++;
+    }
+
+    /**
+     * As BPTreeADT.rangeSearch; a null key or an unknown comparator gives
+     * an empty list.
+     */
+    @Override
+    public List<V> rangeSearch(Double key, String comparator) {
+        if (key == null)
+            return new ArrayList<V>();
+        return rangeSearch(key.doubleValue(), comparator);
+    }
+
+    /**
+     * Values whose keys are <=, == or >= key: ">=" and "==" ascending from
+     * key, "<=" descending from key. Among equal keys the value inserted
+     * last comes first, except for "<=", which walks them the other way.
+     *
+     * @param comparator "<=", "==" or ">="; anything else gives an empty list
+     */
+    public List<V> rangeSearch(double key, String comparator) {
+        List<V> list = new ArrayList<V>();
+        if (root == null || comparator == null)
+            return list;
+        switch (comparator) {
+        case ">=":
+            searchRight(key, list, false);
+            break;
+        case "<=":
+            searchLeft(key, list);
+            break;
+        case "==":
+            searchRight(key, list, true);
+            break;
+        default:
+            break;
+        }
+        return list;
+    }
+
+    /**
+     * Adds the values of keys >= key, or == key if equalOnly, from the
+     * first such key on.
+     */
+    @SuppressWarnings("unchecked")
+    private void searchRight(double key, List<V> list, boolean equalOnly) {
+        Node node = root;
+        while (node instanceof DoubleBPTree.InternalNode) {
+            InternalNode internal = (InternalNode) node;
+            node = internal.children[lowerBound(internal.keys, internal.size, key)];
+        }
+        LeafNode leaf = (LeafNode) node;
+        int index = lowerBound(leaf.keys, leaf.size, key);
+        while (leaf != null) {
+            for (; index < leaf.size; index++) {
+                if (equalOnly && Double.compare(leaf.keys[index], key) != 0)
+                    return;
+                list.add((V) leaf.values[index]);
+            }
+            leaf = leaf.next;
+            index = 0;
+        }
+    }
+
+    /**
+     * Adds the values of keys <= key, from the last such key back.
+     */
+    @SuppressWarnings("unchecked")
+    private void searchLeft(double key, List<V> list) {
+        Node node = root;
+        while (node instanceof DoubleBPTree.InternalNode) {
+            InternalNode internal = (InternalNode) node;
+            node = internal.children[upperBound(internal.keys, internal.size, key)];
+        }
+        LeafNode leaf = (LeafNode) node;
+        int index = upperBound(leaf.keys, leaf.size, key) - 1;
+        while (leaf != null) {
+            for (; index >= 0; index--)
+                list.add((V) leaf.values[index]);
+            leaf = leaf.previous;
+            index = leaf != null ? leaf.size - 1 : -1;
+        }
+    }
+
+    /**
+     * @return index of the first of keys[0..size) that is not less than
+     *          key, or size if none
+     */
+    static int lowerBound(double[] keys, int size, double key) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (Double.compare(keys[mid], key) < 0)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * @return index of the first of keys[0..size) that is greater than
+     *          key, or size if none
+     */
+    static int upperBound(double[] keys, int size, double key) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (Double.compare(keys[mid], key) <= 0)
+                lo = mid + 1;
+            else
+                hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * Builds a tree of keys[i] -> values[i] with DEFAULT_BRANCHING_FACTOR
+     * and DEFAULT_FILL_FACTOR; see bulkLoad(double[], V[], int, double).
+     */
+    public static <V> DoubleBPTree<V> bulkLoad(double[] keys, V[] values) {
+        return bulkLoad(keys, values, DEFAULT_BRANCHING_FACTOR, DEFAULT_FILL_FACTOR);
+    }
+
+    /**
+     * Builds a tree of keys[i] -> values[i] bottom-up: sorts the pairs,
+     * packs them into leaves left to right, then builds each internal
+     * level from the one below, so after the sort the build is one linear
+     * pass with no descents and no splits. The tree is the one inserting
+     * the pairs in index order would give, up to node boundaries: every
+     * rangeSearch returns the same values in the same order.
+     *
+     * @param fillFactor share of a node's room to fill, in (0, 1]; below 1
+     *          leaves space for later inserts before nodes split
+     * @throws IllegalArgumentException if values is shorter than keys
+     */
+    public static <V> DoubleBPTree<V> bulkLoad(double[] keys, V[] values, int branchingFactor,
+            double fillFactor) {
+        if (values.length < keys.length)
+            throw new IllegalArgumentException("Fewer values than keys");
+        if (!(fillFactor > 0 && fillFactor <= 1))
+            throw new IllegalArgumentException("Illegal fill factor: " + fillFactor);
+        DoubleBPTree<V> tree = new DoubleBPTree<V>(branchingFactor);
+        int n = keys.length;
+        if (n == 0)
+            return tree;
+        int[] order = sortedOrder(keys);
+
+        // leaves hold up to branchingFactor - 1 keys before they overflow
+        int perLeaf = Math.max(1, (int) Math.ceil(fillFactor * (branchingFactor - 1)));
+        int leafCount = BPTree.nodeCount(n, perLeaf, 1);
+        DoubleBPTree<V>.Node[] level = tree.newNodes(leafCount);
+        double[] lowest = new double[leafCount];
+        DoubleBPTree<V>.LeafNode previous = null;
+        int next = 0;
+        for (int l = 0; l < leafCount; l++) {
+            DoubleBPTree<V>.LeafNode leaf = tree.new LeafNode();
+            leaf.size = BPTree.share(n, leafCount, l);
+            for (int i = 0; i < leaf.size; i++) {
+                int from = order[next++];
+                leaf.keys[i] = keys[from];
+                leaf.values[i] = values[from];
+            }
+            leaf.previous = previous;
+            if (previous != null)
+                previous.next = leaf;
+            previous = leaf;
+            level[l] = leaf;
+            lowest[l] = leaf.keys[0];
+        }
+
+        // internal nodes hold up to branchingFactor children
+        int perNode = Math.max(2, (int) Math.ceil(fillFactor * branchingFactor));
+        while (level.length > 1) {
+            int count = BPTree.nodeCount(level.length, perNode, 2);
+            DoubleBPTree<V>.Node[] parents = tree.newNodes(count);
+            double[] parentLowest = new double[count];
+            int child = 0;
+            for (int p = 0; p < count; p++) {
+                DoubleBPTree<V>.InternalNode parent = tree.new InternalNode();
+                int children = BPTree.share(level.length, count, p);
+                parentLowest[p] = lowest[child];
+                for (int c = 0; c < children; c++, child++) {
+                    parent.children[c] = level[child];
+                    // separator: the lowest key under the child to its right
+                    if (c > 0)
+                        parent.keys[c - 1] = lowest[child];
+                }
+                parent.size = children - 1;
+                parents[p] = parent;
+            }
+            level = parents;
+            lowest = parentLowest;
+        }
+        tree.root = level[0];
+        tree.size = n;
+        return tree;
+    }
+
+    /**
+     * @return indexes of keys in ascending key order, equal keys latest
+     *          index first as repeated inserts would leave them. A stable
+     *          least significant digit radix sort on the key bits, mapped
+     *          so that unsigned order is Double.compare order, starting
+     *          from the indexes reversed: linear in keys, and digits every
+     *          key shares, such as the sign and exponent of keys in one
+     *          range, are skipped.
+     */
+    private static int[] sortedOrder(double[] keys) {
+        int n = keys.length;
+        long[] bits = new long[n];
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            bits[i] = sortable(keys[n - 1 - i]);
+            order[i] = n - 1 - i;
+        }
+        long[] bitsTo = new long[n];
+        int[] orderTo = new int[n];
+        int[] count = new int[1 << RADIX_BITS];
+        for (int shift = 0; shift < Long.SIZE; shift += RADIX_BITS) {
+            Arrays.fill(count, 0);
+            for (int i = 0; i < n; i++)
+                count[(int) (bits[i] >>> shift) & RADIX_MASK]++;
+            if (count[(int) (bits[0] >>> shift) & RADIX_MASK] == n)
+                continue;
+            for (int d = 0, start = 0; d < count.length; d++) {
+                int c = count[d];
+                count[d] = start;
+                start += c;
+            }
+            for (int i = 0; i < n; i++) {
+                int to = count[(int) (bits[i] >>> shift) & RADIX_MASK]++;
+                bitsTo[to] = bits[i];
+                orderTo[to] = order[i];
+            }
+            long[] b = bits;
+            bits = bitsTo;
+            bitsTo = b;
+            int[] o = order;
+            order = orderTo;
+            orderTo = o;
+        }
+        return order;
+    }
+
+    /**
+     * @return key's bits with negatives inverted and the sign of the rest
+     *          flipped, which orders as unsigned longs the way
+     *          Double.compare orders the keys, -0.0 before 0.0 and NaN last
+     */
+    private static long sortable(double key) {
+        long bits = Double.doubleToLongBits(key);
+        return bits < 0 ? ~bits : bits ^ Long.MIN_VALUE;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Node[] newNodes(int count) {
+        return (Node[]) new DoubleBPTree<?>.Node[count];
+    }
+
+    /**
+     * @return number of keys inserted, duplicates included
+     */
+    public int size() {
+        return size;
+    }
+
+    public int getBranchingFactor() {
+        return branchingFactor;
+    }
+
+    /**
+     * Level by level key lists, in the format of BPTree.toString.
+     */
+    @Override
+    public String toString() {
+        Queue<List<Node>> queue = new LinkedList<List<Node>>();
+        queue.add(Arrays.asList(root));
+        StringBuilder sb = new StringBuilder();
+        while (!queue.isEmpty()) {
+            Queue<List<Node>> nextQueue = new LinkedList<List<Node>>();
+            while (!queue.isEmpty()) {
+                List<Node> nodes = queue.remove();
+                sb.append('{');
+                for (int n = 0; n < nodes.size(); n++) {
+                    Node node = nodes.get(n);
+                    sb.append(node);
+                    if (n + 1 < nodes.size())
+                        sb.append(", ");
+                    if (node instanceof DoubleBPTree.InternalNode) {
+                        InternalNode internal = (InternalNode) node;
+                        nextQueue.add(Arrays.asList(internal.children).subList(0, internal.size + 1));
+                    }
+                }
+                sb.append('}');
+                if (!queue.isEmpty())
+                    sb.append(", ");
+                else
+                    sb.append('\n');
+            }
+            queue = nextQueue;
+        }
+        return sb.toString();
+    }
+
+    /**
+     * A node's sorted keys, with room for one more than the branching
+     * factor allows so a node can overflow before it splits.
+     */
+    private abstract class Node {
+
+        final double[] keys = new double[branchingFactor];
+        int size;
+
+        abstract void insert(double key, V value);
+
+        /**
+         * Moves the upper half into a new sibling and leaves the separator
+         * for the parent in promoted.
+         */
+        abstract Node split();
+
+        boolean isOverflow() {
+            return size == branchingFactor;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder("[");
+            for (int i = 0; i < size; i++) {
+                if (i > 0)
+                    sb.append(", ");
+                sb.append(keys[i]);
+            }
+            return sb.append(']').toString();
+        }
+    }
+
+    /**
+     * Separators and children: children[i] holds the keys between
+     * keys[i - 1] and keys[i].
+     */
+    private class InternalNode extends Node {
+
+        final Node[] children;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        InternalNode() {
+            children = new DoubleBPTree.Node[branchingFactor + 1];
+        }
+
+        void insert(double key, V value) {
+            int child = lowerBound(keys, size, key);
+            Node target = children[child];
+            target.insert(key, value);
+            if (target.isOverflow()) {
+                Node sibling = target.split();
+                System.arraycopy(keys, child, keys, child + 1, size - child);
+                System.arraycopy(children, child + 1, children, child + 2, size - child);
+                keys[child] = promoted;
+                children[child + 1] = sibling;
+                size++;
+            }
+        }
+
+        Node split() {
+            InternalNode sibling = new InternalNode();
+            int middle = size / 2;
+            promoted = keys[middle];
+            // the middle key moves up, the keys after it move across
+            sibling.size = size - middle - 1;
+            System.arraycopy(keys, middle + 1, sibling.keys, 0, sibling.size);
+            System.arraycopy(children, middle + 1, sibling.children, 0, sibling.size + 1);
+            Arrays.fill(children, middle + 1, size + 1, null);
+            size = middle;
+            return sibling;
+        }
+    }
+
+    /**
+     * Keys and their values, linked both ways to the neighbouring leaves.
+     */
+    private class LeafNode extends Node {
+
+        final Object[] values = new Object[branchingFactor];
+        LeafNode next;
+        LeafNode previous;
+
+        void insert(double key, V value) {
+            int index = lowerBound(keys, size, key);
+            System.arraycopy(keys, index, keys, index + 1, size - index);
+            System.arraycopy(values, index, values, index + 1, size - index);
+            keys[index] = key;
+            values[index] = value;
+            size++;
+        }
+
+        Node split() {
+            LeafNode sibling = new LeafNode();
+            int middle = size / 2;
+            sibling.size = size - middle;
+            System.arraycopy(keys, middle, sibling.keys, 0, sibling.size);
+            System.arraycopy(values, middle, sibling.values, 0, sibling.size);
+            Arrays.fill(values, middle, size, null);
+            size = middle;
+            promoted = sibling.keys[0];
+
+            if (next != null)
+                next.previous = sibling;
+            sibling.next = next;
+            next = sibling;
+            sibling.previous = this;
+            return sibling;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package application;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class DoubleBPTreeTest {
+	static final String[] COMPARATORS = {"<=", "==", ">="};
+
+	/**
+	 * Checks every comparator at key against a BPTree given the same
+	 * inserts: "<=" and ">=" in the same order, "==" as the same values
+	 * since BPTree's order for it depends on where its leaves split.
+	 */
+	static void assertSameSearch(BPTree<Double, Integer> expected, BPTreeADT<Double, Integer> actual, double key) {
+		for (String comparator : COMPARATORS) {
+			List<Integer> want = expected.rangeSearch(key, comparator);
+			List<Integer> got = actual.rangeSearch(key, comparator);
+			if (comparator.equals("==")) {
+				want = sorted(want);
+				got = sorted(got);
+			}
+			assertEquals(want, got, "rangeSearch(" + key + ", \"" + comparator + "\")");
+		}
+	}
+
+	static List<Integer> sorted(List<Integer> values) {
+		List<Integer> copy = new ArrayList<Integer>(values);
+		Collections.sort(copy);
+		return copy;
+	}
+
+	@Test
+	void test001_duplicatesMatchBPTree() {
+		Random random = new Random(1);
+		for (int branchingFactor : new int[] {3, 4, 5, 8, 62}) {
+			BPTree<Double, Integer> expected = new BPTree<Double, Integer>(branchingFactor);
+			DoubleBPTree<Integer> actual = new DoubleBPTree<Integer>(branchingFactor);
+			for (int i = 0; i < 2000; i++) {
+				// 100 distinct keys, about 20 of each
+				double key = random.nextInt(100) / 4.0;
+				expected.insert(key, i);
+				actual.insert(key, i);
+			}
+			assertEquals(2000, actual.size());
+			for (int k = -2; k < 102; k++)
+				assertSameSearch(expected, actual, k / 4.0);
+			// between keys
+			for (int k = -2; k < 102; k++)
+				assertSameSearch(expected, actual, k / 4.0 + 0.1);
+		}
+	}
+
+	@Test
+	void test002_negativeZero() {
+		BPTree<Double, Integer> expected = new BPTree<Double, Integer>(3);
+		DoubleBPTree<Integer> actual = new DoubleBPTree<Integer>(3);
+		double[] keys = {0.0, -0.0, 1.0, -0.0, -1.0, 0.0, -0.0};
+		for (int i = 0; i < keys.length; i++) {
+			expected.insert(keys[i], i);
+			actual.insert(keys[i], i);
+		}
+		// -0.0 and 0.0 are distinct keys, -0.0 the lower, as in Double.compare
+		assertEquals(sorted(Arrays.asList(1, 3, 6)), sorted(actual.rangeSearch(-0.0, "==")));
+		assertEquals(sorted(Arrays.asList(0, 5)), sorted(actual.rangeSearch(0.0, "==")));
+		for (double key : new double[] {-1.0, -0.0, 0.0, 1.0})
+			assertSameSearch(expected, actual, key);
+	}
+
+	@Test
+	void test003_splitBoundaries() {
+		// at branching factor 3 every third insert splits a leaf, so runs
+		// of an equal key straddle leaves and separators
+		for (int run = 1; run <= 7; run++) {
+			BPTree<Double, Integer> expected = new BPTree<Double, Integer>(3);
+			DoubleBPTree<Integer> actual = new DoubleBPTree<Integer>(3);
+			int value = 0;
+			for (int key = 0; key < 10; key++) {
+				for (int i = 0; i < run; i++) {
+					expected.insert((double) key, value);
+					actual.insert((double) key, value);
+					value++;
+				}
+			}
+			for (int key = -1; key <= 10; key++) {
+				assertSameSearch(expected, actual, key);
+				assertSameSearch(expected, actual, key + 0.5);
+			}
+		}
+		// descending inserts split at the other end of each leaf
+		BPTree<Double, Integer> expected = new BPTree<Double, Integer>(4);
+		DoubleBPTree<Integer> actual = new DoubleBPTree<Integer>(4);
+		for (int i = 0; i < 50; i++) {
+			expected.insert((double) (50 - i) / 2, i);
+			actual.insert((double) (50 - i) / 2, i);
+		}
+		for (int key = 0; key <= 52; key++)
+			assertSameSearch(expected, actual, key / 2.0);
+	}
+
+	@Test
+	void test004_emptyAndInvalidSearches() {
+		DoubleBPTree<Integer> tree = new DoubleBPTree<Integer>();
+		assertTrue(tree.rangeSearch(1.0, ">=").isEmpty());
+		tree.insert(1.0, 1);
+		assertTrue(tree.rangeSearch((Double) null, ">=").isEmpty());
+		assertTrue(tree.rangeSearch(1.0, "<").isEmpty());
+		assertTrue(tree.rangeSearch(1.0, null).isEmpty());
+		assertEquals(Arrays.asList(1), tree.rangeSearch(1.0, "=="));
+	}
+
+	@Test
+	void test005_insertDouble() {
+		DoubleBPTree<Integer> tree = new DoubleBPTree<Integer>(3);
+		tree.insert(2.0, 1);
+		tree.insertDouble(2.0, 2);
+		tree.insertDouble(1.0, 3);
+		// among equal keys the value inserted last comes first, and "<="
+		// walks them the other way
+		assertEquals(Arrays.asList(2, 1), tree.rangeSearch(2.0, ">="));
+		assertEquals(Arrays.asList(1, 2, 3), tree.rangeSearch(2.0, "<="));
+		assertEquals(3, tree.size());
+	}
+
+	@Test
+	void test006_bulkLoadMatchesInserts() {
+		Random random = new Random(6);
+		for (double fillFactor : new double[] {0.3, 0.5, 0.75, 1.0}) {
+			for (int branchingFactor : new int[] {3, 4, 7, 62}) {
+				for (int n : new int[] {0, 1, 2, 500}) {
+					double[] keys = new double[n];
+					Integer[] values = new Integer[n];
+					BPTree<Double, Integer> expected = new BPTree<Double, Integer>(branchingFactor);
+					for (int i = 0; i < n; i++) {
+						keys[i] = i % 17 == 0 ? -0.0 : random.nextInt(60) / 2.0;
+						values[i] = i;
+						expected.insert(keys[i], i);
+					}
+					DoubleBPTree<Integer> bulk = DoubleBPTree.bulkLoad(keys, values, branchingFactor, fillFactor);
+					BPTree<Double, Integer> bulkGeneric = BPTree.bulkLoad(boxed(keys), Arrays.asList(values),
+							branchingFactor, fillFactor);
+					assertEquals(n, bulk.size());
+					for (int k = -1; k <= 61; k++) {
+						assertSameSearch(expected, bulk, k / 2.0);
+						assertSameSearch(expected, bulkGeneric, k / 2.0);
+					}
+					assertSameSearch(expected, bulk, -0.0);
+
+					// room left below a fill factor of 1 is used before splitting
+					for (int i = 0; i < 300; i++) {
+						double key = random.nextInt(70) / 2.0 - 2;
+						expected.insert(key, n + i);
+						bulk.insert(key, n + i);
+						bulkGeneric.insert(key, n + i);
+					}
+					assertEquals(n + 300, bulk.size());
+					for (int k = -5; k <= 71; k++) {
+						assertSameSearch(expected, bulk, k / 2.0);
+						assertSameSearch(expected, bulkGeneric, k / 2.0);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	void test007_bulkLoadAnyList() {
+		List<Double> keys = new LinkedList<Double>();
+		List<Integer> values = new LinkedList<Integer>();
+		BPTree<Double, Integer> expected = new BPTree<Double, Integer>(5);
+		for (int i = 0; i < 200; i++) {
+			keys.add((double) (i * 7 % 50));
+			values.add(i);
+			expected.insert((double) (i * 7 % 50), i);
+		}
+		BPTree<Double, Integer> bulk = BPTree.bulkLoad(keys, values, 5, 0.8);
+		for (int k = -1; k <= 50; k++)
+			assertSameSearch(expected, bulk, k);
+	}
+
+	@Test
+	void test008_bulkLoadArguments() {
+		double[] keys = {1.0, 2.0};
+		assertThrows(IllegalArgumentException.class,
+				() -> DoubleBPTree.bulkLoad(keys, new Integer[] {1}));
+		assertThrows(IllegalArgumentException.class,
+				() -> DoubleBPTree.bulkLoad(keys, new Integer[] {1, 2}, 4, 0.0));
+		assertThrows(IllegalArgumentException.class,
+				() -> DoubleBPTree.bulkLoad(keys, new Integer[] {1, 2}, 4, 1.5));
+		assertThrows(IllegalArgumentException.class,
+				() -> BPTree.bulkLoad(Arrays.asList(1.0), Arrays.asList(1), 2, 1.0));
+	}
+
+	static List<Double> boxed(double[] keys) {
+		List<Double> list = new ArrayList<Double>(keys.length);
+		for (double key : keys)
+			list.add(key);
+		return list;
+	}
+}
@@ -23,8 +23,9 @@ public class FoodData implements FoodDataADT<FoodItem> {
     // List of all the food items.
     private List<FoodItem> foodItemList;
 
-    // Map of nutrients and their corresponding index
-    private HashMap<String, BPTree<Double, FoodItem>> indexes;
+    // Map of nutrients and their corresponding index, keyed by the
+    // nutrient's value as a primitive double
+    private HashMap<String, DoubleBPTree<FoodItem>> indexes;
     
     /**
      * Public constructor
@@ -38,12 +39,39 @@ public class FoodData implements FoodDataADT<FoodItem> {
      * Initialize the indices for the BPTrees and nutrients
      */
     private void initIndices() {
-    	indexes = new HashMap<String, BPTree<Double, FoodItem>>();
+    	indexes = new HashMap<String, DoubleBPTree<FoodItem>>();
     	
     	String[] nutrients = {"calories", "fat", "carbohydrate", "fiber", "protein"};
     	
     	for (String nutrient : nutrients)
-    		indexes.put(nutrient, new BPTree<Double, FoodItem>(3));
+    		indexes.put(nutrient, new DoubleBPTree<FoodItem>());
+    }
+    
+    /**
+     * Replace each index with one bulk loaded from the given food items,
+     * built bottom-up after a sort rather than by one insert per item
+     * 
+     * @param foods the food items to index, in the order read
+     */
+    private void loadIndices(List<FoodItem> foods) {
+    	for (String nutrient : indexes.keySet()) {
+    		int count = 0;
+    		for (FoodItem food : foods)
+    			if (food.getNutrients().containsKey(nutrient))
+    				count++;
+    		
+    		double[] keys = new double[count];
+    		FoodItem[] values = new FoodItem[count];
+    		int i = 0;
+    		for (FoodItem food : foods) {
+    			Double value = food.getNutrients().get(nutrient);
+    			if (value != null) {
+    				keys[i] = value;
+    				values[i++] = food;
+    			}
+    		}
+    		indexes.put(nutrient, DoubleBPTree.bulkLoad(keys, values));
+    	}
     }
     
     
@@ -53,7 +81,7 @@ public class FoodData implements FoodDataADT<FoodItem> {
      */
     @Override
     public void loadFoodItems(String filePath) {
-        Scanner sc;
+        Scanner sc = null;
         File file = new File(filePath);
         List<FoodItem> newFoodList = new ArrayList<FoodItem>();
 
@@ -76,16 +104,16 @@ public class FoodData implements FoodDataADT<FoodItem> {
                     		Double.parseDouble(foodLine[i + 1]));
 
                 newFoodList.add(food);
-                
-                for (Map.Entry<String, Double> entry : food.getNutrients().entrySet()) {
-            		indexes.get(entry.getKey()).insert(entry.getValue(), food);
-            	}
             }
         } catch (IOException e) {
             System.out.println("An error occurred reading the food file.");
         } catch (Exception e) {
         	e.printStackTrace();
         }
+        
+        // Index whatever was read, once the whole file is in
+        if (sc != null)
+        	loadIndices(newFoodList);
 
         Collections.sort(newFoodList, 
         		(f1, f2) -> f1.getName().toLowerCase().compareTo(f2.getName().toLowerCase()));
@@ -165,9 +193,9 @@ public class FoodData implements FoodDataADT<FoodItem> {
         ArrayList<FoodItem> filteredList = new ArrayList<FoodItem>();
     
         String[] rule = rules.get(0).split(" ");
-        BPTree<Double, FoodItem> tree = indexes.get(rule[0]);
+        DoubleBPTree<FoodItem> tree = indexes.get(rule[0]);
         
-        filteredList.addAll(tree.rangeSearch(Double.valueOf(rule[2]), rule[1]));
+        filteredList.addAll(tree.rangeSearch(Double.parseDouble(rule[2]), rule[1]));
 
         if (rules.size() == 1) {
             return filteredList;
@@ -178,7 +206,7 @@ public class FoodData implements FoodDataADT<FoodItem> {
             rule = rules.get(i).split(" ");
             tree = indexes.get(rule[0]);
             List<FoodItem> treeFilter = tree.rangeSearch(
-                                                    Double.valueOf(rule[2]), rule[1]);
+                                                    Double.parseDouble(rule[2]), rule[1]);
             for (FoodItem foodItem : filteredList) {
             	for (FoodItem treeFilterItem : treeFilter) {
                     if (foodItem.getID().compareTo(treeFilterItem.getID()) == 0) {
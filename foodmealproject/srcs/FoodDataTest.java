@@ -8,6 +8,7 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.stream.Stream;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 import org.junit.jupiter.api.Test;
 
@@ -108,4 +109,24 @@ class FoodDataTest {
         } 
     }
 
+	@Test
+	void test007_loadSkipsUnknownNutrients() {
+		foodData = new FoodData();
+		try {
+			Files.write(Paths.get(FoodDataTest.FOOD_FILE), Arrays.asList(
+					"1,Salt,calories,0,sodium,2300,protein,0",
+					"2,Egg,calories,70,fat,5,protein,6"));
+		} catch (IOException e) {
+			fail("An IO exception occurred while writing the testing file");
+		}
+		foodData.loadFoodItems(FoodDataTest.FOOD_FILE);
+		
+		// sodium has no index; the items are still loaded and indexed
+		assertEquals(2, foodData.getAllFoodItems().size());
+		List<FoodItem> filteredItems = foodData.filterByNutrients(Arrays.asList("protein <= 0"));
+		assertEquals(1, filteredItems.size());
+		assertEquals("Salt", filteredItems.get(0).getName());
+		assertEquals(2, foodData.filterByNutrients(Arrays.asList("calories >= 0")).size());
+	}
+
 }
@@ -1,10 +1,212 @@
 public class AnalysisTest {
+    static final String DEFAULT_STORE = "benchmark-history.csv";
+
     public static void main(String[] args)  {
 
-                // TODO Add code for checking command line arguments
+                if (args.length < 1)
+                {
+                    System.out.println("Usage: java AnalysisTest <input file | --generate <distribution>,<keys>[,<seed>] [--operations <n>]> [--threads] [--snapshot <file>] [--hit-ratio <0..1>] [--jmh-json <file>]");
+                    System.out.println("       [--latency-csv <file>] [--latency-json <file>]");
+                    System.out.println("       [--workload <a|b|c|d|read=..,update=..,insert=..,delete=..,dist=..,millis=..>] [--workload-threads <n>]");
+                    System.out.println("       [--structure NAME=<class>[:<int arg>][,threadsafe]]... [--structures NAME,NAME,...]");
+                    System.out.println("  --structure adds a HashTableADT, java.util.Map or application.BPTreeADT class to the compared structures");
+                    System.out.println("  --structures keeps only the named ones; application.BPTree joins as BPTREE when on the class path");
+                    System.out.println("       [--trials <n>] [--store <history.csv>] [--save <run name>] [--baseline <run name>]");
+                    System.out.println("  --trials repeats PUT, GET and DELETE n times; --save keeps them in the history file, default " + DEFAULT_STORE);
+                    System.out.println("  --baseline compares them with a saved run and exits with status 1 on a significant regression");
+                    System.out.println("  --jmh-json runs a short forked MicroBenchmark pass and writes JMH-format JSON");
+                    System.out.println("  collisions.txt holds 8192 keys with one shared hashCode");
+                    System.out.println("       java AnalysisTest --loaders <key file>   compares BufferedReader and memory-mapped loading");
+                    System.out.println("  --generate distributions: sequential, random, zipfian, common_prefix, adversarial");
+                    return;
+                }
                 
-                PerformanceAnalysisHash ana = new PerformanceAnalysisHash(args[0]);
+                if (args[0].equals("--loaders") && args.length > 1)
+                {
+                    // the file may be too large to load as Strings, so the
+                    // usual comparisons are not run
+                    PerformanceAnalysisHash loaders = new PerformanceAnalysisHash();
+                    loaders.compareLoaders(args[1]);
+                    loaders.printReport();
+                    return;
+                }
+
+                PerformanceAnalysisHash ana;
+                int first = 1;
+                if (args[0].equals("--generate") && args.length > 1)
+                {
+                    KeyGenerator generator = KeyGenerator.parse(args[1]);
+                    long operations = generator.keyCount();
+                    for (int i = 2; i < args.length - 1; i++)
+                    {
+                        if (args[i].equals("--operations"))
+                        {
+                            operations = Long.parseLong(args[i + 1].replace("_", ""));
+                        }
+                    }
+                    ana = new PerformanceAnalysisHash(generator, operations);
+                    first = 2;
+                }
+                else
+                {
+                    ana = new PerformanceAnalysisHash(args[0]);
+                }
+                MixedWorkload workload = null;
+                int workloadThreads = Runtime.getRuntime().availableProcessors();
+                StructureRegistry structures = null;
+                String retained = null;
+                int trials = 1;
+                String store = DEFAULT_STORE;
+                String saveAs = null;
+                String baseline = null;
+                for (int i = first; i < args.length - 1; i++)
+                {
+                    if (args[i].equals("--trials"))
+                    {
+                        trials = Integer.parseInt(args[i + 1]);
+                    }
+                    else if (args[i].equals("--store"))
+                    {
+                        store = args[i + 1];
+                    }
+                    else if (args[i].equals("--save"))
+                    {
+                        saveAs = args[i + 1];
+                    }
+                    else if (args[i].equals("--baseline"))
+                    {
+                        baseline = args[i + 1];
+                    }
+                    else if (args[i].equals("--structure"))
+                    {
+                        if (structures == null)
+                        {
+                            structures = StructureRegistry.defaults();
+                        }
+                        structures.register(args[i + 1]);
+                    }
+                    else if (args[i].equals("--structures"))
+                    {
+                        retained = args[i + 1];
+                    }
+                }
+                if (retained != null)
+                {
+                    if (structures == null)
+                    {
+                        structures = StructureRegistry.defaults();
+                    }
+                    structures.retain(retained);
+                }
+                if (structures != null)
+                {
+                    ana.setStructures(structures);
+                }
+                for (int i = first; i < args.length - 1; i++)
+                {
+                    if (args[i].equals("--hit-ratio"))
+                    {
+                        ana.setHitRatio(Double.parseDouble(args[i + 1]));
+                    }
+                    else if (args[i].equals("--workload"))
+                    {
+                        workload = MixedWorkload.parse(args[i + 1]);
+                    }
+                    else if (args[i].equals("--workload-threads"))
+                    {
+                        workloadThreads = Integer.parseInt(args[i + 1]);
+                    }
+                }
+                if (workload != null)
+                {
+                    ana.setWorkload(workload, workloadThreads);
+                }
                 ana.compareDataStructures();
+                ana.runTrials(trials);
+                int regressions = baseline != null ? ana.compareBaseline(store, baseline) : 0;
+                for (int i = first; i < args.length; i++)
+                {
+                    if (args[i].equals("--threads"))
+                    {
+                        ana.compareThreadScaling();
+                    }
+                    else if (args[i].equals("--snapshot") && i + 1 < args.length)
+                    {
+                        ana.compareSnapshot(args[++i]);
+                    }
+                    else if (args[i].equals("--hit-ratio"))
+                    {
+                        i++;    // applied before the comparisons ran
+                    }
+                    else if (args[i].equals("--jmh-json"))
+                    {
+                        i++;    // run after the report
+                    }
+                    else if (args[i].equals("--workload") && i + 1 < args.length)
+                    {
+                        i++;    // parsed before the comparisons ran
+                        ana.compareWorkload();
+                    }
+                    else if (args[i].equals("--workload-threads") || args[i].equals("--operations")
+                            || args[i].equals("--structure") || args[i].equals("--structures")
+                            || args[i].equals("--trials") || args[i].equals("--store") || args[i].equals("--save")
+                            || args[i].equals("--baseline"))
+                    {
+                        i++;
+                    }
+                    else if ((args[i].equals("--latency-csv") || args[i].equals("--latency-json")) && i + 1 < args.length)
+                    {
+                        String file = args[++i];
+                        try (java.io.Writer out = new java.io.FileWriter(file))
+                        {
+                            if (args[i - 1].equals("--latency-csv"))
+                            {
+                                ana.writeLatencyCsv(out);
+                            }
+                            else
+                            {
+                                ana.writeLatencyJson(out);
+                            }
+                        }
+                        catch (java.io.IOException e)
+                        {
+                            System.out.println("Could not write " + file + ": " + e.getMessage());
+                        }
+                    }
+                }
                 ana.printReport();
+                if (saveAs != null)
+                {
+                    try
+                    {
+                        ana.saveRun(store, saveAs);
+                        System.out.println("Saved " + trials + (trials == 1 ? " trial" : " trials") + " as " + saveAs + " in " + store);
+                    }
+                    catch (java.io.IOException e)
+                    {
+                        System.out.println("Could not save to " + store + ": " + e.getMessage());
+                    }
+                }
+                for (int i = first; i < args.length - 1; i++)
+                {
+                    if (args[i].equals("--jmh-json"))
+                    {
+                        try
+                        {
+                            // one fork and short iterations: a smoke run, use
+                            // MicroBenchmark directly for publishable numbers
+                            MicroBenchmark.main(new String[] { "-f", "1", "-wi", "2", "-i", "3", "-r", "100",
+                                    "-rff", args[i + 1] });
+                        }
+                        catch (java.io.IOException e)
+                        {
+                            System.out.println("MicroBenchmark failed: " + e.getMessage());
+                        }
+                    }
+                }
+                if (regressions > 0)
+                {
+                    System.exit(1);
+                }
             }
 }
@@ -0,0 +1,147 @@
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Presents an application.BPTreeADT, such as the food project's BPTree, as
+ * an OrderedTableADT. The tree lives in another source tree with a package
+ * of its own, which classes in this directory cannot name, so it is found
+ * and called through method handles: put it on the class path, for
+ * example with -cp .:../foodmealproject/bin.
+ *
+ * get is rangeSearch(key, "==") and returns the first match. BPTreeADT
+ * keeps duplicate keys and has no remove, so put of a key already present
+ * adds a second entry, and remove throws UnsupportedOperationException.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class BPTreeAdapter<K, V> implements OrderedTableADT<K, V> {
+
+    static final String ADT_NAME = "application.BPTreeADT";
+    static final int DEFAULT_BRANCHING_FACTOR = 64;
+
+    private final MethodHandle constructor;
+    private final MethodHandle insert;
+    private final MethodHandle rangeSearch;
+    private Object tree;
+    private int size;
+
+    /**
+     * @param className a class implementing application.BPTreeADT with a
+     *          public constructor taking the branching factor
+     * @throws IllegalArgumentException if there is no such class
+     */
+    public BPTreeAdapter(String className, int branchingFactor) {
+        try {
+            Class<?> type = Class.forName(className);
+            Class<?> adt = Class.forName(ADT_NAME);
+            if (!adt.isAssignableFrom(type)) {
+                throw new IllegalArgumentException(className + " does not implement " + ADT_NAME);
+            }
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            MethodHandle create = lookup.findConstructor(type, MethodType.methodType(void.class, int.class));
+            constructor = MethodHandles.insertArguments(create, 0, branchingFactor)
+                    .asType(MethodType.methodType(Object.class));
+            insert = lookup.findVirtual(adt, "insert", MethodType.methodType(void.class, Object.class, Object.class))
+                    .asType(MethodType.methodType(void.class, Object.class, Object.class, Object.class));
+            rangeSearch = lookup.findVirtual(adt, "rangeSearch",
+                    MethodType.methodType(List.class, Object.class, String.class))
+                    .asType(MethodType.methodType(List.class, Object.class, Object.class, String.class));
+        } catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalArgumentException("Cannot adapt " + className + ": " + e, e);
+        }
+        clear();
+    }
+
+    /**
+     * @return true if application.BPTreeADT is on the class path
+     */
+    public static boolean isAvailable() {
+        try {
+            Class.forName(ADT_NAME);
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public V put(K key, V value) throws NullPointerException {
+        if (key == null) {
+            throw new NullPointerException("Invalid Key");
+        }
+        try {
+            insert.invokeExact(tree, (Object) key, (Object) value);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+        size++;
+        return value;
+    }
+
+    @Override
+    public V get(K key) throws NoSuchElementException {
+        if (key == null) {
+            throw new NullPointerException("Invalid Key");
+        }
+        List<V> found = rangeSearch(key, "==");
+        if (found.isEmpty()) {
+            throw new NoSuchElementException("Key not found: " + key);
+        }
+        return found.get(0);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<V> rangeSearch(K key, String comparator) {
+        try {
+            return (List<V>) rangeSearch.invokeExact(tree, (Object) key, comparator);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    @Override
+    public V remove(K key) throws NullPointerException {
+        throw new UnsupportedOperationException("BPTreeADT has no remove");
+    }
+
+    /**
+     * Replaces the tree with a new empty one.
+     */
+    @Override
+    public void clear() {
+        try {
+            tree = constructor.invokeExact();
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+        size = 0;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return number of puts since the last clear, duplicates included
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private static RuntimeException rethrow(Throwable t) {
+        if (t instanceof RuntimeException) {
+            return (RuntimeException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        return new IllegalStateException(t);
+    }
+}
@@ -0,0 +1,57 @@
+/**
+ * Sink for benchmark results, modelled on JMH's Blackhole. Handing a value
+ * to consume keeps the JIT from proving it unused and deleting the code
+ * that computed it, while costing only a few cycles per call.
+ *
+ * Primitives are compared against two volatile fields that can never both
+ * match; objects are stored into a field at random, rarely enough that the
+ * store itself does not show up in the measurement.
+ */
+public final class Blackhole {
+
+    private volatile int i1 = 1;
+    private volatile int i2 = 2;
+    private volatile long l1 = 1;
+    private volatile long l2 = 2;
+    private volatile boolean b1 = false;
+    private volatile boolean b2 = true;
+
+    private int seed = (int) System.nanoTime();
+    private int mask = 1;
+    private Object sink;
+    private Object bait;
+
+    public void consume(int value) {
+        if (value == i1 & value == i2) {
+            bait = this;
+        }
+    }
+
+    public void consume(long value) {
+        if (value == l1 & value == l2) {
+            bait = this;
+        }
+    }
+
+    public void consume(boolean value) {
+        if (value == b1 & value == b2) {
+            bait = this;
+        }
+    }
+
+    public void consume(Object value) {
+        int s = seed * 1664525 + 1013904223;
+        seed = s;
+        if ((s & mask) == 0) {
+            sink = value;
+            mask = (mask << 1) + 1;
+        }
+    }
+
+    /**
+     * @return an object stored by consume, so the stores are not dead
+     */
+    Object sink() {
+        return sink != null ? sink : bait;
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * Blocked Bloom filter over 32-bit key hashes. Each hash selects one
+ * 512-bit block, one cache line, and sets one bit in each of its eight
+ * words, so a lookup costs one cache miss at most rather than one per bit.
+ *
+ * The filter answers "definitely absent" or "maybe present" and never has
+ * false negatives. It cannot delete: a table that removes keys has to
+ * rebuild it from the keys still present, otherwise the false-positive
+ * rate creeps up with every removal.
+ *
+ * With BITS_PER_KEY bits per expected key the false-positive rate stays
+ * near 1% up to the expected count.
+ */
+class BlockedBloomFilter {
+
+    static final int BITS_PER_KEY = 10;
+
+    private static final int BLOCK_BITS = 512;
+    private static final int WORDS_PER_BLOCK = BLOCK_BITS / Long.SIZE;
+
+    // odd multipliers that pick one bit in each word of a block, as in
+    // the split block filters of Impala and Parquet
+    private static final int[] SALTS = {
+        0x47B6137B, 0x44974D91, 0x8824AD5B, 0xA2B7289D,
+        0x705495C7, 0x2DF1424B, 0x9EFC4947, 0x5C6BFB31
+    };
+
+    private final long[] words;
+    private final long blocks;
+    private final int expected;
+    private int added;
+
+    /**
+     * @param expected number of keys the filter is sized for
+     */
+    BlockedBloomFilter(int expected) {
+        this.expected = Math.max(expected, 1);
+        long bits = (long) this.expected * BITS_PER_KEY;
+        int blockCount = (int) Math.max(1, (bits + BLOCK_BITS - 1) / BLOCK_BITS);
+        this.words = new long[blockCount * WORDS_PER_BLOCK];
+        this.blocks = blockCount;
+    }
+
+    /**
+     * murmur3 64-bit finalizer
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+
+    private int blockBase(long h) {
+        return (int) (((h >>> 32) * blocks) >>> 32) * WORDS_PER_BLOCK;
+    }
+
+    void add(int hash) {
+        long h = mix(hash);
+        int base = blockBase(h);
+        int lo = (int) h;
+        for (int i = 0; i < WORDS_PER_BLOCK; i++) {
+            words[base + i] |= 1L << ((lo * SALTS[i]) >>> 26);
+        }
+        added++;
+    }
+
+    /**
+     * @return false only if hash was never added
+     */
+    boolean mightContain(int hash) {
+        long h = mix(hash);
+        int base = blockBase(h);
+        int lo = (int) h;
+        long all = 1;
+        // no early exit: eight loads from one cache line and no branch
+        // for the predictor to miss
+        for (int i = 0; i < WORDS_PER_BLOCK; i++) {
+            all &= words[base + i] >>> ((lo * SALTS[i]) >>> 26);
+        }
+        return all != 0;
+    }
+
+    /**
+     * @return keys added since the filter was created
+     */
+    int added() {
+        return added;
+    }
+
+    /**
+     * @return the key count the filter was sized for
+     */
+    int expected() {
+        return expected;
+    }
+
+    /**
+     * @return bytes of bit array
+     */
+    long sizeInBytes() {
+        return (long) words.length * Long.BYTES;
+    }
+}
@@ -0,0 +1,394 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.function.ToIntBiFunction;
+
+/**
+ * HashTableADT that holds at most a fixed total weight and evicts with the
+ * CLOCK algorithm once it is full, for use as a cache in front of a slow
+ * source.
+ *
+ * Entries live in slot arrays (key, value, hash, chain link, reference
+ * bit, and optionally weight and write time) indexed by an int, and the
+ * hash index is an int[] of chain heads, so inserting or evicting an entry
+ * allocates nothing once the arrays have grown to their working size. A
+ * hit only sets the slot's reference bit. When the cache is over its
+ * maximum weight the clock hand sweeps the slots, clearing set bits and
+ * evicting the first slot whose bit is already clear; each sweep step is
+ * O(1) and every slot is passed at most twice per eviction.
+ *
+ * By default every entry weighs 1, so the maximum is an entry count. A
+ * weigher turns it into a byte or cost budget. With expire-after-write an
+ * entry older than the given age is treated as absent and dropped on the
+ * next lookup, or when the clock hand reaches it.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class BoundedHashTable<K, V> implements HashTableADT<K, V> {
+
+    private static final int NONE = -1;
+
+    private final long maximumWeight;
+    private final ToIntBiFunction<? super K, ? super V> weigher;   // null: weight 1
+    private final long expireAfterWriteNanos;                      // 0: never expire
+
+    private Object[] keys;          // null marks a free slot
+    private Object[] values;
+    private int[] hashes;
+    private int[] next;             // chain link, or free-list link for free slots
+    private boolean[] referenced;
+    private int[] weights;          // only with a weigher
+    private long[] writtenAt;       // only with expire-after-write
+    private int[] buckets;          // chain head slot per bucket, NONE if empty
+
+    private int used;               // slots below this index have been handed out
+    private int freeHead = NONE;
+    private int hand;
+    private int size;
+    private long totalWeight;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+
+    /**
+     * @param maximumSize number of entries held before the oldest
+     *          unreferenced one is evicted
+     */
+    public BoundedHashTable(int maximumSize) {
+        this(maximumSize, null, 0);
+    }
+
+    /**
+     * @param maximumWeight total weight held before entries are evicted
+     * @param weigher weight of an entry, must not be negative; null to
+     *          weigh every entry as 1
+     * @param expireAfterWriteNanos age at which an entry stops being
+     *          returned, or 0 to keep entries until evicted
+     */
+    public BoundedHashTable(long maximumWeight, ToIntBiFunction<? super K, ? super V> weigher,
+            long expireAfterWriteNanos) {
+        if (maximumWeight <= 0) {
+            throw new IllegalArgumentException("Illegal maximum weight: " + maximumWeight);
+        }
+        if (expireAfterWriteNanos < 0) {
+            throw new IllegalArgumentException("Illegal expiry: " + expireAfterWriteNanos);
+        }
+        this.maximumWeight = maximumWeight;
+        this.weigher = weigher;
+        this.expireAfterWriteNanos = expireAfterWriteNanos;
+        allocate((int) Math.min(maximumWeight, 16));
+    }
+
+    private void allocate(int capacity) {
+        keys = new Object[capacity];
+        values = new Object[capacity];
+        hashes = new int[capacity];
+        next = new int[capacity];
+        referenced = new boolean[capacity];
+        if (weigher != null) {
+            weights = new int[capacity];
+        }
+        if (expireAfterWriteNanos > 0) {
+            writtenAt = new long[capacity];
+        }
+        buckets = new int[HashTable.tableSizeFor(capacity)];
+        Arrays.fill(buckets, NONE);
+    }
+
+    /**
+     * Doubles the slot arrays, capped at the entry count the maximum
+     * weight allows when entries weigh 1, and rebuilds the bucket index.
+     */
+    private void grow() {
+        int capacity = keys.length << 1;
+        if (weigher == null) {
+            capacity = (int) Math.min(capacity, maximumWeight);
+        }
+        keys = Arrays.copyOf(keys, capacity);
+        values = Arrays.copyOf(values, capacity);
+        hashes = Arrays.copyOf(hashes, capacity);
+        next = Arrays.copyOf(next, capacity);
+        referenced = Arrays.copyOf(referenced, capacity);
+        if (weights != null) {
+            weights = Arrays.copyOf(weights, capacity);
+        }
+        if (writtenAt != null) {
+            writtenAt = Arrays.copyOf(writtenAt, capacity);
+        }
+        buckets = new int[HashTable.tableSizeFor(capacity)];
+        Arrays.fill(buckets, NONE);
+        int mask = buckets.length - 1;
+        for (int i = 0; i < used; i++) {
+            if (keys[i] != null) {
+                int b = hashes[i] & mask;
+                next[i] = buckets[b];
+                buckets[b] = i;
+            }
+        }
+    }
+
+    private int findSlot(int hash, Object key) {
+        for (int i = buckets[hash & (buckets.length - 1)]; i != NONE; i = next[i]) {
+            if (hashes[i] == hash && (keys[i] == key || keys[i].equals(key))) {
+                return i;
+            }
+        }
+        return NONE;
+    }
+
+    private boolean isExpired(int slot) {
+        return writtenAt != null && System.nanoTime() - writtenAt[slot] >= expireAfterWriteNanos;
+    }
+
+    private int weightOf(K key, V value) {
+        if (weigher == null) {
+            return 1;
+        }
+        int weight = weigher.applyAsInt(key, value);
+        if (weight < 0) {
+            throw new IllegalArgumentException("Negative weight for key " + key);
+        }
+        return weight;
+    }
+
+    @Override
+    public V put(K key, V value) throws NullPointerException {
+        if (key == null) {
+            throw new NullPointerException("Invalid Key");
+        }
+        int hash = HashTable.spread(key);
+        int weight = weightOf(key, value);
+        int slot = findSlot(hash, key);
+        if (slot == NONE) {
+            slot = takeSlot();
+            keys[slot] = key;
+            hashes[slot] = hash;
+            int b = hash & (buckets.length - 1);
+            next[slot] = buckets[b];
+            buckets[b] = slot;
+            referenced[slot] = false;
+            size++;
+        } else {
+            totalWeight -= weights != null ? weights[slot] : 1;
+            referenced[slot] = true;
+        }
+        values[slot] = value;
+        if (weights != null) {
+            weights[slot] = weight;
+        }
+        if (writtenAt != null) {
+            writtenAt[slot] = System.nanoTime();
+        }
+        totalWeight += weight;
+        while (totalWeight > maximumWeight) {
+            evictOne();
+        }
+        return value;
+    }
+
+    /**
+     * @return a free slot, reusing evicted ones before growing the arrays
+     */
+    private int takeSlot() {
+        if (freeHead != NONE) {
+            int slot = freeHead;
+            freeHead = next[slot];
+            return slot;
+        }
+        if (used == keys.length) {
+            if (weigher == null && used >= maximumWeight) {
+                // full entry-count cache: make room before adding
+                evictOne();
+                return takeSlot();
+            }
+            grow();
+        }
+        return used++;
+    }
+
+    /**
+     * Advances the clock hand to the first live slot whose reference bit
+     * is clear, clearing bits on the way, and evicts it. Expired slots are
+     * taken as soon as the hand reaches them.
+     */
+    private void evictOne() {
+        for (;;) {
+            if (hand >= used) {
+                hand = 0;
+            }
+            int slot = hand++;
+            if (keys[slot] == null) {
+                continue;
+            }
+            if (isExpired(slot)) {
+                expirations++;
+            } else if (referenced[slot]) {
+                referenced[slot] = false;
+                continue;
+            } else {
+                evictions++;
+            }
+            release(slot);
+            return;
+        }
+    }
+
+    /**
+     * Unlinks a live slot from its chain and puts it on the free list.
+     */
+    private void release(int slot) {
+        int b = hashes[slot] & (buckets.length - 1);
+        if (buckets[b] == slot) {
+            buckets[b] = next[slot];
+        } else {
+            int prev = buckets[b];
+            while (next[prev] != slot) {
+                prev = next[prev];
+            }
+            next[prev] = next[slot];
+        }
+        totalWeight -= weights != null ? weights[slot] : 1;
+        keys[slot] = null;
+        values[slot] = null;
+        referenced[slot] = false;
+        next[slot] = freeHead;
+        freeHead = slot;
+        size--;
+    }
+
+    /**
+     * @return the slot of a live, unexpired mapping for key, or NONE;
+     *          an expired mapping found on the way is dropped
+     */
+    private int liveSlot(K key) {
+        if (key == null) {
+            throw new NullPointerException("Invalid Key");
+        }
+        int slot = findSlot(HashTable.spread(key), key);
+        if (slot != NONE && isExpired(slot)) {
+            expirations++;
+            release(slot);
+            return NONE;
+        }
+        return slot;
+    }
+
+    /**
+     * Cache lookup that reports a miss as null rather than an exception.
+     *
+     * @return the value for key, or null if it is absent or expired
+     */
+    @SuppressWarnings("unchecked")
+    public V getIfPresent(K key) {
+        int slot = liveSlot(key);
+        if (slot == NONE) {
+            misses++;
+            return null;
+        }
+        hits++;
+        referenced[slot] = true;
+        return (V) values[slot];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(K key) throws NoSuchElementException {
+        int slot = liveSlot(key);
+        if (slot == NONE) {
+            misses++;
+            throw new NoSuchElementException("Key not found: " + key);
+        }
+        hits++;
+        referenced[slot] = true;
+        return (V) values[slot];
+    }
+
+    /**
+     * Checks for a live mapping without counting a hit or miss or marking
+     * the entry as used.
+     */
+    public boolean containsKey(K key) {
+        return liveSlot(key) != NONE;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(K key) throws NullPointerException {
+        int slot = liveSlot(key);
+        if (slot == NONE) {
+            return null;
+        }
+        V old = (V) values[slot];
+        release(slot);
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(keys, null);
+        Arrays.fill(values, null);
+        Arrays.fill(referenced, false);
+        Arrays.fill(buckets, NONE);
+        used = 0;
+        freeHead = NONE;
+        hand = 0;
+        size = 0;
+        totalWeight = 0;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return entries held, including expired ones not yet dropped
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return total weight of the entries held
+     */
+    public long weight() {
+        return totalWeight;
+    }
+
+    public long maximumWeight() {
+        return maximumWeight;
+    }
+
+    public long hits() {
+        return hits;
+    }
+
+    public long misses() {
+        return misses;
+    }
+
+    /**
+     * @return entries removed to stay under the maximum weight
+     */
+    public long evictions() {
+        return evictions;
+    }
+
+    /**
+     * @return entries dropped because they outlived expire-after-write
+     */
+    public long expirations() {
+        return expirations;
+    }
+
+    /**
+     * @return hits over hits plus misses, or 0 before any lookup
+     */
+    public double hitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+}
@@ -0,0 +1,115 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A key that is a range of bytes in a ByteBuffer, usually a line of a
+ * MappedKeyFile, read as ISO-8859-1 so that each byte is one char. Nothing
+ * is copied or decoded until toString is called.
+ *
+ * hashCode is String.hashCode of the same characters, computed on first
+ * use and cached, and compareTo orders like String.compareTo, so a slice
+ * behaves like the String it stands for in every table and tree here.
+ * Slices are only equal to other slices; use of(String) to look one up by
+ * a String.
+ */
+public final class ByteSlice implements CharSequence, Comparable<ByteSlice> {
+
+    private final ByteBuffer buffer;
+    private final int offset;
+    private final int length;
+    private int hash;
+
+    /**
+     * @param buffer read with absolute gets only, so it may be shared
+     */
+    public ByteSlice(ByteBuffer buffer, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > buffer.limit()) {
+            throw new IndexOutOfBoundsException("Slice " + offset + "+" + length + " of " + buffer.limit());
+        }
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * @return a slice over the ISO-8859-1 bytes of s in a heap buffer
+     */
+    public static ByteSlice of(String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.ISO_8859_1);
+        return new ByteSlice(ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("Index " + index + " of " + length);
+        }
+        return (char) (buffer.get(offset + index) & 0xFF);
+    }
+
+    @Override
+    public ByteSlice subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("Range " + start + ".." + end + " of " + length);
+        }
+        return new ByteSlice(buffer, offset + start, end - start);
+    }
+
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0 && length > 0) {
+            for (int i = 0; i < length; i++) {
+                h = 31 * h + (buffer.get(offset + i) & 0xFF);
+            }
+            hash = h;
+        }
+        return h;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ByteSlice)) {
+            return false;
+        }
+        ByteSlice other = (ByteSlice) o;
+        if (length != other.length || hash != 0 && other.hash != 0 && hash != other.hash) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(offset + i) != other.buffer.get(other.offset + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int compareTo(ByteSlice other) {
+        int n = Math.min(length, other.length);
+        for (int i = 0; i < n; i++) {
+            int c = (buffer.get(offset + i) & 0xFF) - (other.buffer.get(other.offset + i) & 0xFF);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return length - other.length;
+    }
+
+    @Override
+    public String toString() {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(offset + i);
+        }
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+}
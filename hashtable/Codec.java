@@ -0,0 +1,126 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Converts keys and values to and from bytes for tables that keep their
+ * entries outside the Java heap. Codecs for String and the boxed
+ * primitives are provided as constants.
+ *
+ * @param <T> type that is encoded
+ */
+public interface Codec<T> {
+
+    /**
+     * @param value the value to be encoded
+     * @return number of bytes encode will write for value
+     */
+    int encodedSize(T value);
+
+    /**
+     * Writes value at the position of target and advances it by
+     * encodedSize(value) bytes.
+     */
+    void encode(T value, ByteBuffer target);
+
+    /**
+     * Reads a value of length bytes at the position of source and advances
+     * it past them.
+     */
+    T decode(ByteBuffer source, int length);
+
+    Codec<String> STRING = new Codec<String>() {
+        @Override
+        public int encodedSize(String value) {
+            int size = 0;
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    size += 1;
+                } else if (c < 0x800) {
+                    size += 2;
+                } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                        && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    size += 4;
+                    i++;
+                } else if (Character.isSurrogate(c)) {
+                    // unpaired surrogates are written as '?'
+                    size += 1;
+                } else {
+                    size += 3;
+                }
+            }
+            return size;
+        }
+
+        @Override
+        public void encode(String value, ByteBuffer target) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c >= 0x80) {
+                    // rare path, let the JDK encoder handle the rest
+                    target.put(value.substring(i).getBytes(StandardCharsets.UTF_8));
+                    return;
+                }
+                target.put((byte) c);
+            }
+        }
+
+        @Override
+        public String decode(ByteBuffer source, int length) {
+            byte[] bytes = new byte[length];
+            source.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    };
+
+    Codec<Integer> INT = new Codec<Integer>() {
+        @Override
+        public int encodedSize(Integer value) {
+            return Integer.BYTES;
+        }
+
+        @Override
+        public void encode(Integer value, ByteBuffer target) {
+            target.putInt(value);
+        }
+
+        @Override
+        public Integer decode(ByteBuffer source, int length) {
+            return source.getInt();
+        }
+    };
+
+    Codec<Long> LONG = new Codec<Long>() {
+        @Override
+        public int encodedSize(Long value) {
+            return Long.BYTES;
+        }
+
+        @Override
+        public void encode(Long value, ByteBuffer target) {
+            target.putLong(value);
+        }
+
+        @Override
+        public Long decode(ByteBuffer source, int length) {
+            return source.getLong();
+        }
+    };
+
+    Codec<Double> DOUBLE = new Codec<Double>() {
+        @Override
+        public int encodedSize(Double value) {
+            return Double.BYTES;
+        }
+
+        @Override
+        public void encode(Double value, ByteBuffer target) {
+            target.putDouble(value);
+        }
+
+        @Override
+        public Double decode(ByteBuffer source, int length) {
+            return source.getDouble();
+        }
+    };
+}
@@ -0,0 +1,480 @@
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Thread-safe implementation of HashTableADT that many threads can share.
+ *
+ * An empty bucket is claimed with a CAS. A non-empty bucket is updated
+ * while holding the monitor of its head node, so each bucket is its own
+ * lock stripe. get never locks: keys and hashes are final and next/value
+ * are volatile, so a reader always sees a consistent chain.
+ *
+ * Resizing is cooperative. The thread that crosses the threshold publishes
+ * a ResizeState, and any thread that later runs into a ForwardingNode joins
+ * it. Each resizer claims a stride of buckets at a time and copies them
+ * into the new table. Buckets are copied rather than relinked, so readers
+ * still walking the old chains are not disturbed.
+ *
+ * The entry count is kept in striped add/remove cells. size() and the
+ * resize check sum them in a single pass without taking any lock, so
+ * neither can be held up by other writers. While writers are active the
+ * count is an estimate, as ConcurrentHashMap's is; once they stop it is
+ * exact.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class ConcurrentHashTable<K, V> implements HashTableADT<K, V> {
+
+    static final int MAXIMUM_CAPACITY = 1 << 30;
+
+    // hash value of forwarding nodes, spread() never produces it
+    static final int MOVED = -1;
+
+    // smallest number of buckets a resizer claims at once
+    static final int MIN_TRANSFER_STRIDE = 16;
+
+    static final int NCPU = Runtime.getRuntime().availableProcessors();
+
+    // counter cells are spaced this many longs apart to avoid false sharing
+    private static final int CELL_PAD = 16;
+
+    static class Node<K, V> {
+        final int hash;
+        final K key;
+        volatile V val;
+        volatile Node<K, V> next;
+
+        Node(int hash, K key, V val, Node<K, V> next) {
+            this.hash = hash;
+            this.key = key;
+            this.val = val;
+            this.next = next;
+        }
+    }
+
+    /**
+     * Placed at the head of a bucket once it has been copied; points
+     * readers and writers at the table it was copied into.
+     */
+    static final class ForwardingNode<K, V> extends Node<K, V> {
+        final AtomicReferenceArray<Node<K, V>> nextTable;
+
+        ForwardingNode(AtomicReferenceArray<Node<K, V>> nextTable) {
+            super(MOVED, null, null, null);
+            this.nextTable = nextTable;
+        }
+    }
+
+    /**
+     * One resize from table to nextTable. Buckets below transferIndex are
+     * still unclaimed; active counts the threads copying buckets, and the
+     * last one to leave installs nextTable.
+     */
+    static final class ResizeState<K, V> {
+        final AtomicReferenceArray<Node<K, V>> table;
+        final AtomicReferenceArray<Node<K, V>> nextTable;
+        final ForwardingNode<K, V> forward;
+        final AtomicInteger transferIndex;
+        final AtomicInteger active = new AtomicInteger(1);
+
+        ResizeState(AtomicReferenceArray<Node<K, V>> table) {
+            this.table = table;
+            this.nextTable = new AtomicReferenceArray<>(table.length() << 1);
+            this.forward = new ForwardingNode<>(nextTable);
+            this.transferIndex = new AtomicInteger(table.length());
+        }
+
+        /**
+         * @return true if the caller is now counted as a resizer
+         */
+        boolean join() {
+            for (;;) {
+                int c = active.get();
+                if (c == 0 || transferIndex.get() <= 0) {
+                    return false;
+                }
+                if (active.compareAndSet(c, c + 1)) {
+                    return true;
+                }
+            }
+        }
+    }
+
+    private volatile AtomicReferenceArray<Node<K, V>> table;
+    private final AtomicReference<ResizeState<K, V>> resizeState = new AtomicReference<>();
+    private final double loadFactor;
+    private volatile int threshold;
+
+    // per stripe: adds at [i * CELL_PAD], removes at [i * CELL_PAD + 1]
+    private final AtomicLongArray counters;
+    private final int counterMask;
+
+    public ConcurrentHashTable() {
+        this(16, 0.75);
+    }
+
+    /**
+     * @param initialCapacity number of buckets to start with, rounded up to
+     *          a power of two
+     * @param loadFactor entries per bucket that triggers a resize
+     */
+    public ConcurrentHashTable(int initialCapacity, double loadFactor) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Illegal capacity: " + initialCapacity);
+        }
+        if (!(loadFactor > 0)) {
+            throw new IllegalArgumentException("Illegal load factor: " + loadFactor);
+        }
+        this.loadFactor = loadFactor;
+        int n = HashTable.tableSizeFor(Math.max(2, initialCapacity));
+        this.table = new AtomicReferenceArray<>(n);
+        this.threshold = thresholdFor(n);
+        int stripes = HashTable.tableSizeFor(NCPU);
+        this.counters = new AtomicLongArray(stripes * CELL_PAD);
+        this.counterMask = stripes - 1;
+    }
+
+    private int thresholdFor(int capacity) {
+        if (capacity >= MAXIMUM_CAPACITY) {
+            return Integer.MAX_VALUE;
+        }
+        return (int) Math.min(capacity * loadFactor, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Same bit spreading as HashTable, with the sign bit cleared so a real
+     * hash never collides with MOVED.
+     */
+    static int spread(Object key) {
+        return HashTable.spread(key) & 0x7FFFFFFF;
+    }
+
+    @Override
+    public V put(K key, V value) throws NullPointerException {
+        if (key == null) {
+            throw new NullPointerException("Invalid Key");
+        }
+        int hash = spread(key);
+        int binCount = 0;
+        AtomicReferenceArray<Node<K, V>> tab = table;
+        for (;;) {
+            int i = hash & (tab.length() - 1);
+            Node<K, V> f = tab.get(i);
+            if (f == null) {
+                if (tab.compareAndSet(i, null, new Node<>(hash, key, value, null))) {
+                    break;
+                }
+            } else if (f.hash == MOVED) {
+                tab = helpTransfer((ForwardingNode<K, V>) f);
+            } else {
+                boolean updated = false;
+                synchronized (f) {
+                    if (tab.get(i) == f) {
+                        binCount = 1;
+                        for (Node<K, V> e = f; ; binCount++) {
+                            if (e.hash == hash && (e.key == key || e.key.equals(key))) {
+                                e.val = value;
+                                updated = true;
+                                break;
+                            }
+                            if (e.next == null) {
+                                e.next = new Node<>(hash, key, value, null);
+                                break;
+                            }
+                            e = e.next;
+                        }
+                    }
+                }
+                if (updated) {
+                    return value;
+                }
+                if (binCount != 0) {
+                    break;
+                }
+            }
+        }
+        addCount(1);
+        checkResize();
+        return value;
+    }
+
+    @Override
+    public V get(K key) throws NoSuchElementException {
+        if (key == null) {
+            throw new NullPointerException("Invalid Key");
+        }
+        Node<K, V> node = findNode(key);
+        if (node == null) {
+            throw new NoSuchElementException("Key not found: " + key);
+        }
+        return node.val;
+    }
+
+    /**
+     * @param key key to look for
+     * @return true if the key has a mapping in this table
+     */
+    public boolean containsKey(K key) {
+        if (key == null) {
+            throw new NullPointerException("Invalid Key");
+        }
+        return findNode(key) != null;
+    }
+
+    private Node<K, V> findNode(Object key) {
+        int hash = spread(key);
+        AtomicReferenceArray<Node<K, V>> tab = table;
+        Node<K, V> e = tab.get(hash & (tab.length() - 1));
+        while (e != null) {
+            if (e.hash == MOVED) {
+                tab = ((ForwardingNode<K, V>) e).nextTable;
+                e = tab.get(hash & (tab.length() - 1));
+                continue;
+            }
+            if (e.hash == hash && (e.key == key || e.key.equals(key))) {
+                return e;
+            }
+            e = e.next;
+        }
+        return null;
+    }
+
+    @Override
+    public V remove(K key) throws NullPointerException {
+        if (key == null) {
+            throw new NullPointerException("Invalid Key");
+        }
+        int hash = spread(key);
+        AtomicReferenceArray<Node<K, V>> tab = table;
+        for (;;) {
+            int i = hash & (tab.length() - 1);
+            Node<K, V> f = tab.get(i);
+            if (f == null) {
+                return null;
+            }
+            if (f.hash == MOVED) {
+                tab = helpTransfer((ForwardingNode<K, V>) f);
+                continue;
+            }
+            Node<K, V> removed = null;
+            boolean checked = false;
+            synchronized (f) {
+                if (tab.get(i) == f) {
+                    checked = true;
+                    Node<K, V> pred = null;
+                    for (Node<K, V> e = f; e != null; pred = e, e = e.next) {
+                        if (e.hash == hash && (e.key == key || e.key.equals(key))) {
+                            if (pred == null) {
+                                tab.set(i, e.next);
+                            } else {
+                                pred.next = e.next;
+                            }
+                            removed = e;
+                            break;
+                        }
+                    }
+                }
+            }
+            if (checked) {
+                if (removed == null) {
+                    return null;
+                }
+                addCount(-1);
+                return removed.val;
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        long removed = 0;
+        AtomicReferenceArray<Node<K, V>> tab = table;
+        int i = 0;
+        while (i < tab.length()) {
+            Node<K, V> f = tab.get(i);
+            if (f == null) {
+                i++;
+            } else if (f.hash == MOVED) {
+                tab = helpTransfer((ForwardingNode<K, V>) f);
+                i = 0;
+            } else {
+                synchronized (f) {
+                    if (tab.get(i) == f) {
+                        for (Node<K, V> e = f; e != null; e = e.next) {
+                            removed++;
+                        }
+                        tab.set(i++, null);
+                    }
+                }
+            }
+        }
+        if (removed != 0) {
+            addCount(-removed);
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * @return the entry count from one pass over the counter cells, exact
+     *          when no update is in flight and otherwise an estimate;
+     *          clamped to 0 and Integer.MAX_VALUE
+     */
+    @Override
+    public int size() {
+        long n = sumCount();
+        return n < 0 ? 0 : n > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) n;
+    }
+
+    /**
+     * Sums the add and remove cells in one pass. Updates landing during the
+     * pass may or may not be counted, which is close enough for size() and
+     * the resize threshold, and never waits on writers.
+     */
+    private long sumCount() {
+        long n = 0;
+        for (int i = 0; i <= counterMask; i++) {
+            n += counters.get(i * CELL_PAD) - counters.get(i * CELL_PAD + 1);
+        }
+        return n;
+    }
+
+    /**
+     * @return the number of buckets in the current table
+     */
+    public int capacity() {
+        return table.length();
+    }
+
+    private void addCount(long delta) {
+        int stripe = HashTable.spread(Thread.currentThread()) & counterMask;
+        if (delta > 0) {
+            counters.addAndGet(stripe * CELL_PAD, delta);
+        } else {
+            counters.addAndGet(stripe * CELL_PAD + 1, -delta);
+        }
+    }
+
+    /**
+     * Starts a resize when the table is over its threshold, or helps the one
+     * already running.
+     */
+    private void checkResize() {
+        while (sumCount() >= threshold) {
+            ResizeState<K, V> state = resizeState.get();
+            if (state != null) {
+                if (state.join()) {
+                    transfer(state);
+                }
+                return;
+            }
+            // read after resizeState: the committing thread installs the new
+            // table before clearing resizeState
+            AtomicReferenceArray<Node<K, V>> tab = table;
+            if (tab.length() >= MAXIMUM_CAPACITY) {
+                return;
+            }
+            if (sumCount() < threshold) {
+                return;
+            }
+            ResizeState<K, V> created = new ResizeState<>(tab);
+            if (resizeState.compareAndSet(null, created)) {
+                if (table != tab) {
+                    // lost a race with a resize that just committed
+                    resizeState.compareAndSet(created, null);
+                    continue;
+                }
+                transfer(created);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Joins the resize that forwarded a bucket, if it still has work left.
+     *
+     * @return the table the forwarded bucket now lives in
+     */
+    private AtomicReferenceArray<Node<K, V>> helpTransfer(ForwardingNode<K, V> f) {
+        ResizeState<K, V> state = resizeState.get();
+        if (state != null && state.nextTable == f.nextTable && state.join()) {
+            transfer(state);
+        }
+        return f.nextTable;
+    }
+
+    /**
+     * Copies strides of buckets into the new table until none are left, then
+     * leaves the resize, installing the new table if this was the last
+     * active resizer.
+     */
+    private void transfer(ResizeState<K, V> state) {
+        AtomicReferenceArray<Node<K, V>> tab = state.table;
+        AtomicReferenceArray<Node<K, V>> nextTab = state.nextTable;
+        int n = tab.length();
+        int stride = Math.max(MIN_TRANSFER_STRIDE, n / (8 * NCPU));
+        for (;;) {
+            int hi = state.transferIndex.get();
+            if (hi <= 0) {
+                break;
+            }
+            int lo = Math.max(0, hi - stride);
+            if (!state.transferIndex.compareAndSet(hi, lo)) {
+                continue;
+            }
+            for (int i = hi - 1; i >= lo; ) {
+                if (transferBucket(state, tab, nextTab, i, n)) {
+                    i--;
+                }
+            }
+        }
+        if (state.active.decrementAndGet() == 0) {
+            // a state created against a table that was already replaced
+            // finds only forwarded buckets and must not be installed
+            if (table == tab) {
+                table = nextTab;
+                threshold = thresholdFor(nextTab.length());
+            }
+            resizeState.compareAndSet(state, null);
+        }
+    }
+
+    /**
+     * @return false if the bucket changed underneath and must be retried
+     */
+    private boolean transferBucket(ResizeState<K, V> state, AtomicReferenceArray<Node<K, V>> tab,
+            AtomicReferenceArray<Node<K, V>> nextTab, int i, int n) {
+        Node<K, V> f = tab.get(i);
+        if (f == null) {
+            return tab.compareAndSet(i, null, state.forward);
+        }
+        if (f.hash == MOVED) {
+            return true;
+        }
+        synchronized (f) {
+            if (tab.get(i) != f) {
+                return false;
+            }
+            Node<K, V> low = null;
+            Node<K, V> high = null;
+            for (Node<K, V> e = f; e != null; e = e.next) {
+                if ((e.hash & n) == 0) {
+                    low = new Node<>(e.hash, e.key, e.val, low);
+                } else {
+                    high = new Node<>(e.hash, e.key, e.val, high);
+                }
+            }
+            nextTab.set(i, low);
+            nextTab.set(i + n, high);
+            tab.set(i, state.forward);
+        }
+        return true;
+    }
+}
@@ -1,4 +1,3 @@
-
 /////////////////////////////////////////////////////////////////////////////
 // 
 // Project:          HashTable with Performance Analysis
@@ -14,177 +13,1105 @@
 //
 //////////////////////////// 80 columns wide //////////////////////////////////
 
-import java.lang.reflect.Array;
-import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Objects;
 
+/**
+ * Chained hash table. Keys are hashed with their spread hashCode into a
+ * power-of-two table, so the bucket index is a mask instead of a modulo,
+ * and every node is redistributed when the table grows.
+ *
+ * In incremental mode a resize allocates the new table but leaves the old
+ * one in place; every put, get and remove then moves a few buckets across
+ * until the old table is drained, so no single call pays for the whole
+ * rehash. Incremental tables also shrink once they fall well below the
+ * load factor.
+ *
+ * A chain that reaches TREEIFY_THRESHOLD nodes is turned into a TreeBin,
+ * a balanced tree ordered by hash and then by compareTo, so keys that all
+ * collide into one bucket cost O(log n) per lookup rather than O(n).
+ */
 public class HashTable<K, V> implements HashTableADT<K, V> {
     /* Instance variables and constructors
      */
-	protected class HashNode<K, V> {
-		private K k;
-		private V v;
-		private HashNode<K, V> next;
+	protected static class HashNode<K, V> implements Map.Entry<K, V> {
+		final int hash;
+		final K k;
+		V v;
+		HashNode<K, V> next;
 		
-		public HashNode(K k, V v) { //CONSTRUCTOR
+		HashNode(int hash, K k, V v, HashNode<K, V> next) { //CONSTRUCTOR
+			this.hash = hash;
 			this.k = k;
 			this.v = v;
+			this.next = next;
+		}
+		
+		@Override
+		public K getKey() { return k; }
+		
+		@Override
+		public V getValue() { return v; }
+		
+		@Override
+		public V setValue(V value) {	//writes through to the table
+			V old = v;
+			v = value;
+			return old;
+		}
+		
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Map.Entry))
+			{
+				return false;
+			}
+			Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+			return Objects.equals(k, e.getKey()) && Objects.equals(v, e.getValue());
+		}
+		
+		@Override
+		public int hashCode() {
+			return Objects.hashCode(k) ^ Objects.hashCode(v);
+		}
+		
+		@Override
+		public String toString() {
+			return k + "=" + v;
 		}
 	}
+	
+	static final int MAXIMUM_CAPACITY = 1 << 30;
+	
+	// buckets moved out of the old table by each operation while an
+	// incremental resize is in progress
+	static final int MIGRATION_STEP = 8;
+	
+	// an incremental table halves once its load drops below
+	// loadFactor / SHRINK_DIVISOR
+	static final int SHRINK_DIVISOR = 4;
+	
+	// chain length at which a bucket becomes a TreeBin
+	static final int TREEIFY_THRESHOLD = 8;
+	
+	// node count at which a TreeBin goes back to a chain, kept below
+	// TREEIFY_THRESHOLD so a bucket does not flip on every put/remove
+	static final int UNTREEIFY_THRESHOLD = 6;
+	
+	// smaller tables leave long chains as lists, since a long chain there
+	// is usually just a full table; the load factor grows the table soon
+	// enough, and resizing treeifies any chain still long once it is large
+	static final int MIN_TREEIFY_CAPACITY = 64;
+	
+	// keys hashed ahead of their probes by the bulk operations
+	static final int BULK_CHUNK = 64;
+	
 	private HashNode<K, V>[] table;
-	private int tableSize = 7;//capacity of HashTable 
+	private int tableSize;	//capacity of HashTable, always a power of two
 	private double loadFactor = 0.8;	//maximum load factor of HashTable 
+	private int threshold;	//size at which the table doubles
 	private int num; //number of current items inside HashTable
 	
+	private final boolean incremental;	//spread resizes over later operations
+	private final int minimumSize;	//incremental tables never shrink below this
+	private HashNode<K, V>[] oldTable;	//table being drained, null when idle
+	private int oldSize;
+	private int migrateIndex;	//old buckets below this index are already moved
+	int modCount;	//structural changes, checked by HashTableSpliterator
+	private HashTableStats stats;	//null unless enableStats was called
+	private BlockedBloomFilter bloom;	//null unless enableBloomFilter was called
+	private BlockedBloomFilter nextBloom;	//filled by migrate, replaces bloom when done
+	private int bloomRemovals;	//keys removed since bloom was built
+	
 	public HashTable()
 	{
 		this(7, 0.8);
 	}
+	
 	public HashTable(int initialCapacity, double loadFactor) {
+		this(initialCapacity, loadFactor, false);
+	}
+	
+	/**
+	 * @param initialCapacity: number of buckets to start with, rounded up
+	 *          to a power of two
+	 * @param loadFactor: entries per bucket that triggers a resize
+	 * @param incremental: true to migrate buckets a few at a time instead
+	 *          of rehashing the whole table inside one put
+	 */
+	public HashTable(int initialCapacity, double loadFactor, boolean incremental) {
+		if (initialCapacity < 0)
+		{
+			throw new IllegalArgumentException("Illegal capacity: " + initialCapacity);
+		}
+		if (!(loadFactor > 0))
+		{
+			throw new IllegalArgumentException("Illegal load factor: " + loadFactor);
+		}
 		this.loadFactor = loadFactor;
-		this.tableSize = initialCapacity;
-		table = new HashNode[tableSize];
-		for (int i = 0; i < tableSize; i++) {
-			table[i] = null;
-		}	
+		this.incremental = incremental;
+		this.tableSize = tableSizeFor(initialCapacity);
+		this.minimumSize = tableSize;
+		this.threshold = thresholdFor(tableSize);
+		table = newTable(tableSize);
 	}
 
-    private int getHashNum(K key)
+    /**
+     * Mixes the high bits of the hashCode into the low bits, since only the
+     * low bits select a bucket in a power-of-two table.
+     */
+    static int spread(Object key)
     {
-    		int hashCode = key.hashCode();
-    		int hashNum = hashCode % tableSize;
-    		return hashNum;
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
     }
-    
+
+    /**
+     * @return the smallest power of two that is at least cap
+     */
+    static int tableSizeFor(int cap)
+    {
+        int n = 1;
+        while (n < cap && n < MAXIMUM_CAPACITY)
+        {
+            n <<= 1;
+        }
+        return n;
+    }
+
+    private int thresholdFor(int capacity)
+    {
+        if (capacity >= MAXIMUM_CAPACITY)
+        {
+            return Integer.MAX_VALUE;
+        }
+        return (int) Math.min(capacity * loadFactor, Integer.MAX_VALUE);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <K, V> HashNode<K, V>[] newTable(int size)
+    {
+        return (HashNode<K, V>[]) new HashNode[size];
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, V> HashNode<K, V> findInBucket(HashNode<K, V> node, int hash, K key)
+    {
+        if (node instanceof TreeBin)
+        {
+            return ((TreeBin<K, V>) node).find(hash, key);
+        }
+        while (node != null)
+        {
+            if (node.hash == hash && (node.k == key || node.k.equals(key)))
+            {
+                return node;
+            }
+            node = node.next;
+        }
+        return null;
+    }
+
+    private HashNode<K, V> findNode(int hash, K key)
+    {
+        if (oldTable != null)
+        {
+            int oldIndex = hash & (oldSize - 1);
+            if (oldIndex >= migrateIndex)
+            {
+                HashNode<K, V> node = findInBucket(oldTable[oldIndex], hash, key);
+                if (node != null)
+                {
+                    return node;
+                }
+            }
+        }
+        return findInBucket(table[hash & (tableSize - 1)], hash, key);
+    }
+
+    /**
+     * findNode for the read paths; with stats enabled it also counts the
+     * nodes it compares. Tables without stats pay one null check.
+     */
+    private HashNode<K, V> lookup(int hash, K key)
+    {
+        if (bloom != null && !bloom.mightContain(hash))
+        {
+            if (stats != null)
+            {
+                stats.recordBloomRejection();
+                stats.recordGet(0, false);
+            }
+            return null;
+        }
+        if (stats == null)
+        {
+            return findNode(hash, key);
+        }
+        int probes = 0;
+        if (oldTable != null && (hash & (oldSize - 1)) >= migrateIndex)
+        {
+            probes += probesInBucket(oldTable[hash & (oldSize - 1)], hash, key);
+        }
+        probes += probesInBucket(table[hash & (tableSize - 1)], hash, key);
+        HashNode<K, V> node = findNode(hash, key);
+        stats.recordGet(probes, node != null);
+        return node;
+    }
+
+    /**
+     * @return nodes a search of bucket compares before it finds key or
+     *          runs out
+     */
+    @SuppressWarnings("unchecked")
+    private static <K, V> int probesInBucket(HashNode<K, V> bucket, int hash, K key)
+    {
+        if (bucket instanceof TreeBin)
+        {
+            return ((TreeBin<K, V>) bucket).probes(hash, key);
+        }
+        int probes = 0;
+        for (HashNode<K, V> e = bucket; e != null; e = e.next)
+        {
+            probes++;
+            if (e.hash == hash && (e.k == key || e.k.equals(key)))
+            {
+                break;
+            }
+        }
+        return probes;
+    }
+
+    /**
+     * @return the nodes of a bucket as a plain chain, emptying a TreeBin
+     */
+    @SuppressWarnings("unchecked")
+    private static <K, V> HashNode<K, V> chainOf(HashNode<K, V> bucket)
+    {
+        if (bucket instanceof TreeBin)
+        {
+            return ((TreeBin<K, V>) bucket).toList();
+        }
+        return bucket;
+    }
+
+    /**
+     * Adds node to the front of a chain, or into the tree of a TreeBin.
+     */
+    @SuppressWarnings("unchecked")
+    private static <K, V> void link(HashNode<K, V>[] tab, int index, HashNode<K, V> node)
+    {
+        HashNode<K, V> head = tab[index];
+        if (head instanceof TreeBin)
+        {
+            ((TreeBin<K, V>) head).insert(node);
+        }
+        else
+        {
+            node.next = head;
+            tab[index] = node;
+        }
+    }
+
+    /**
+     * Turns the chain at tab[index] into a TreeBin if it has reached
+     * TREEIFY_THRESHOLD nodes and the table has MIN_TREEIFY_CAPACITY
+     * buckets; in a smaller table the chain is left as a list.
+     */
+    private static <K, V> void treeifyIfLong(HashNode<K, V>[] tab, int index)
+    {
+        HashNode<K, V> head = tab[index];
+        if (head instanceof TreeBin || tab.length < MIN_TREEIFY_CAPACITY)
+        {
+            return;
+        }
+        int length = 0;
+        for (HashNode<K, V> e = head; e != null; e = e.next)
+        {
+            if (++length >= TREEIFY_THRESHOLD)
+            {
+                tab[index] = TreeBin.of(head);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Starts moving every node into a table of newSize buckets. Incremental
+     * tables keep the old array around and drain it from later operations,
+     * otherwise the move happens right away.
+     */
+    private void startResize(int newSize)
+    {
+        if (oldTable != null)
+        {
+            finishMigration();
+        }
+        if (!incremental)
+        {
+            resize();
+            return;
+        }
+        modCount++;
+        if (stats != null)
+        {
+            stats.recordResize();
+        }
+        oldTable = table;
+        oldSize = tableSize;
+        migrateIndex = 0;
+        table = newTable(newSize);
+        tableSize = newSize;
+        threshold = thresholdFor(newSize);
+        if (bloom != null)
+        {
+            // built up by migrate and by puts, swapped in once drained
+            nextBloom = new BlockedBloomFilter(Math.max(threshold, num));
+            bloomRemovals = 0;
+        }
+    }
+
+    /**
+     * Moves up to MIGRATION_STEP buckets from the old table into the
+     * current one. Nodes go to the front of their new chain, so the old
+     * table can be dropped as soon as the last bucket is moved.
+     */
+    private void migrate()
+    {
+        long start = stats == null ? 0 : System.nanoTime();
+        int end = Math.min(migrateIndex + MIGRATION_STEP, oldSize);
+        int mask = tableSize - 1;
+        for (int i = migrateIndex; i < end; i++)
+        {
+            HashNode<K, V> node = chainOf(oldTable[i]);
+            oldTable[i] = null;
+            while (node != null)
+            {
+                HashNode<K, V> next = node.next;
+                link(table, node.hash & mask, node);
+                if (nextBloom != null)
+                {
+                    nextBloom.add(node.hash);
+                }
+                node = next;
+            }
+            // old bucket i lands in i and i + oldSize when growing, and in
+            // i & mask when shrinking
+            treeifyIfLong(table, i & mask);
+            if (tableSize > oldSize)
+            {
+                treeifyIfLong(table, i + oldSize);
+            }
+        }
+        migrateIndex = end;
+        if (migrateIndex >= oldSize)
+        {
+            oldTable = null;
+            oldSize = 0;
+            migrateIndex = 0;
+            if (nextBloom != null)
+            {
+                bloom = nextBloom;
+                nextBloom = null;
+            }
+        }
+        if (stats != null)
+        {
+            stats.recordResizeTime(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Drains whatever is left of an incremental resize.
+     */
+    void finishMigration()
+    {
+        while (oldTable != null)
+        {
+            migrate();
+        }
+    }
+
+    /**
+     * @return true while an incremental resize still has buckets to move
+     */
+    public boolean isMigrating()
+    {
+        return oldTable != null;
+    }
+
+    /**
+     * Doubles the table and moves every node into its new bucket. Because
+     * the size is a power of two, a node in bucket i either stays at i or
+     * moves to i + oldSize, so each chain splits into a low and high list
+     * and keeps its relative order.
+     */
     private void resize()
     {
-    		double loadFactor = (num/tableSize);
-    		if (loadFactor > this.loadFactor)
-    		{
-    			int newSize = tableSize * 2;
-    			tableSize = newSize;
-    			HashNode<K, V>[] newTable = new HashNode[newSize];
-    			for (int i = 0; i < tableSize; i++)
-    			{
-    				newTable[i] = table[i];
-    				table = newTable;
-    			}
-    		}
+        if (tableSize >= MAXIMUM_CAPACITY)
+        {
+            threshold = Integer.MAX_VALUE;
+            return;
+        }
+        long start = stats == null ? 0 : System.nanoTime();
+        int oldSize = tableSize;
+        int newSize = oldSize << 1;
+        HashNode<K, V>[] oldTable = table;
+        HashNode<K, V>[] newTable = newTable(newSize);
+        for (int i = 0; i < oldSize; i++)
+        {
+            HashNode<K, V> node = chainOf(oldTable[i]);
+            HashNode<K, V> loHead = null, loTail = null;
+            HashNode<K, V> hiHead = null, hiTail = null;
+            while (node != null)
+            {
+                HashNode<K, V> next = node.next;
+                node.next = null;
+                if ((node.hash & oldSize) == 0)
+                {
+                    if (loTail == null) loHead = node; else loTail.next = node;
+                    loTail = node;
+                }
+                else
+                {
+                    if (hiTail == null) hiHead = node; else hiTail.next = node;
+                    hiTail = node;
+                }
+                node = next;
+            }
+            newTable[i] = loHead;
+            newTable[i + oldSize] = hiHead;
+            treeifyIfLong(newTable, i);
+            treeifyIfLong(newTable, i + oldSize);
+        }
+        table = newTable;
+        tableSize = newSize;
+        threshold = thresholdFor(newSize);
+        modCount++;
+        if (bloom != null)
+        {
+            rebuildBloomFilter();
+        }
+        if (stats != null)
+        {
+            stats.recordResize();
+            stats.recordResizeTime(System.nanoTime() - start);
+        }
     }
     
     @Override
-    public V put(K key, V value) { //check for null
-    	//TODO: Implement put method - using efficient algorithm
-    		if (key == null || get(key) != null)
-    		{
-    			throw new IllegalArgumentException("Invalid Key");
-    		}
-    		else
-    		{
-    			int hashValue = getHashNum(key);
-			if (table[hashValue] == null)
-			{
-				table[hashValue] = new HashNode<>(key, value);
-				num++;
-				resize();
-			}
-			else
-			{
-				HashNode<K, V> temp = table[hashValue];
-				temp.next = new HashNode<K, V>(key, value);
-				table[hashValue] = temp;
-				num++;
-				resize();
-    			}
-    		}
-		return value;
+    public V put(K key, V value) {
+        if (key == null)
+        {
+            throw new NullPointerException("Invalid Key");
+        }
+        if (oldTable != null)
+        {
+            migrate();
+        }
+        int hash = spread(key);
+        HashNode<K, V> existing = findNode(hash, key);
+        if (existing != null)
+        {
+            existing.v = value;
+            return value;
+        }
+        int index = hash & (tableSize - 1);
+        if (stats != null && table[index] != null)
+        {
+            stats.recordCollision();
+        }
+        link(table, index, new HashNode<>(hash, key, value, null));
+        treeifyIfLong(table, index);
+        bloomAdd(hash);
+        modCount++;
+        if (++num > threshold && tableSize < MAXIMUM_CAPACITY)
+        {
+            startResize(tableSize << 1);
+        }
+        return value;
+    }
+
+    /**
+     * Grows the table so that expected entries fit without another resize.
+     * Any incremental migration is finished first and the growth itself is
+     * done right away, since callers use this before a load that would
+     * otherwise resize several times.
+     * 
+     * @param expected: number of entries the table should hold
+     */
+    public void ensureCapacity(int expected)
+    {
+        finishMigration();
+        if (expected <= threshold)
+        {
+            return;
+        }
+        int target = tableSizeFor((int) Math.min(Math.ceil(expected / loadFactor), MAXIMUM_CAPACITY));
+        if (num == 0)
+        {
+            table = newTable(target);
+            tableSize = target;
+            threshold = thresholdFor(target);
+            modCount++;
+            if (bloom != null)
+            {
+                bloom = new BlockedBloomFilter(threshold);
+            }
+            return;
+        }
+        while (tableSize < target)
+        {
+            resize();
+        }
+    }
+
+    /**
+     * Fills hashes[0..n) with the spread hashes of keys[from..from+n).
+     */
+    private static <K> void hashChunk(K[] keys, int from, int n, int[] hashes)
+    {
+        for (int i = 0; i < n; i++)
+        {
+            hashes[i] = spread(keys[from + i]);
+        }
+    }
+
+    private static <K> void requireKeys(K[] keys)
+    {
+        for (K key : keys)
+        {
+            if (key == null)
+            {
+                throw new NullPointerException("Invalid Key");
+            }
+        }
+    }
+
+    /**
+     * Sizes the table for the whole batch, then hashes keys a chunk at a
+     * time ahead of the probes for that chunk, so the hashing loop and the
+     * bucket walks each run without the other in between.
+     */
+    @Override
+    public int putAll(K[] keys, V[] values)
+    {
+        if (values.length < keys.length)
+        {
+            throw new IllegalArgumentException("Fewer values than keys");
+        }
+        requireKeys(keys);
+        ensureCapacity((int) Math.min((long) num + keys.length, Integer.MAX_VALUE));
+        int[] hashes = new int[BULK_CHUNK];
+        int added = 0;
+        for (int from = 0; from < keys.length; from += BULK_CHUNK)
+        {
+            int n = Math.min(BULK_CHUNK, keys.length - from);
+            hashChunk(keys, from, n, hashes);
+            int mask = tableSize - 1;
+            for (int i = 0; i < n; i++)
+            {
+                int hash = hashes[i];
+                K key = keys[from + i];
+                HashNode<K, V> existing = findInBucket(table[hash & mask], hash, key);
+                if (existing != null)
+                {
+                    existing.v = values[from + i];
+                    continue;
+                }
+                int index = hash & mask;
+                if (stats != null && table[index] != null)
+                {
+                    stats.recordCollision();
+                }
+                link(table, index, new HashNode<>(hash, key, values[from + i], null));
+                treeifyIfLong(table, index);
+                bloomAdd(hash);
+                modCount++;
+                added++;
+                if (++num > threshold && tableSize < MAXIMUM_CAPACITY)
+                {
+                    // ensureCapacity normally makes this unreachable
+                    resize();
+                    mask = tableSize - 1;
+                }
+            }
+        }
+        return added;
+    }
+
+    @Override
+    public int getAll(K[] keys, V[] results)
+    {
+        if (results.length < keys.length)
+        {
+            throw new IllegalArgumentException("Results shorter than keys");
+        }
+        requireKeys(keys);
+        int[] hashes = new int[BULK_CHUNK];
+        int found = 0;
+        for (int from = 0; from < keys.length; from += BULK_CHUNK)
+        {
+            if (oldTable != null)
+            {
+                migrate();
+            }
+            int n = Math.min(BULK_CHUNK, keys.length - from);
+            hashChunk(keys, from, n, hashes);
+            for (int i = 0; i < n; i++)
+            {
+                HashNode<K, V> node = lookup(hashes[i], keys[from + i]);
+                if (node == null)
+                {
+                    results[from + i] = null;
+                }
+                else
+                {
+                    results[from + i] = node.v;
+                    found++;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Removes every key, checking for an incremental shrink once at the
+     * end of the batch rather than after each key.
+     */
+    @Override
+    public int removeAll(K[] keys)
+    {
+        requireKeys(keys);
+        int[] hashes = new int[BULK_CHUNK];
+        int removed = 0;
+        for (int from = 0; from < keys.length; from += BULK_CHUNK)
+        {
+            if (oldTable != null)
+            {
+                migrate();
+            }
+            int n = Math.min(BULK_CHUNK, keys.length - from);
+            hashChunk(keys, from, n, hashes);
+            for (int i = 0; i < n; i++)
+            {
+                int hash = hashes[i];
+                K key = keys[from + i];
+                if (bloom != null && !bloom.mightContain(hash))
+                {
+                    continue;
+                }
+                HashNode<K, V> node = null;
+                if (oldTable != null && (hash & (oldSize - 1)) >= migrateIndex)
+                {
+                    node = unlink(oldTable, hash & (oldSize - 1), hash, key);
+                }
+                if (node == null)
+                {
+                    node = unlink(table, hash & (tableSize - 1), hash, key);
+                }
+                if (node != null)
+                {
+                    removed++;
+                }
+            }
+        }
+        num -= removed;
+        modCount += removed;
+        afterRemovals(removed);
+        return removed;
     }
 
     @Override
     public void clear() {
-    		table = new HashNode[tableSize];
-    		num = 0;
+        table = newTable(tableSize);
+        oldTable = null;
+        oldSize = 0;
+        migrateIndex = 0;
+        num = 0;
+        modCount++;
+        if (bloom != null)
+        {
+            bloom = new BlockedBloomFilter(threshold);
+            nextBloom = null;
+            bloomRemovals = 0;
+        }
     }
 
     @Override
-    public V get(K key) { //check for null key)
-        //TODO: Implement the get method
+    public V get(K key) {
         if (key == null)
         {
-        		throw new IllegalArgumentException();
-        }
-    		for (int i = 0; i < tableSize; i++)
-        {
-        		if (table[i].k.equals(key))
-        		{
-        			return table[i].v;
-        		}
-        		else 
-        		{
-        			HashNode<K, V> temp = table[i].next;
-        			while(temp != null)
-        			{
-        				if (temp.k.equals(key))
-        				{
-        					return temp.v;
-        				}
-        				else
-        				{
-        					temp = temp.next;
-        				}
-        			}
-        		}
+            throw new NullPointerException("Invalid Key");
         }
-        return null;
+        if (oldTable != null)
+        {
+            migrate();
+        }
+        HashNode<K, V> node = lookup(spread(key), key);
+        if (node == null)
+        {
+            throw new NoSuchElementException("Key not found: " + key);
+        }
+        return node.v;
+    }
+
+    /**
+     * Lookup that reports a miss with a boolean instead of an exception,
+     * for callers that expect many absent keys.
+     * 
+     * @param key: key to look for
+     * @return true if the key has a mapping in this table
+     */
+    public boolean containsKey(K key)
+    {
+        if (key == null)
+        {
+            throw new NullPointerException("Invalid Key");
+        }
+        return lookup(spread(key), key) != null;
     }
 
     @Override
     public boolean isEmpty() 
     {
-    		return num == 0; 
+        return num == 0; 
     }
 
     @Override
     public V remove(K key) {
-       //TODO: Implement the remove method
-        if (key == null || get(key) == null)
+        if (key == null)
         {
-        		throw new IllegalArgumentException();
+            throw new NullPointerException("Invalid Key");
         }
-        int hashValue = getHashNum(key);
-        if (table[hashValue].k.equals(key))
+        if (oldTable != null)
         {
-        		V ret = table[hashValue].v;
-        		table[hashValue] = table[hashValue].next;
-        		return ret;
+            migrate();
         }
-        else
+        int hash = spread(key);
+        if (bloom != null && !bloom.mightContain(hash))
+        {
+            return null;
+        }
+        HashNode<K, V> removed = null;
+        if (oldTable != null && (hash & (oldSize - 1)) >= migrateIndex)
+        {
+            removed = unlink(oldTable, hash & (oldSize - 1), hash, key);
+        }
+        if (removed == null)
+        {
+            removed = unlink(table, hash & (tableSize - 1), hash, key);
+        }
+        if (removed == null)
+        {
+            return null;
+        }
+        num--;
+        modCount++;
+        afterRemovals(1);
+        return removed.v; 
+    }
+
+    /**
+     * Shrinks an incremental table that has fallen well below its load
+     * factor, and rebuilds the Bloom filter once removed keys make up half
+     * of what it was sized for. Incremental tables rebuild it through a
+     * same-size resize, so the work is spread out like any other resize.
+     */
+    private void afterRemovals(int removed)
+    {
+        if (incremental && oldTable == null && tableSize > minimumSize
+                && num < tableSize * loadFactor / SHRINK_DIVISOR)
+        {
+            startResize(tableSize >>> 1);
+        }
+        if (bloom == null || removed == 0)
+        {
+            return;
+        }
+        bloomRemovals += removed;
+        if (nextBloom == null && bloomRemovals > bloom.expected() / 2)
+        {
+            if (incremental)
+            {
+                startResize(tableSize);
+            }
+            else
+            {
+                rebuildBloomFilter();
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, V> HashNode<K, V> unlink(HashNode<K, V>[] tab, int index, int hash, K key)
+    {
+        if (tab[index] instanceof TreeBin)
+        {
+            TreeBin<K, V> bin = (TreeBin<K, V>) tab[index];
+            HashNode<K, V> removed = bin.remove(hash, key);
+            if (bin.count() <= UNTREEIFY_THRESHOLD)
+            {
+                tab[index] = bin.toList();
+            }
+            return removed;
+        }
+        HashNode<K, V> prev = null;
+        HashNode<K, V> curr = tab[index];
+        while (curr != null)
         {
-        		
-        		HashNode<K, V> prev = null;
-        		HashNode<K, V> curr = table[hashValue];
-        		prev.next = curr;
-        		while (curr.next != null)
-        		{
-        			if (curr.k.equals(key))
-        			{
-        				prev.next = curr.next;
-        				return curr.v;
-        			}
-        			else 
-        			{
-        				prev = curr;
-        				curr = curr.next;
-        			}
-        		}
-        }
-		return null; 
+            if (curr.hash == hash && (curr.k == key || curr.k.equals(key)))
+            {
+                if (prev == null)
+                {
+                    tab[index] = curr.next;
+                }
+                else
+                {
+                    prev.next = curr.next;
+                }
+                return curr;
+            }
+            prev = curr;
+            curr = curr.next;
+        }
+        return null;
     }
 
     @Override
     public int size() 
+    {
+        return num;
+    }
+
+    /**
+     * @return the number of buckets currently allocated
+     */
+    public int capacity()
     {
         return tableSize;
     }
+
+    /**
+     * Passes every node to action, including nodes still waiting in the old
+     * table of an incremental resize. Does not change the table.
+     */
+    void forEachNode(java.util.function.Consumer<HashNode<K, V>> action)
+    {
+        if (oldTable != null)
+        {
+            for (int i = migrateIndex; i < oldSize; i++)
+            {
+                forEachInBucket(oldTable[i], action);
+            }
+        }
+        for (int i = 0; i < tableSize; i++)
+        {
+            forEachInBucket(table[i], action);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, V> void forEachInBucket(HashNode<K, V> bucket,
+            java.util.function.Consumer<HashNode<K, V>> action)
+    {
+        if (bucket instanceof TreeBin)
+        {
+            ((TreeBin<K, V>) bucket).forEachNode(action);
+            return;
+        }
+        for (HashNode<K, V> e = bucket; e != null; e = e.next)
+        {
+            action.accept(e);
+        }
+    }
+
+    /**
+     * Starts counting probes, collisions and resizes for this table. The
+     * counters cost a few branches and a nanoTime call per resize step, so
+     * tables only pay for them once this is called.
+     * 
+     * @return the counters, also available from stats()
+     */
+    public HashTableStats enableStats()
+    {
+        if (stats == null)
+        {
+            stats = new HashTableStats();
+        }
+        return stats;
+    }
+
+    /**
+     * Puts a Bloom filter of key hashes in front of the buckets, so get,
+     * containsKey and remove of an absent key usually return without
+     * reading a bucket. put keeps the filter current; resizes rebuild it
+     * at the new size and so do enough removals, which a Bloom filter
+     * cannot forget on its own. Costs BITS_PER_KEY bits per entry the
+     * table can hold before its next resize.
+     */
+    public void enableBloomFilter()
+    {
+        if (bloom == null)
+        {
+            finishMigration();
+            rebuildBloomFilter();
+        }
+    }
+
+    /**
+     * Builds a new filter from the keys present now, sized for the
+     * current threshold.
+     */
+    private void rebuildBloomFilter()
+    {
+        BlockedBloomFilter filter = new BlockedBloomFilter(Math.max(threshold, num));
+        forEachNode(node -> filter.add(node.hash));
+        bloom = filter;
+        bloomRemovals = 0;
+    }
+
+    private void bloomAdd(int hash)
+    {
+        if (bloom != null)
+        {
+            bloom.add(hash);
+            if (nextBloom != null)
+            {
+                nextBloom.add(hash);
+            }
+        }
+    }
+
+    /**
+     * @return the counters started by enableStats, or null
+     */
+    public HashTableStats stats()
+    {
+        return stats;
+    }
+
+    /**
+     * @return entries per bucket right now, as opposed to the load factor
+     *          that triggers a resize
+     */
+    public double currentLoad()
+    {
+        return (double) num / tableSize;
+    }
+
+    /**
+     * Counts buckets by chain length: index i holds the number of buckets
+     * with i nodes, and the last index, TREEIFY_THRESHOLD, holds every
+     * bucket with at least that many nodes, TreeBins included. Finishes any
+     * incremental resize first so each bucket is counted once.
+     */
+    public int[] chainLengthHistogram()
+    {
+        finishMigration();
+        int[] histogram = new int[TREEIFY_THRESHOLD + 1];
+        for (int i = 0; i < tableSize; i++)
+        {
+            int length = 0;
+            if (table[i] instanceof TreeBin)
+            {
+                length = TREEIFY_THRESHOLD;
+            }
+            else
+            {
+                for (HashNode<K, V> e = table[i]; e != null && length < TREEIFY_THRESHOLD; e = e.next)
+                {
+                    length++;
+                }
+            }
+            histogram[length]++;
+        }
+        return histogram;
+    }
+
+    /**
+     * @return the bucket array for HashTableSpliterator, with any
+     *          incremental resize finished so every node is in it
+     */
+    HashNode<K, V>[] settledTable()
+    {
+        finishMigration();
+        return table;
+    }
+
+    /**
+     * @return a view of the keys; its spliterator splits by bucket range,
+     *          so StreamSupport.stream(keys().spliterator(), true) scans
+     *          the table in parallel
+     */
+    public Iterable<K> keys()
+    {
+        return view(node -> node.k);
+    }
+
+    /**
+     * @return a view of the values, split the same way as keys()
+     */
+    public Iterable<V> values()
+    {
+        return view(node -> node.v);
+    }
+
+    /**
+     * @return a view of the entries, split the same way as keys();
+     *          setValue on an entry writes through to the table
+     */
+    public Iterable<Map.Entry<K, V>> entries()
+    {
+        return view(node -> node);
+    }
+
+    private <T> Iterable<T> view(java.util.function.Function<HashNode<K, V>, T> mapper)
+    {
+        return new Iterable<T>()
+        {
+            @Override
+            public java.util.Iterator<T> iterator()
+            {
+                return java.util.Spliterators.iterator(spliterator());
+            }
+
+            @Override
+            public java.util.Spliterator<T> spliterator()
+            {
+                return new HashTableSpliterator<>(HashTable.this, mapper);
+            }
+        };
+    }
+
+    /**
+     * Writes every entry to a snapshot file that openSnapshot can map back
+     * in without rebuilding the table. Keys must have a hashCode that is
+     * the same in every JVM, as String and the boxed primitives do.
+     * 
+     * @param path: file to create or overwrite
+     * @param keyCodec: encodes keys
+     * @param valueCodec: encodes values
+     * @throws IOException if the file cannot be written
+     */
+    public void saveSnapshot(String path, Codec<K> keyCodec, Codec<V> valueCodec)
+            throws java.io.IOException
+    {
+        MappedHashTable.write(this, path, keyCodec, valueCodec);
+    }
+
+    /**
+     * Maps a file written by saveSnapshot. Only the header is read here;
+     * pages of the file are faulted in as lookups touch them.
+     * 
+     * @return a read-only table over the mapped file; close it to unmap
+     * @throws IOException if the file is missing, truncated or its header
+     *          fails the checksum
+     */
+    public static <K, V> MappedHashTable<K, V> openSnapshot(String path, Codec<K> keyCodec,
+            Codec<V> valueCodec) throws java.io.IOException
+    {
+        return MappedHashTable.open(path, keyCodec, valueCodec);
+    }
 }
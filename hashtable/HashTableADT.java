@@ -49,4 +49,74 @@ public interface HashTableADT<K, V> {
      * @return: The total number of entries in the hashtable
      */
     int size();
+
+    /**
+     * Puts keys[i] -> values[i] for every i. Implementations may size the
+     * table for the whole batch up front.
+     *
+     * @param keys: keys to add, none of them null
+     * @param values: values for the keys, at least as long as keys
+     * @return number of keys that did not already have a mapping
+     * @throws NullPointerException if any key is null, before anything
+     *          is added
+     */
+    default int putAll(K[] keys, V[] values) throws NullPointerException {
+        if (values.length < keys.length) {
+            throw new IllegalArgumentException("Fewer values than keys");
+        }
+        for (K key : keys) {
+            if (key == null) {
+                throw new NullPointerException("Invalid Key");
+            }
+        }
+        int before = size();
+        for (int i = 0; i < keys.length; i++) {
+            put(keys[i], values[i]);
+        }
+        return size() - before;
+    }
+
+    /**
+     * Looks up every key without throwing on a miss.
+     *
+     * @param keys: keys to look up, none of them null
+     * @param results: receives the value of keys[i] at index i, or null if
+     *          keys[i] has no mapping; at least as long as keys
+     * @return number of keys that were found
+     */
+    default int getAll(K[] keys, V[] results) throws NullPointerException {
+        if (results.length < keys.length) {
+            throw new IllegalArgumentException("Results shorter than keys");
+        }
+        int found = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == null) {
+                throw new NullPointerException("Invalid Key");
+            }
+            try {
+                results[i] = get(keys[i]);
+                found++;
+            } catch (NoSuchElementException e) {
+                results[i] = null;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @param keys: keys whose mappings are removed, none of them null
+     * @return number of keys that had a mapping
+     */
+    default int removeAll(K[] keys) throws NullPointerException {
+        for (K key : keys) {
+            if (key == null) {
+                throw new NullPointerException("Invalid Key");
+            }
+        }
+        int before = size();
+        for (K key : keys) {
+            remove(key);
+        }
+        return before - size();
+    }
 }
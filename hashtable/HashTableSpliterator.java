@@ -0,0 +1,166 @@
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Spliterator over the buckets of a HashTable. It covers a range of bucket
+ * indexes and trySplit hands the lower half of the range to a new
+ * spliterator, so a parallel stream gives each fork-join task a contiguous
+ * slice of the table and never touches the same bucket twice.
+ *
+ * The table is bound on first use rather than at creation, and binding
+ * finishes any incremental resize so every node sits in one array. Like
+ * the java.util collections it is fail-fast: a structural change to the
+ * table after binding makes the traversal throw
+ * ConcurrentModificationException.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ * @param <T> element type the nodes are mapped to
+ */
+class HashTableSpliterator<K, V, T> implements Spliterator<T> {
+
+    private final HashTable<K, V> owner;
+    private final Function<HashTable.HashNode<K, V>, T> mapper;
+    private HashTable.HashNode<K, V>[] table;
+    private int index;              // next bucket to open
+    private int fence;              // one past the last bucket, -1 until bound
+    private long estimate;
+    private int expectedModCount;
+    private HashTable.HashNode<K, V> current;   // next node of an open chain
+    private ArrayList<HashTable.HashNode<K, V>> treeNodes;  // nodes of an open TreeBin
+    private int treeIndex;
+
+    HashTableSpliterator(HashTable<K, V> owner, Function<HashTable.HashNode<K, V>, T> mapper) {
+        this.owner = owner;
+        this.mapper = mapper;
+        this.fence = -1;
+    }
+
+    private HashTableSpliterator(HashTableSpliterator<K, V, T> parent, int index, int fence,
+            long estimate) {
+        this.owner = parent.owner;
+        this.mapper = parent.mapper;
+        this.table = parent.table;
+        this.index = index;
+        this.fence = fence;
+        this.estimate = estimate;
+        this.expectedModCount = parent.expectedModCount;
+    }
+
+    private int fence() {
+        if (fence < 0) {
+            table = owner.settledTable();
+            expectedModCount = owner.modCount;
+            estimate = owner.size();
+            fence = table.length;
+        }
+        return fence;
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+        int hi = fence();
+        int lo = index;
+        int mid = (lo + hi) >>> 1;
+        if (lo >= mid || current != null || treeNodes != null) {
+            return null;
+        }
+        index = mid;
+        estimate >>>= 1;
+        return new HashTableSpliterator<>(this, lo, mid, estimate);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        if (action == null) {
+            throw new NullPointerException();
+        }
+        int hi = fence();
+        for (;;) {
+            HashTable.HashNode<K, V> node = null;
+            if (current != null) {
+                node = current;
+                current = node.next;
+            } else if (treeNodes != null) {
+                node = treeNodes.get(treeIndex++);
+                if (treeIndex == treeNodes.size()) {
+                    treeNodes = null;
+                }
+            } else if (index < hi) {
+                open(table[index++]);
+                continue;
+            } else {
+                return false;
+            }
+            action.accept(mapper.apply(node));
+            checkModCount();
+            return true;
+        }
+    }
+
+    /**
+     * Makes bucket the source of the next nodes handed out by tryAdvance.
+     */
+    private void open(HashTable.HashNode<K, V> bucket) {
+        if (bucket instanceof TreeBin) {
+            ArrayList<HashTable.HashNode<K, V>> nodes = new ArrayList<>();
+            ((TreeBin<K, V>) bucket).forEachNode(nodes::add);
+            if (!nodes.isEmpty()) {
+                treeNodes = nodes;
+                treeIndex = 0;
+            }
+        } else {
+            current = bucket;
+        }
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super T> action) {
+        if (action == null) {
+            throw new NullPointerException();
+        }
+        int hi = fence();
+        // finish whatever bucket tryAdvance left open
+        while (current != null || treeNodes != null) {
+            tryAdvance(action);
+        }
+        HashTable.HashNode<K, V>[] tab = table;
+        for (int i = index; i < hi; i++) {
+            HashTable.HashNode<K, V> bucket = tab[i];
+            if (bucket instanceof TreeBin) {
+                ((TreeBin<K, V>) bucket).forEachNode(node -> action.accept(mapper.apply(node)));
+            } else {
+                for (HashTable.HashNode<K, V> e = bucket; e != null; e = e.next) {
+                    action.accept(mapper.apply(e));
+                }
+            }
+        }
+        index = hi;
+        checkModCount();
+    }
+
+    private void checkModCount() {
+        if (owner.modCount != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+    }
+
+    @Override
+    public long estimateSize() {
+        fence();
+        return estimate;
+    }
+
+    /**
+     * Only an unsplit spliterator knows its exact size, so SIZED is
+     * reported until the first split, as HashMap does.
+     */
+    @Override
+    public int characteristics() {
+        int sized = (fence < 0 || estimate == owner.size()) ? Spliterator.SIZED : 0;
+        return sized | Spliterator.DISTINCT;
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ * Counters a HashTable keeps once enableStats has been called: how many
+ * nodes each get had to look at, how many puts landed in an occupied
+ * bucket, and how many resizes ran and for how long. Tables without stats
+ * hold a null reference instead and skip all of this.
+ *
+ * Long chains show up here as a rising average or max probe count well
+ * before they show up as latency, which is usually the first sign of a
+ * poor hashCode or of keys chosen to collide.
+ */
+public class HashTableStats {
+
+    private long gets;
+    private long getProbes;
+    private int maxGetProbes;
+    private long misses;
+    private long collisions;
+    private int resizes;
+    private long resizeNanos;
+    private long bloomRejections;
+
+    void recordGet(int probes, boolean found) {
+        gets++;
+        getProbes += probes;
+        if (probes > maxGetProbes) {
+            maxGetProbes = probes;
+        }
+        if (!found) {
+            misses++;
+        }
+    }
+
+    void recordBloomRejection() {
+        bloomRejections++;
+    }
+
+    void recordCollision() {
+        collisions++;
+    }
+
+    void recordResize() {
+        resizes++;
+    }
+
+    void recordResizeTime(long nanos) {
+        resizeNanos += nanos;
+    }
+
+    /**
+     * @return lookups made through get, getAll and containsKey
+     */
+    public long gets() {
+        return gets;
+    }
+
+    /**
+     * @return lookups that found no mapping
+     */
+    public long misses() {
+        return misses;
+    }
+
+    /**
+     * @return nodes compared per lookup, averaged over all lookups
+     */
+    public double averageGetProbes() {
+        return gets == 0 ? 0 : (double) getProbes / gets;
+    }
+
+    /**
+     * @return the most nodes any single lookup compared
+     */
+    public int maxGetProbes() {
+        return maxGetProbes;
+    }
+
+    /**
+     * @return inserts of a new key into a bucket that already held a node
+     */
+    public long collisions() {
+        return collisions;
+    }
+
+    /**
+     * @return table resizes started, growing or shrinking
+     */
+    public int resizes() {
+        return resizes;
+    }
+
+    /**
+     * @return time spent moving nodes between tables, including the
+     *          migration steps of incremental resizes
+     */
+    public long resizeNanos() {
+        return resizeNanos;
+    }
+
+    /**
+     * @return lookups the Bloom filter answered without reading a bucket
+     */
+    public long bloomRejections() {
+        return bloomRejections;
+    }
+
+    /**
+     * Zeroes every counter, for example between benchmark phases.
+     */
+    public void reset() {
+        gets = 0;
+        getProbes = 0;
+        maxGetProbes = 0;
+        misses = 0;
+        collisions = 0;
+        resizes = 0;
+        resizeNanos = 0;
+        bloomRejections = 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("gets=%d misses=%d avgProbes=%.2f maxProbes=%d collisions=%d"
+                + " resizes=%d resizeNanos=%d bloomRejections=%d", gets, misses, averageGetProbes(),
+                maxGetProbes, collisions, resizes, resizeNanos, bloomRejections);
+    }
+}
@@ -0,0 +1,185 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * HashTableADT for int keys that never boxes on its primitive path.
+ *
+ * Keys live in a flat int[] with linear probing and values in a parallel
+ * array, so an entry costs one int and one reference and put/get/remove
+ * allocate nothing once the table is sized. A slot is free when it holds
+ * the sentinel key (0 unless given to the constructor); a mapping for the
+ * sentinel itself is kept in a separate field. remove shifts the following
+ * run of entries back instead of leaving tombstones. Sizing, the sentinel
+ * mapping and removal are shared with the other primitive tables in
+ * PrimitiveHashTable; probing is here so keys are compared unboxed.
+ *
+ * The Integer methods of HashTableADT are kept for compatibility and
+ * simply unbox into the primitive ones.
+ *
+ * @param <V> value type
+ */
+public class IntHashTable<V> extends PrimitiveHashTable<Integer, V> {
+
+    private final int emptyKey;
+    private int[] keys;
+
+    public IntHashTable() {
+        this(16, 0.75, 0);
+    }
+
+    /**
+     * @param initialCapacity number of entries to hold without resizing
+     * @param loadFactor fraction of slots that may be filled, below 1
+     * @param emptyKey key value that marks a free slot
+     */
+    public IntHashTable(int initialCapacity, double loadFactor, int emptyKey) {
+        super(initialCapacity, loadFactor);
+        this.emptyKey = emptyKey;
+        allocateFor(initialCapacity);
+    }
+
+    /**
+     * murmur3's 32-bit finalizer (fmix32) without its first xor-shift: the
+     * multiply already carries every key bit upward and the shift after it
+     * folds them into the low bits the mask keeps, so sequential ids do not
+     * fill one run of slots.
+     */
+    static int mix(int key) {
+        int h = key * 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * @return the slot holding key, or the free slot where it would go
+     */
+    private int slotOf(int key) {
+        int i = mix(key) & mask;
+        while (keys[i] != emptyKey && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    public V put(int key, V value) {
+        if (key == emptyKey) {
+            return putEmptyKey(value);
+        }
+        int i = slotOf(key);
+        if (keys[i] == emptyKey) {
+            if (num >= threshold) {
+                resize();
+                i = slotOf(key);
+            }
+            keys[i] = key;
+            num++;
+        }
+        values[i] = value;
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        if (key == emptyKey) {
+            return getEmptyKey(key);
+        }
+        int i = slotOf(key);
+        if (keys[i] == emptyKey) {
+            throw new NoSuchElementException("Key not found: " + key);
+        }
+        return (V) values[i];
+    }
+
+    /**
+     * @param key key to look for
+     * @return true if the key has a mapping in this table
+     */
+    public boolean containsKey(int key) {
+        if (key == emptyKey) {
+            return hasEmptyKey();
+        }
+        return keys[slotOf(key)] != emptyKey;
+    }
+
+    public V remove(int key) {
+        if (key == emptyKey) {
+            return removeEmptyKey();
+        }
+        int i = slotOf(key);
+        if (keys[i] == emptyKey) {
+            return null;
+        }
+        return removeSlot(i);
+    }
+
+    private void resize() {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(oldKeys.length << 1);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != emptyKey) {
+                int j = slotOf(oldKeys[i]);
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+
+    @Override
+    void allocateKeys(int capacity) {
+        keys = new int[capacity];
+        if (emptyKey != 0) {
+            Arrays.fill(keys, emptyKey);
+        }
+    }
+
+    @Override
+    boolean isFree(int slot) {
+        return keys[slot] == emptyKey;
+    }
+
+    @Override
+    int homeOf(int slot) {
+        return mix(keys[slot]) & mask;
+    }
+
+    @Override
+    void moveKey(int from, int to) {
+        keys[to] = keys[from];
+    }
+
+    @Override
+    void freeKey(int slot) {
+        keys[slot] = emptyKey;
+    }
+
+    @Override
+    void freeKeys() {
+        Arrays.fill(keys, emptyKey);
+    }
+
+    @Override
+    public V put(Integer key, V value) throws NullPointerException {
+        if (key == null) {
+            throw new NullPointerException("Invalid Key");
+        }
+        return put(key.intValue(), value);
+    }
+
+    @Override
+    public V get(Integer key) throws NoSuchElementException {
+        if (key == null) {
+            throw new NullPointerException("Invalid Key");
+        }
+        return get(key.intValue());
+    }
+
+    @Override
+    public V remove(Integer key) throws NullPointerException {
+        if (key == null) {
+            throw new NullPointerException("Invalid Key");
+        }
+        return remove(key.intValue());
+    }
+}
@@ -0,0 +1,215 @@
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Synthetic String keys computed on demand instead of read from a file.
+ * The key space holds keyCount distinct keys, and key(i) is a pure
+ * function of the seed and i, so nothing is stored: a run over a hundred
+ * million keys needs no more memory than a run over ten.
+ *
+ * Distributions, which fix both the shape of the keys and the order a
+ * Cursor visits them in:
+ *   SEQUENTIAL     "key0", "key1", ... visited in order, like the test files
+ *   RANDOM         13 base-36 digits from a 64-bit bijection of i, visited
+ *                  uniformly at random
+ *   ZIPFIAN        RANDOM keys visited with Zipf skew (theta 0.99), the hot
+ *                  ranks scattered over the key space
+ *   COMMON_PREFIX  a 64 character prefix shared by every key, then i, so
+ *                  every equals compares the whole prefix; visited uniformly
+ *   ADVERSARIAL    strings of "Aa" and "BB" blocks, which all share one
+ *                  String.hashCode, so every key lands in one bucket;
+ *                  visited uniformly
+ *
+ * Two generators with the same distribution, key count and seed produce
+ * the same keys, and their cursors the same sequences.
+ */
+public class KeyGenerator {
+
+    public enum Distribution {
+        SEQUENTIAL, RANDOM, ZIPFIAN, COMMON_PREFIX, ADVERSARIAL
+    }
+
+    private static final String PREFIX;
+
+    static {
+        StringBuilder sb = new StringBuilder("tenant/region/service/");
+        while (sb.length() < 64) {
+            sb.append('x');
+        }
+        PREFIX = sb.toString();
+    }
+
+    private final Distribution distribution;
+    private final int keyCount;
+    private final long seed;
+    private final int adversarialBlocks;
+
+    /**
+     * @param keyCount number of distinct keys, at least 1
+     * @param seed varies the RANDOM, ZIPFIAN and ADVERSARIAL keys and the
+     *          order of every cursor
+     */
+    public KeyGenerator(Distribution distribution, int keyCount, long seed) {
+        if (distribution == null) {
+            throw new NullPointerException("Invalid Distribution");
+        }
+        if (keyCount < 1) {
+            throw new IllegalArgumentException("Illegal key count: " + keyCount);
+        }
+        this.distribution = distribution;
+        this.keyCount = keyCount;
+        this.seed = seed;
+        // enough "Aa"/"BB" blocks to give every index its own pattern
+        this.adversarialBlocks = Math.max(1, Integer.SIZE - Integer.numberOfLeadingZeros(keyCount - 1));
+    }
+
+    /**
+     * Parses "distribution,keys[,seed]", for example "zipfian,1000000,7".
+     * The seed defaults to 42.
+     */
+    public static KeyGenerator parse(String spec) {
+        String[] parts = spec.split(",");
+        if (parts.length < 2 || parts.length > 3) {
+            throw new IllegalArgumentException("Expected distribution,keys[,seed]: " + spec);
+        }
+        Distribution distribution = Distribution.valueOf(parts[0].trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        int keys = Integer.parseInt(parts[1].trim().replace("_", ""));
+        long seed = parts.length == 3 ? Long.parseLong(parts[2].trim()) : 42;
+        return new KeyGenerator(distribution, keys, seed);
+    }
+
+    /**
+     * @return the index-th distinct key, 0 <= index < keyCount
+     */
+    public String key(int index) {
+        if (index < 0 || index >= keyCount) {
+            throw new IndexOutOfBoundsException("Key index " + index + " of " + keyCount);
+        }
+        switch (distribution) {
+        case SEQUENTIAL:
+            return "key" + index;
+        case RANDOM:
+        case ZIPFIAN:
+            // mix is a bijection, so distinct indexes give distinct keys
+            return base36(mix(index + seed * 0x9E3779B97F4A7C15L));
+        case COMMON_PREFIX:
+            return PREFIX + index;
+        default:
+            return adversarial(index);
+        }
+    }
+
+    /**
+     * Each bit of a scrambled index picks "Aa" or "BB"; both hash to 2112
+     * and are the same length, so every key has the same hashCode.
+     */
+    private String adversarial(int index) {
+        int mask = adversarialBlocks == Integer.SIZE ? -1 : (1 << adversarialBlocks) - 1;
+        // odd multiplier plus offset: a bijection on adversarialBlocks bits
+        int bits = (int) ((index * 0x9E3779B1L + seed) & mask);
+        char[] chars = new char[2 * adversarialBlocks];
+        for (int b = 0; b < adversarialBlocks; b++) {
+            boolean bb = (bits >>> b & 1) != 0;
+            chars[2 * b] = bb ? 'B' : 'A';
+            chars[2 * b + 1] = bb ? 'B' : 'a';
+        }
+        return new String(chars);
+    }
+
+    /**
+     * @return value as 13 unsigned base-36 digits, zero padded; written
+     *          out by hand because Long.toUnsignedString goes through
+     *          BigInteger for values with the top bit set
+     */
+    private static String base36(long value) {
+        char[] digits = new char[13];
+        long quotient = Long.divideUnsigned(value, 36);
+        digits[12] = Character.forDigit((int) (value - quotient * 36), 36);
+        for (int i = 11; i >= 0; i--) {
+            digits[i] = Character.forDigit((int) (quotient % 36), 36);
+            quotient /= 36;
+        }
+        return new String(digits);
+    }
+
+    /**
+     * splitmix64 finalizer, invertible
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    public int keyCount() {
+        return keyCount;
+    }
+
+    public Distribution distribution() {
+        return distribution;
+    }
+
+    /**
+     * @return the key space as a read-only list whose elements are built
+     *          on each get, for code that indexes keys like a loaded file
+     */
+    public List<String> asList() {
+        return new AbstractList<String>() {
+            @Override
+            public String get(int index) {
+                return key(index);
+            }
+
+            @Override
+            public int size() {
+                return keyCount;
+            }
+        };
+    }
+
+    /**
+     * @return a new cursor at the start of this generator's access sequence
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * An endless sequence of keys from the key space in the generator's
+     * access order. Not thread safe; give each thread its own.
+     */
+    public final class Cursor {
+        private final Random random = new Random(seed);
+        private final ZipfGenerator zipf = distribution == Distribution.ZIPFIAN
+                ? new ZipfGenerator(keyCount, random.nextLong()) : null;
+        private int next;
+
+        public String next() {
+            return key(nextIndex());
+        }
+
+        /**
+         * @return the index of the next key, for callers that keep their
+         *          own arrays keyed by index
+         */
+        public int nextIndex() {
+            switch (distribution) {
+            case SEQUENTIAL:
+                int index = next;
+                next = next + 1 == keyCount ? 0 : next + 1;
+                return index;
+            case ZIPFIAN:
+                return (int) Long.remainderUnsigned(mix(zipf.next()), keyCount);
+            default:
+                return random.nextInt(keyCount);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return distribution.name().toLowerCase(Locale.ROOT) + "(" + keyCount + ")";
+    }
+}
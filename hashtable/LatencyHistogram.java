@@ -0,0 +1,126 @@
+/**
+ * Histogram of non-negative latencies with log-linear buckets in the style
+ * of HdrHistogram: every power of two is split into SUB_BUCKETS equal
+ * buckets, so a recorded value is known to within 1/SUB_BUCKETS of itself
+ * (under 1%) from 1 nanosecond up to Long.MAX_VALUE.
+ *
+ * The counts live in one fixed array allocated up front, so record does
+ * no allocation and costs a few shifts and an increment; it is cheap
+ * enough to call around every operation of a benchmark loop. Not thread
+ * safe; give each thread its own histogram and add them afterwards.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 7;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long min = Long.MAX_VALUE;
+    private long max;
+    private double sum;
+
+    /**
+     * @param value latency, negative values count as 0
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts[index(value)]++;
+        count++;
+        sum += value;
+        if (value < min) {
+            min = value;
+        }
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    /**
+     * Values below SUB_BUCKETS get a bucket each; above, the shift keeps
+     * the top SUB_BUCKET_BITS + 1 bits of the value.
+     */
+    static int index(long value) {
+        int shift = Long.SIZE - SUB_BUCKET_BITS - 1 - Long.numberOfLeadingZeros(value);
+        if (shift <= 0) {
+            return (int) value;
+        }
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    /**
+     * @return the largest value that falls in bucket index
+     */
+    static long highestValue(int index) {
+        int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        if (shift <= 0) {
+            return index;
+        }
+        long sub = index & (SUB_BUCKETS - 1) | SUB_BUCKETS;
+        return ((sub + 1) << shift) - 1;
+    }
+
+    /**
+     * @param p percentile in [0, 100]
+     * @return the smallest bucket bound with at least p% of the recorded
+     *          values at or below it, capped at the exact maximum; 0 when
+     *          nothing was recorded
+     */
+    public long percentile(double p) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(p / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highestValue(i), max);
+            }
+        }
+        return max;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    /**
+     * @return smallest recorded value, 0 when empty
+     */
+    public long min() {
+        return count == 0 ? 0 : min;
+    }
+
+    public long max() {
+        return max;
+    }
+
+    public double mean() {
+        return count == 0 ? 0.0 : sum / count;
+    }
+
+    /**
+     * Adds the values recorded in other to this histogram.
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    public void reset() {
+        java.util.Arrays.fill(counts, 0);
+        count = 0;
+        sum = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+    }
+}
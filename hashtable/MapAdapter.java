@@ -0,0 +1,80 @@
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Presents any java.util.Map as a HashTableADT, so the JDK maps can run
+ * through the same benchmarks as the tables in this directory. get throws
+ * NoSuchElementException for an absent key as HashTableADT requires.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class MapAdapter<K, V> implements HashTableADT<K, V> {
+
+    private final Map<K, V> map;
+
+    public MapAdapter(Map<K, V> map) {
+        if (map == null) {
+            throw new NullPointerException("Invalid Map");
+        }
+        this.map = map;
+    }
+
+    @Override
+    public V put(K key, V value) throws NullPointerException {
+        if (key == null) {
+            throw new NullPointerException("Invalid Key");
+        }
+        map.put(key, value);
+        return value;
+    }
+
+    @Override
+    public V get(K key) throws NoSuchElementException {
+        if (key == null) {
+            throw new NullPointerException("Invalid Key");
+        }
+        V value = map.get(key);
+        if (value == null && !map.containsKey(key)) {
+            throw new NoSuchElementException("Key not found: " + key);
+        }
+        return value;
+    }
+
+    public boolean containsKey(K key) {
+        if (key == null) {
+            throw new NullPointerException("Invalid Key");
+        }
+        return map.containsKey(key);
+    }
+
+    @Override
+    public V remove(K key) throws NullPointerException {
+        if (key == null) {
+            throw new NullPointerException("Invalid Key");
+        }
+        return map.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        map.clear();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    /**
+     * @return the wrapped map
+     */
+    public Map<K, V> map() {
+        return map;
+    }
+}
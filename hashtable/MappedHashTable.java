@@ -0,0 +1,424 @@
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.zip.CRC32;
+
+/**
+ * Read-only HashTableADT over a snapshot file written by
+ * HashTable.saveSnapshot, mapped into memory with FileChannel.map.
+ *
+ * Opening a snapshot reads and checks the header only. The bucket
+ * directory and the records stay on disk until a lookup touches their
+ * pages, so opening takes the same time whatever the table size. verify()
+ * checks the whole body against its checksum when that is wanted.
+ *
+ * File layout, big-endian:
+ * <pre>
+ * header    magic, version, entry count, bucket count, directory offset,
+ *           records offset, file length, body CRC32, header CRC32
+ * directory bucketCount + 1 longs; bucket i owns the records between
+ *           entries i and i + 1
+ * records   [hash][key length][value length][key bytes][value bytes],
+ *           grouped by bucket
+ * </pre>
+ * Records never cross a SEGMENT_SIZE boundary, so each mapped segment can
+ * be read on its own. The gap before a boundary is filled with a skip
+ * record whose key length is SKIP, or with zeros if it is shorter than a
+ * record header.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class MappedHashTable<K, V> implements HashTableADT<K, V>, Closeable {
+
+    static final int MAGIC = 0x4854534E;    // "HTSN"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+
+    // the file is mapped in segments of this many bytes
+    static final long SEGMENT_SIZE = 1L << 30;
+
+    private static final int RECORD_HEADER = 3 * Integer.BYTES;
+
+    // key length of the record that pads out the end of a segment
+    private static final int SKIP = -1;
+
+    private final String path;
+    private final Codec<K> keyCodec;
+    private final Codec<V> valueCodec;
+    private final int num;
+    private final int bucketMask;
+    private final long directoryOffset;
+    private final long bodyChecksum;
+    private final long fileLength;
+    private RandomAccessFile file;
+    private MappedByteBuffer[] segments;
+    private ByteBuffer scratch = ByteBuffer.allocate(256);
+
+    private MappedHashTable(String path, Codec<K> keyCodec, Codec<V> valueCodec, RandomAccessFile file,
+            MappedByteBuffer[] segments, ByteBuffer header) {
+        this.path = path;
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        this.file = file;
+        this.segments = segments;
+        this.num = header.getInt(8);
+        this.bucketMask = header.getInt(12) - 1;
+        this.directoryOffset = header.getLong(16);
+        this.fileLength = header.getLong(32);
+        this.bodyChecksum = header.getLong(40);
+    }
+
+    static <K, V> void write(HashTable<K, V> table, String path, Codec<K> keyCodec,
+            Codec<V> valueCodec) throws IOException {
+        if (keyCodec == null || valueCodec == null) {
+            throw new NullPointerException("Codec required");
+        }
+        // group the nodes by snapshot bucket with a counting sort
+        int count = table.size();
+        int buckets = HashTable.tableSizeFor(Math.max(1, count));
+        int mask = buckets - 1;
+        final List<HashTable.HashNode<K, V>> nodes = new ArrayList<>(count);
+        table.forEachNode(nodes::add);
+        int[] starts = new int[buckets + 1];
+        for (HashTable.HashNode<K, V> node : nodes) {
+            starts[(node.hash & mask) + 1]++;
+        }
+        for (int i = 0; i < buckets; i++) {
+            starts[i + 1] += starts[i];
+        }
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        HashTable.HashNode<K, V>[] sorted = new HashTable.HashNode[nodes.size()];
+        int[] next = starts.clone();
+        for (HashTable.HashNode<K, V> node : nodes) {
+            sorted[next[node.hash & mask]++] = node;
+        }
+        nodes.clear();
+
+        // record offsets, padding so that no record crosses a segment
+        long directoryOffset = HEADER_SIZE;
+        long recordsOffset = directoryOffset + (long) (buckets + 1) * Long.BYTES;
+        long[] directory = new long[buckets + 1];
+        int[] keySizes = new int[sorted.length];
+        int[] valueSizes = new int[sorted.length];
+        long[] offsets = new long[sorted.length];
+        long position = recordsOffset;
+        int bucket = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            keySizes[i] = keyCodec.encodedSize(sorted[i].k);
+            valueSizes[i] = valueCodec.encodedSize(sorted[i].v);
+            long size = (long) RECORD_HEADER + keySizes[i] + valueSizes[i];
+            if (size > SEGMENT_SIZE) {
+                throw new IOException("Entry too large for a snapshot: " + size + " bytes");
+            }
+            if (position / SEGMENT_SIZE != (position + size - 1) / SEGMENT_SIZE) {
+                position = (position / SEGMENT_SIZE + 1) * SEGMENT_SIZE;
+            }
+            while (bucket <= (sorted[i].hash & mask)) {
+                directory[bucket++] = position;
+            }
+            offsets[i] = position;
+            position += size;
+        }
+        while (bucket <= buckets) {
+            directory[bucket++] = position;
+        }
+        long fileLength = position;
+
+        CRC32 crc = new CRC32();
+        FileOutputStream file = new FileOutputStream(path);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new ChecksumStream(file, crc), 1 << 16))) {
+            // placeholder for the header, which is not part of the body checksum
+            file.write(new byte[HEADER_SIZE]);
+            for (long offset : directory) {
+                out.writeLong(offset);
+            }
+            long written = recordsOffset;
+            ByteBuffer buffer = ByteBuffer.allocate(256);
+            for (int i = 0; i < sorted.length; i++) {
+                if (written < offsets[i] && offsets[i] - written >= RECORD_HEADER) {
+                    out.writeInt(0);
+                    out.writeInt(SKIP);
+                    out.writeInt(0);
+                    written += RECORD_HEADER;
+                }
+                while (written < offsets[i]) {
+                    out.write(0);
+                    written++;
+                }
+                int size = RECORD_HEADER + keySizes[i] + valueSizes[i];
+                if (buffer.capacity() < size) {
+                    buffer = ByteBuffer.allocate(Math.max(size, buffer.capacity() * 2));
+                }
+                buffer.clear();
+                buffer.putInt(sorted[i].hash);
+                buffer.putInt(keySizes[i]);
+                buffer.putInt(valueSizes[i]);
+                keyCodec.encode(sorted[i].k, buffer);
+                valueCodec.encode(sorted[i].v, buffer);
+                if (buffer.position() != size) {
+                    throw new IOException("Codec wrote " + buffer.position() + " bytes, expected " + size);
+                }
+                out.write(buffer.array(), 0, size);
+                written += size;
+            }
+            out.flush();
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putInt(sorted.length);
+        header.putInt(buckets);
+        header.putLong(directoryOffset);
+        header.putLong(recordsOffset);
+        header.putLong(fileLength);
+        header.putLong(crc.getValue());
+        CRC32 headerCrc = new CRC32();
+        headerCrc.update(header.array(), 0, header.position());
+        header.putLong(headerCrc.getValue());
+        header.clear();
+        try (RandomAccessFile raf = new RandomAccessFile(path, "rw")) {
+            raf.getChannel().write(header, 0);
+        }
+    }
+
+    static <K, V> MappedHashTable<K, V> open(String path, Codec<K> keyCodec, Codec<V> valueCodec)
+            throws IOException {
+        if (keyCodec == null || valueCodec == null) {
+            throw new NullPointerException("Codec required");
+        }
+        RandomAccessFile raf = new RandomAccessFile(path, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long length = channel.size();
+            if (length < HEADER_SIZE) {
+                throw new IOException("Not a snapshot, file too short: " + path);
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+                // read the whole header
+            }
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException("Not a snapshot: " + path);
+            }
+            if (header.getInt(4) != VERSION) {
+                throw new IOException("Unsupported snapshot version " + header.getInt(4));
+            }
+            CRC32 headerCrc = new CRC32();
+            headerCrc.update(header.array(), 0, 48);
+            if (header.getLong(48) != headerCrc.getValue()) {
+                throw new IOException("Snapshot header checksum mismatch: " + path);
+            }
+            if (header.getLong(32) != length) {
+                throw new IOException("Snapshot truncated: expected " + header.getLong(32)
+                        + " bytes, found " + length);
+            }
+            int segmentCount = (int) ((length + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+            MappedByteBuffer[] segments = new MappedByteBuffer[segmentCount];
+            for (int i = 0; i < segmentCount; i++) {
+                long start = i * SEGMENT_SIZE;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                        Math.min(SEGMENT_SIZE, length - start));
+            }
+            return new MappedHashTable<>(path, keyCodec, valueCodec, raf, segments, header);
+        } catch (IOException | RuntimeException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    private ByteBuffer segmentFor(long offset) {
+        if (segments == null) {
+            throw new IllegalStateException("Snapshot is closed");
+        }
+        return segments[(int) (offset / SEGMENT_SIZE)];
+    }
+
+    private long readLong(long offset) {
+        return segmentFor(offset).getLong((int) (offset % SEGMENT_SIZE));
+    }
+
+    /**
+     * @return offset of the record for key, or -1 if it is absent
+     */
+    private long find(K key) {
+        int hash = HashTable.spread(key);
+        int keyLength = keyCodec.encodedSize(key);
+        if (scratch.capacity() < keyLength) {
+            scratch = ByteBuffer.allocate(Math.max(keyLength, scratch.capacity() * 2));
+        }
+        scratch.clear();
+        keyCodec.encode(key, scratch);
+
+        long bucketEntry = directoryOffset + (long) (hash & bucketMask) * Long.BYTES;
+        long offset = readLong(bucketEntry);
+        long end = readLong(bucketEntry + Long.BYTES);
+        while (offset < end) {
+            ByteBuffer segment = segmentFor(offset);
+            int p = (int) (offset % SEGMENT_SIZE);
+            if (segment.limit() - p < RECORD_HEADER || segment.getInt(p + 4) == SKIP) {
+                offset = (offset / SEGMENT_SIZE + 1) * SEGMENT_SIZE;
+                continue;
+            }
+            int recordKey = segment.getInt(p + 4);
+            if (segment.getInt(p) == hash && recordKey == keyLength
+                    && bytesEqual(segment, p + RECORD_HEADER, keyLength)) {
+                return offset;
+            }
+            offset += RECORD_HEADER + recordKey + segment.getInt(p + 8);
+        }
+        return -1;
+    }
+
+    private boolean bytesEqual(ByteBuffer segment, int start, int length) {
+        for (int i = 0; i < length; i++) {
+            if (segment.get(start + i) != scratch.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public V get(K key) throws NoSuchElementException {
+        if (key == null) {
+            throw new NullPointerException("Invalid Key");
+        }
+        long offset = find(key);
+        if (offset < 0) {
+            throw new NoSuchElementException("Key not found: " + key);
+        }
+        ByteBuffer view = segmentFor(offset).duplicate();
+        int p = (int) (offset % SEGMENT_SIZE);
+        int keyLength = view.getInt(p + 4);
+        int valueLength = view.getInt(p + 8);
+        view.position(p + RECORD_HEADER + keyLength);
+        return valueCodec.decode(view, valueLength);
+    }
+
+    /**
+     * @param key key to look for
+     * @return true if the key has a mapping in the snapshot
+     */
+    public boolean containsKey(K key) {
+        if (key == null) {
+            throw new NullPointerException("Invalid Key");
+        }
+        return find(key) >= 0;
+    }
+
+    /**
+     * Reads the whole body and checks it against the checksum stored in the
+     * header. This faults in every page of the file.
+     *
+     * @return true if the body is intact
+     */
+    public boolean verify() {
+        CRC32 crc = new CRC32();
+        long offset = directoryOffset;
+        byte[] buffer = new byte[1 << 16];
+        while (offset < fileLength) {
+            ByteBuffer view = segmentFor(offset).duplicate();
+            view.position((int) (offset % SEGMENT_SIZE));
+            while (view.hasRemaining()) {
+                int n = Math.min(buffer.length, view.remaining());
+                view.get(buffer, 0, n);
+                crc.update(buffer, 0, n);
+                offset += n;
+            }
+        }
+        return crc.getValue() == bodyChecksum;
+    }
+
+    /**
+     * Snapshots are read-only.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public V put(K key, V value) throws NullPointerException {
+        throw new UnsupportedOperationException("Snapshot " + path + " is read-only");
+    }
+
+    /**
+     * Snapshots are read-only.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public V remove(K key) throws NullPointerException {
+        throw new UnsupportedOperationException("Snapshot " + path + " is read-only");
+    }
+
+    /**
+     * Snapshots are read-only.
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("Snapshot " + path + " is read-only");
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return num == 0;
+    }
+
+    @Override
+    public int size() {
+        return num;
+    }
+
+    /**
+     * Unmaps the file. The table must not be used afterwards.
+     */
+    @Override
+    public void close() throws IOException {
+        if (segments == null) {
+            return;
+        }
+        for (MappedByteBuffer segment : segments) {
+            OffHeapHashTable.free(segment);
+        }
+        segments = null;
+        file.close();
+        file = null;
+    }
+
+    /**
+     * Feeds every byte written through it into a CRC32.
+     */
+    private static final class ChecksumStream extends java.io.FilterOutputStream {
+        private final CRC32 crc;
+
+        ChecksumStream(OutputStream out, CRC32 crc) {
+            super(out);
+            this.crc = crc;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            crc.update(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            crc.update(b, off, len);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A text file of keys, one per line, mapped into memory and split in
+ * place. The only heap it takes is one int per line for where the line
+ * starts; the keys themselves stay in the page cache and are handed out
+ * as ByteSlice views. Lines end at '\n', a '\r' before it is dropped, and
+ * empty lines are kept, as BufferedReader.readLine does.
+ *
+ * Files of any size are mapped in segments of at most SEGMENT_SIZE bytes,
+ * each ending after a newline so no line is split between two.
+ *
+ * close releases the file but does not unmap the segments: slices may
+ * still be keys in some table, and reading an unmapped segment would
+ * crash the JVM. The mapping goes when the last slice is collected.
+ */
+public class MappedKeyFile implements Closeable {
+
+    static final long SEGMENT_SIZE = 1L << 30;
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer[] segments;
+    // lineStarts[s][i] is where line i of segment s starts; the extra
+    // last entry is one past the end of the segment's last line
+    private final int[][] lineStarts;
+    // global index of the first line of each segment
+    private final int[] firstLine;
+    private final int size;
+
+    private MappedKeyFile(RandomAccessFile file, MappedByteBuffer[] segments, int[][] lineStarts) {
+        this.file = file;
+        this.segments = segments;
+        this.lineStarts = lineStarts;
+        this.firstLine = new int[segments.length];
+        long lines = 0;
+        for (int s = 0; s < segments.length; s++) {
+            firstLine[s] = (int) lines;
+            lines += lineStarts[s].length - 1;
+        }
+        if (lines > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("More than " + Integer.MAX_VALUE + " lines");
+        }
+        this.size = (int) lines;
+    }
+
+    /**
+     * Maps path and finds the start of every line.
+     *
+     * @throws IOException if the file cannot be read or has a line longer
+     *          than SEGMENT_SIZE
+     */
+    public static MappedKeyFile open(String path) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(path, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long length = channel.size();
+            List<MappedByteBuffer> segments = new ArrayList<>();
+            List<int[]> starts = new ArrayList<>();
+            long position = 0;
+            while (position < length) {
+                long size = Math.min(SEGMENT_SIZE, length - position);
+                MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+                int limit = (int) size;
+                if (position + size < length) {
+                    while (limit > 0 && segment.get(limit - 1) != '\n') {
+                        limit--;
+                    }
+                    if (limit == 0) {
+                        throw new IOException("Line longer than " + SEGMENT_SIZE + " bytes at " + position);
+                    }
+                    segment.limit(limit);
+                }
+                segments.add(segment);
+                starts.add(lineStarts(segment, limit));
+                position += limit;
+            }
+            return new MappedKeyFile(raf, segments.toArray(new MappedByteBuffer[0]),
+                    starts.toArray(new int[0][]));
+        } catch (IOException | RuntimeException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Two passes over the segment, one to count lines and one to record
+     * them, so the array is allocated once at its final size.
+     */
+    private static int[] lineStarts(MappedByteBuffer segment, int limit) {
+        int newlines = 0;
+        for (int i = 0; i < limit; i++) {
+            if (segment.get(i) == '\n') {
+                newlines++;
+            }
+        }
+        boolean unterminated = limit > 0 && segment.get(limit - 1) != '\n';
+        int lines = newlines + (unterminated ? 1 : 0);
+        int[] starts = new int[lines + 1];
+        int line = 1;
+        for (int i = 0; i < limit; i++) {
+            if (segment.get(i) == '\n') {
+                starts[line++] = i + 1;
+            }
+        }
+        if (unterminated) {
+            // as if the last line were followed by a newline
+            starts[lines] = limit + 1;
+        }
+        return starts;
+    }
+
+    /**
+     * @return number of lines
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return line index, without its line terminator, as a view into the
+     *          mapped file
+     */
+    public ByteSlice key(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Line " + index + " of " + size);
+        }
+        int s = segmentOf(index);
+        int line = index - firstLine[s];
+        int start = lineStarts[s][line];
+        int end = lineStarts[s][line + 1] - 1;
+        MappedByteBuffer segment = segments[s];
+        if (end > start && segment.get(end - 1) == '\r') {
+            end--;
+        }
+        return new ByteSlice(segment, start, end - start);
+    }
+
+    private int segmentOf(int index) {
+        int s = segments.length - 1;
+        while (firstLine[s] > index) {
+            s--;
+        }
+        return s;
+    }
+
+    /**
+     * @return the lines as a read-only list that creates a slice per get
+     */
+    public List<ByteSlice> asList() {
+        return new AbstractList<ByteSlice>() {
+            @Override
+            public ByteSlice get(int index) {
+                return key(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * @return bytes of heap used by the line index
+     */
+    public long indexBytes() {
+        long bytes = 0;
+        for (int[] starts : lineStarts) {
+            bytes += (long) starts.length * Integer.BYTES;
+        }
+        return bytes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
@@ -0,0 +1,574 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * Steady-state benchmarks of HashTable against java.util.HashMap and
+ * java.util.TreeMap, run the way JMH runs them: each benchmark gets fresh
+ * JVM forks, warmup iterations that are thrown away, then measurement
+ * iterations of fixed length whose results go into a Blackhole. Scores are
+ * throughput in operations per second with a 99.9% confidence interval,
+ * and -rff writes them in the JSON layout JMH produces, so existing JMH
+ * result viewers and comparison scripts can read them.
+ *
+ * Benchmarks, each over every structure, table size and key length:
+ *   put     insert size distinct keys into an empty table, clearing it
+ *           each time all of them are in, so resizes are included
+ *   get     look up keys of a full table in a fixed shuffled order
+ *   remove  remove a key of a full table and put it back
+ *   mixed   90% get of stable keys, 5% put and 5% remove of the others
+ *
+ * Usage: java MicroBenchmark [regexp] [-f forks] [-wi warmup iterations]
+ *          [-i iterations] [-r milliseconds per iteration]
+ *          [-p param=v1,v2 ...] [-rff results.json] [-l]
+ *
+ * The regexp is matched against names such as
+ * MicroBenchmark.get:structure=HashTable,size=1000,keyLength=8. With -f 0
+ * everything runs in this JVM, which is quicker but lets benchmarks
+ * pollute each other's profile.
+ */
+public class MicroBenchmark {
+
+    static final String[] OPERATIONS = { "put", "get", "remove", "mixed" };
+    static final String[] STRUCTURES = { "HashTable", "HashMap", "TreeMap" };
+    static final String[] SIZES = { "1000", "100000" };
+    static final String[] KEY_LENGTHS = { "8", "64" };
+
+    private static final String VALUE = "value";
+    private static final int BATCH = 64;
+    private static final double CONFIDENCE = 0.999;
+    private static final double[] PERCENTILES = {
+        0.0, 50.0, 90.0, 95.0, 99.0, 99.9, 99.99, 99.999, 99.9999, 100.0
+    };
+
+    private int forks = 2;
+    private int warmupIterations = 5;
+    private int measurementIterations = 5;
+    private long iterationMillis = 1000;
+    private Pattern include = Pattern.compile(".*");
+    private final Map<String, String[]> params = new LinkedHashMap<>();
+    private String resultFile;
+    private boolean listOnly;
+
+    MicroBenchmark() {
+        params.put("structure", STRUCTURES);
+        params.put("size", SIZES);
+        params.put("keyLength", KEY_LENGTHS);
+    }
+
+    /**
+     * One operation of a benchmark on state set up beforehand.
+     */
+    interface Workload {
+        void run(Blackhole bh);
+    }
+
+    /**
+     * A benchmark and the parameter values it runs with.
+     */
+    static final class Case {
+        final String operation;
+        final Map<String, String> params;
+
+        Case(String operation, Map<String, String> params) {
+            this.operation = operation;
+            this.params = params;
+        }
+
+        String name() {
+            return "MicroBenchmark." + operation;
+        }
+
+        String label() {
+            StringBuilder sb = new StringBuilder(name()).append(':');
+            String sep = "";
+            for (Map.Entry<String, String> p : params.entrySet()) {
+                sb.append(sep).append(p.getKey()).append('=').append(p.getValue());
+                sep = ",";
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Scores of one Case, one array of iteration scores per fork.
+     */
+    static final class Result {
+        final Case benchmark;
+        final List<double[]> forks = new ArrayList<>();
+
+        Result(Case benchmark) {
+            this.benchmark = benchmark;
+        }
+
+        double[] all() {
+            int n = 0;
+            for (double[] f : forks) {
+                n += f.length;
+            }
+            double[] all = new double[n];
+            int i = 0;
+            for (double[] f : forks) {
+                System.arraycopy(f, 0, all, i, f.length);
+                i += f.length;
+            }
+            return all;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("--child")) {
+            runChild(args);
+            return;
+        }
+        MicroBenchmark bench = new MicroBenchmark();
+        bench.parse(args);
+        bench.run();
+    }
+
+    void parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("-l")) {
+                listOnly = true;
+            } else if (arg.startsWith("-") && i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + arg);
+            } else if (arg.equals("-f")) {
+                forks = Integer.parseInt(args[++i]);
+            } else if (arg.equals("-wi")) {
+                warmupIterations = Integer.parseInt(args[++i]);
+            } else if (arg.equals("-i")) {
+                measurementIterations = Integer.parseInt(args[++i]);
+            } else if (arg.equals("-r")) {
+                iterationMillis = Long.parseLong(args[++i]);
+            } else if (arg.equals("-rff")) {
+                resultFile = args[++i];
+            } else if (arg.equals("-p")) {
+                String[] nameValues = args[++i].split("=", 2);
+                if (!params.containsKey(nameValues[0]) || nameValues.length < 2) {
+                    throw new IllegalArgumentException("Unknown parameter: " + args[i]);
+                }
+                params.put(nameValues[0], nameValues[1].split(","));
+            } else if (arg.startsWith("-")) {
+                throw new IllegalArgumentException("Unknown option: " + arg);
+            } else {
+                include = Pattern.compile(arg);
+            }
+        }
+        if (forks < 0 || warmupIterations < 0 || measurementIterations < 1 || iterationMillis < 1) {
+            throw new IllegalArgumentException("Forks and warmup must be >= 0, iterations and time >= 1");
+        }
+    }
+
+    List<Case> cases() {
+        List<Case> cases = new ArrayList<>();
+        for (String operation : OPERATIONS) {
+            for (String structure : params.get("structure")) {
+                for (String size : params.get("size")) {
+                    for (String keyLength : params.get("keyLength")) {
+                        Map<String, String> p = new LinkedHashMap<>();
+                        p.put("structure", structure);
+                        p.put("size", size);
+                        p.put("keyLength", keyLength);
+                        Case c = new Case(operation, p);
+                        if (include.matcher(c.label()).find()) {
+                            cases.add(c);
+                        }
+                    }
+                }
+            }
+        }
+        return cases;
+    }
+
+    List<Result> run() throws IOException {
+        List<Case> cases = cases();
+        List<Result> results = new ArrayList<>();
+        if (listOnly) {
+            for (Case c : cases) {
+                System.out.println(c.label());
+            }
+            return results;
+        }
+        for (Case c : cases) {
+            System.out.println("# Benchmark: " + c.label());
+            Result result = new Result(c);
+            if (forks == 0) {
+                result.forks.add(measure(c, warmupIterations, measurementIterations, iterationMillis,
+                        System.out));
+            }
+            for (int f = 1; f <= forks; f++) {
+                System.out.println("# Fork: " + f + " of " + forks);
+                result.forks.add(fork(c));
+            }
+            double[] all = result.all();
+            System.out.println(String.format("Result \"%s\": %.3f +-(99.9%%) %.3f ops/s", c.label(),
+                    Statistics.mean(all), Statistics.confidenceError(all, CONFIDENCE)));
+            System.out.println();
+            results.add(result);
+        }
+        printSummary(results);
+        if (resultFile != null) {
+            try (Writer out = new FileWriter(resultFile)) {
+                writeJson(results, out);
+            }
+            System.out.println("Results written to " + resultFile);
+        }
+        return results;
+    }
+
+    /**
+     * Runs one fork of c in a new JVM with this JVM's classpath and heap
+     * and property settings.
+     *
+     * @return the measurement iteration scores the fork printed
+     */
+    private double[] fork(Case c) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(javaBinary());
+        command.addAll(jvmArgs());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(MicroBenchmark.class.getName());
+        command.add("--child");
+        command.add(c.operation);
+        command.add(c.params.get("structure"));
+        command.add(c.params.get("size"));
+        command.add(c.params.get("keyLength"));
+        command.add(Integer.toString(warmupIterations));
+        command.add(Integer.toString(measurementIterations));
+        command.add(Long.toString(iterationMillis));
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        List<Double> scores = new ArrayList<>();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                System.out.println(line);
+                if (line.startsWith("Iteration")) {
+                    scores.add(Double.parseDouble(line.substring(line.indexOf(':') + 1).trim().split(" ")[0]));
+                }
+            }
+        }
+        try {
+            int exit = process.waitFor();
+            if (exit != 0 || scores.size() != measurementIterations) {
+                throw new IOException("Fork of " + c.label() + " failed with exit code " + exit);
+            }
+        } catch (InterruptedException e) {
+            process.destroy();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for fork of " + c.label(), e);
+        }
+        double[] result = new double[scores.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = scores.get(i);
+        }
+        return result;
+    }
+
+    private static String javaBinary() {
+        return System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+    }
+
+    /**
+     * @return heap, GC and -D settings of this JVM, passed on to forks;
+     *          agents and debugger options are left out
+     */
+    private static List<String> jvmArgs() {
+        List<String> args = new ArrayList<>();
+        for (String arg : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (arg.startsWith("-X") && !arg.startsWith("-Xrunjdwp") || arg.startsWith("-D")) {
+                args.add(arg);
+            }
+        }
+        return args;
+    }
+
+    private static void runChild(String[] args) {
+        Map<String, String> p = new LinkedHashMap<>();
+        p.put("structure", args[2]);
+        p.put("size", args[3]);
+        p.put("keyLength", args[4]);
+        Case c = new Case(args[1], p);
+        measure(c, Integer.parseInt(args[5]), Integer.parseInt(args[6]), Long.parseLong(args[7]), System.out);
+    }
+
+    /**
+     * Runs the warmup and measurement iterations of c in this JVM.
+     *
+     * @return the measurement scores in operations per second
+     */
+    static double[] measure(Case c, int warmup, int iterations, long millis, PrintStream out) {
+        Workload workload = workload(c.operation, c.params.get("structure"),
+                Integer.parseInt(c.params.get("size")), Integer.parseInt(c.params.get("keyLength")));
+        Blackhole bh = new Blackhole();
+        long nanos = millis * 1_000_000L;
+        for (int i = 1; i <= warmup; i++) {
+            out.println(String.format("# Warmup Iteration %3d: %.3f ops/s", i, iteration(workload, bh, nanos)));
+        }
+        double[] scores = new double[iterations];
+        for (int i = 0; i < iterations; i++) {
+            scores[i] = iteration(workload, bh, nanos);
+            out.println(String.format("Iteration %3d: %.3f ops/s", i + 1, scores[i]));
+        }
+        return scores;
+    }
+
+    private static double iteration(Workload workload, Blackhole bh, long nanos) {
+        long ops = 0;
+        long start = System.nanoTime();
+        long deadline = start + nanos;
+        long now;
+        do {
+            for (int i = 0; i < BATCH; i++) {
+                workload.run(bh);
+            }
+            ops += BATCH;
+            now = System.nanoTime();
+        } while (now < deadline);
+        return ops * 1e9 / (now - start);
+    }
+
+    static HashTableADT<String, String> newTable(String structure) {
+        switch (structure) {
+        case "HashTable":
+            return new HashTable<>();
+        case "HashMap":
+            return new MapAdapter<>(new HashMap<String, String>());
+        case "TreeMap":
+            return new MapAdapter<>(new TreeMap<String, String>());
+        default:
+            throw new IllegalArgumentException("Unknown structure: " + structure);
+        }
+    }
+
+    /**
+     * @return count distinct keys of exactly keyLength characters: a
+     *          random prefix followed by the key's index in base 36
+     */
+    static String[] keys(int count, int keyLength, long seed) {
+        Random random = new Random(seed);
+        String[] keys = new String[count];
+        StringBuilder sb = new StringBuilder(keyLength);
+        for (int i = 0; i < count; i++) {
+            String index = Integer.toString(i, 36);
+            sb.setLength(0);
+            for (int j = index.length(); j < keyLength; j++) {
+                sb.append((char) ('a' + random.nextInt(26)));
+            }
+            keys[i] = sb.append(index).toString();
+        }
+        // shuffle so lookups do not follow insertion order
+        for (int i = count - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            String t = keys[i];
+            keys[i] = keys[j];
+            keys[j] = t;
+        }
+        return keys;
+    }
+
+    static Workload workload(String operation, String structure, int size, int keyLength) {
+        final String[] keys = keys(size, keyLength, 42);
+        final HashTableADT<String, String> table = newTable(structure);
+        if (!operation.equals("put")) {
+            for (String key : keys) {
+                table.put(key, VALUE);
+            }
+        }
+        switch (operation) {
+        case "put":
+            return new Workload() {
+                int i;
+
+                @Override
+                public void run(Blackhole bh) {
+                    if (i == keys.length) {
+                        table.clear();
+                        i = 0;
+                    }
+                    bh.consume(table.put(keys[i++], VALUE));
+                }
+            };
+        case "get":
+            return new Workload() {
+                int i;
+
+                @Override
+                public void run(Blackhole bh) {
+                    bh.consume(table.get(keys[i]));
+                    i = i + 1 == keys.length ? 0 : i + 1;
+                }
+            };
+        case "remove":
+            return new Workload() {
+                int i;
+
+                @Override
+                public void run(Blackhole bh) {
+                    String key = keys[i];
+                    bh.consume(table.remove(key));
+                    table.put(key, VALUE);
+                    i = i + 1 == keys.length ? 0 : i + 1;
+                }
+            };
+        case "mixed":
+            final byte[] ops = new byte[1024];
+            Random random = new Random(7);
+            for (int i = 0; i < ops.length; i++) {
+                int r = random.nextInt(100);
+                ops[i] = (byte) (r < 90 ? 0 : r < 95 ? 1 : 2);
+            }
+            // gets only touch the first half, which is never removed, so
+            // every get is a hit and no exception is thrown
+            final int half = Math.max(1, keys.length / 2);
+            return new Workload() {
+                int op;
+                int stable;
+                int churn;
+
+                @Override
+                public void run(Blackhole bh) {
+                    switch (ops[op++ & (ops.length - 1)]) {
+                    case 0:
+                        bh.consume(table.get(keys[stable]));
+                        stable = stable + 1 == half ? 0 : stable + 1;
+                        break;
+                    case 1:
+                        bh.consume(table.put(keys[half + churn], VALUE));
+                        churn = half + churn + 1 >= keys.length ? 0 : churn + 1;
+                        break;
+                    default:
+                        bh.consume(table.remove(keys[half + churn]));
+                        break;
+                    }
+                }
+            };
+        default:
+            throw new IllegalArgumentException("Unknown operation: " + operation);
+        }
+    }
+
+    private void printSummary(List<Result> results) {
+        System.out.println(String.format("%-26s %12s %8s %12s %6s %4s %18s %14s %6s", "Benchmark", "(keyLength)",
+                "(size)", "(structure)", "Mode", "Cnt", "Score", "Error", "Units"));
+        for (Result r : results) {
+            double[] all = r.all();
+            System.out.println(String.format("%-26s %12s %8s %12s %6s %4d %18.3f +- %12.3f %6s", r.benchmark.name(),
+                    r.benchmark.params.get("keyLength"), r.benchmark.params.get("size"),
+                    r.benchmark.params.get("structure"), "thrpt", all.length, Statistics.mean(all),
+                    Statistics.confidenceError(all, CONFIDENCE), "ops/s"));
+        }
+    }
+
+    /**
+     * Writes results as the JSON array JMH's -rf json produces.
+     */
+    void writeJson(List<Result> results, Writer writer) {
+        PrintWriter out = new PrintWriter(writer);
+        out.println("[");
+        for (int r = 0; r < results.size(); r++) {
+            Result result = results.get(r);
+            double[] all = result.all();
+            double score = Statistics.mean(all);
+            double error = Statistics.confidenceError(all, CONFIDENCE);
+            out.println("    {");
+            out.println("        \"jmhVersion\" : \"n/a\",");
+            out.println("        \"benchmark\" : " + quote(result.benchmark.name()) + ",");
+            out.println("        \"mode\" : \"thrpt\",");
+            out.println("        \"threads\" : 1,");
+            out.println("        \"forks\" : " + forks + ",");
+            out.println("        \"jvm\" : " + quote(javaBinary()) + ",");
+            out.print("        \"jvmArgs\" : [");
+            List<String> jvmArgs = jvmArgs();
+            for (int i = 0; i < jvmArgs.size(); i++) {
+                out.print((i == 0 ? " " : ", ") + quote(jvmArgs.get(i)));
+            }
+            out.println(jvmArgs.isEmpty() ? "]," : " ],");
+            out.println("        \"jdkVersion\" : " + quote(System.getProperty("java.version")) + ",");
+            out.println("        \"vmName\" : " + quote(System.getProperty("java.vm.name")) + ",");
+            out.println("        \"vmVersion\" : " + quote(System.getProperty("java.vm.version")) + ",");
+            out.println("        \"warmupIterations\" : " + warmupIterations + ",");
+            out.println("        \"warmupTime\" : \"" + iterationMillis + " ms\",");
+            out.println("        \"warmupBatchSize\" : 1,");
+            out.println("        \"measurementIterations\" : " + measurementIterations + ",");
+            out.println("        \"measurementTime\" : \"" + iterationMillis + " ms\",");
+            out.println("        \"measurementBatchSize\" : 1,");
+            out.println("        \"params\" : {");
+            int p = 0;
+            for (Map.Entry<String, String> e : result.benchmark.params.entrySet()) {
+                out.println("            " + quote(e.getKey()) + " : " + quote(e.getValue())
+                        + (++p < result.benchmark.params.size() ? "," : ""));
+            }
+            out.println("        },");
+            out.println("        \"primaryMetric\" : {");
+            out.println("            \"score\" : " + number(score) + ",");
+            out.println("            \"scoreError\" : " + number(error) + ",");
+            out.println("            \"scoreConfidence\" : [");
+            out.println("                " + number(score - error) + ",");
+            out.println("                " + number(score + error));
+            out.println("            ],");
+            out.println("            \"scorePercentiles\" : {");
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                out.println("                \"" + PERCENTILES[i] + "\" : "
+                        + number(Statistics.percentile(all, PERCENTILES[i]))
+                        + (i + 1 < PERCENTILES.length ? "," : ""));
+            }
+            out.println("            },");
+            out.println("            \"scoreUnit\" : \"ops/s\",");
+            out.println("            \"rawData\" : [");
+            for (int f = 0; f < result.forks.size(); f++) {
+                double[] fork = result.forks.get(f);
+                out.println("                [");
+                for (int i = 0; i < fork.length; i++) {
+                    out.println("                    " + number(fork[i]) + (i + 1 < fork.length ? "," : ""));
+                }
+                out.println("                ]" + (f + 1 < result.forks.size() ? "," : ""));
+            }
+            out.println("            ]");
+            out.println("        },");
+            out.println("        \"secondaryMetrics\" : {");
+            out.println("        }");
+            out.println("    }" + (r + 1 < results.size() ? "," : ""));
+        }
+        out.println("]");
+        out.flush();
+    }
+
+    /**
+     * JMH writes non-finite scores as the strings "NaN" and "Infinity".
+     */
+    private static String number(double value) {
+        return Double.isNaN(value) || Double.isInfinite(value) ? quote(Double.toString(value))
+                : Double.toString(value);
+    }
+
+    private static String quote(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
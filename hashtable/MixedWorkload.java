@@ -0,0 +1,341 @@
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * YCSB-style workload: a fixed mix of reads, updates, inserts and deletes
+ * over a preloaded key set, issued by a number of threads for a fixed
+ * time against one shared thread-safe HashTableADT.
+ *
+ * Keys are chosen from one of three distributions, as in YCSB:
+ *   UNIFORM  every key equally likely
+ *   ZIPFIAN  a few keys take most requests (theta 0.99), their ranks
+ *            scattered over the key set by a hash so hot keys are not
+ *            neighbours
+ *   LATEST   Zipfian over insertion order, most recently inserted first
+ *
+ * Inserts add new keys past the preloaded ones, so reads under UNIFORM and
+ * LATEST reach them too. A read of a deleted key is counted as not found,
+ * which for HashTable means paying for the NoSuchElementException.
+ *
+ * Each thread keeps its own Random, ZipfGenerator and LatencyHistograms,
+ * so the measurement itself shares nothing between threads.
+ */
+public class MixedWorkload {
+
+    public enum Distribution {
+        UNIFORM, ZIPFIAN, LATEST
+    }
+
+    private static final String INSERT_PREFIX = "workload-insert-";
+    // stop flag is read once per this many operations
+    private static final int CHECK_INTERVAL = 64;
+
+    private final double read;
+    private final double update;
+    private final double insert;
+    private final double delete;
+    private final Distribution distribution;
+    private final long durationMillis;
+
+    /**
+     * @param read share of reads; the four shares must add up to 1
+     * @param durationMillis how long each run issues operations
+     */
+    public MixedWorkload(double read, double update, double insert, double delete, Distribution distribution,
+            long durationMillis) {
+        if (read < 0 || update < 0 || insert < 0 || delete < 0
+                || Math.abs(read + update + insert + delete - 1) > 1e-9) {
+            throw new IllegalArgumentException(String.format(Locale.ROOT,
+                    "Shares must be non-negative and add up to 1: read=%s update=%s insert=%s delete=%s",
+                    read, update, insert, delete));
+        }
+        if (distribution == null) {
+            throw new NullPointerException("Invalid Distribution");
+        }
+        if (durationMillis < 1) {
+            throw new IllegalArgumentException("Illegal duration: " + durationMillis);
+        }
+        this.read = read;
+        this.update = update;
+        this.insert = insert;
+        this.delete = delete;
+        this.distribution = distribution;
+        this.durationMillis = durationMillis;
+    }
+
+    /**
+     * Parses a workload description: one of the YCSB core workloads
+     *   a  50% read, 50% update, zipfian
+     *   b  95% read, 5% update, zipfian
+     *   c  100% read, zipfian
+     *   d  95% read, 5% insert, latest
+     * or comma separated settings such as
+     *   read=0.8,update=0.1,insert=0.05,delete=0.05,dist=uniform,millis=2000
+     * where shares not given are 0 and the defaults are zipfian and 1000
+     * milliseconds. A preset may be followed by settings that override it.
+     */
+    public static MixedWorkload parse(String spec) {
+        double read = 0;
+        double update = 0;
+        double insert = 0;
+        double delete = 0;
+        Distribution distribution = Distribution.ZIPFIAN;
+        long millis = 1000;
+        String[] parts = spec.split(",");
+        int first = 0;
+        switch (parts[0].trim().toLowerCase(Locale.ROOT)) {
+        case "a":
+            read = 0.5;
+            update = 0.5;
+            first = 1;
+            break;
+        case "b":
+            read = 0.95;
+            update = 0.05;
+            first = 1;
+            break;
+        case "c":
+            read = 1;
+            first = 1;
+            break;
+        case "d":
+            read = 0.95;
+            insert = 0.05;
+            distribution = Distribution.LATEST;
+            first = 1;
+            break;
+        default:
+            break;
+        }
+        for (int i = first; i < parts.length; i++) {
+            String[] setting = parts[i].trim().split("=", 2);
+            if (setting.length != 2) {
+                throw new IllegalArgumentException("Expected name=value: " + parts[i]);
+            }
+            String value = setting[1].trim();
+            switch (setting[0].trim().toLowerCase(Locale.ROOT)) {
+            case "read":
+                read = Double.parseDouble(value);
+                break;
+            case "update":
+                update = Double.parseDouble(value);
+                break;
+            case "insert":
+                insert = Double.parseDouble(value);
+                break;
+            case "delete":
+                delete = Double.parseDouble(value);
+                break;
+            case "dist":
+                distribution = Distribution.valueOf(value.toUpperCase(Locale.ROOT));
+                break;
+            case "millis":
+                millis = Long.parseLong(value);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown workload setting: " + setting[0]);
+            }
+        }
+        return new MixedWorkload(read, update, insert, delete, distribution, millis);
+    }
+
+    /**
+     * Throughput and latency of one run.
+     */
+    public static final class Result {
+        public final int threads;
+        public final long operations;
+        public final long nanos;
+        public final long notFound;
+        public final LatencyHistogram reads;
+        public final LatencyHistogram writes;
+
+        Result(int threads, long operations, long nanos, long notFound, LatencyHistogram reads,
+                LatencyHistogram writes) {
+            this.threads = threads;
+            this.operations = operations;
+            this.nanos = nanos;
+            this.notFound = notFound;
+            this.reads = reads;
+            this.writes = writes;
+        }
+
+        public double opsPerSecond() {
+            return nanos == 0 ? 0 : operations * 1e9 / nanos;
+        }
+
+        /**
+         * @return latencies of every operation, reads and writes together
+         */
+        public LatencyHistogram all() {
+            LatencyHistogram all = new LatencyHistogram();
+            all.add(reads);
+            all.add(writes);
+            return all;
+        }
+    }
+
+    /**
+     * Puts every key into table with value, then runs the mix from the
+     * given number of threads for the workload's duration.
+     *
+     * @param table an empty thread-safe table
+     */
+    public Result run(final HashTableADT<String, String> table, final String[] keys, final String value,
+            int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Illegal thread count: " + threads);
+        }
+        if (keys.length == 0) {
+            throw new IllegalArgumentException("No keys to preload");
+        }
+        String[] values = new String[keys.length];
+        java.util.Arrays.fill(values, value);
+        table.putAll(keys, values);
+
+        final AtomicInteger inserted = new AtomicInteger(keys.length);
+        final CountDownLatch startGate = new CountDownLatch(1);
+        final Worker[] workers = new Worker[threads];
+        Thread[] running = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Worker(table, keys, value, inserted, 31L * t + 17);
+            final Worker worker = workers[t];
+            running[t] = new Thread(() -> {
+                try {
+                    startGate.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                worker.run();
+            });
+            running[t].start();
+        }
+        long start = System.nanoTime();
+        startGate.countDown();
+        try {
+            Thread.sleep(durationMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Worker worker : workers) {
+            worker.stop = true;
+        }
+        for (Thread thread : running) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        long nanos = System.nanoTime() - start;
+
+        long operations = 0;
+        long notFound = 0;
+        LatencyHistogram reads = new LatencyHistogram();
+        LatencyHistogram writes = new LatencyHistogram();
+        for (Worker worker : workers) {
+            operations += worker.operations;
+            notFound += worker.notFound;
+            reads.add(worker.reads);
+            writes.add(worker.writes);
+        }
+        return new Result(threads, operations, nanos, notFound, reads, writes);
+    }
+
+    /**
+     * One thread of a run, with all of its state private to it.
+     */
+    private final class Worker {
+        private final HashTableADT<String, String> table;
+        private final String[] keys;
+        private final String value;
+        private final AtomicInteger inserted;
+        private final Random random;
+        private final ZipfGenerator zipf;
+        final LatencyHistogram reads = new LatencyHistogram();
+        final LatencyHistogram writes = new LatencyHistogram();
+        volatile boolean stop;
+        long operations;
+        long notFound;
+
+        Worker(HashTableADT<String, String> table, String[] keys, String value, AtomicInteger inserted,
+                long seed) {
+            this.table = table;
+            this.keys = keys;
+            this.value = value;
+            this.inserted = inserted;
+            this.random = new Random(seed);
+            // a seed of its own: with the same seed both would draw the same
+            // doubles, and the key rank would follow the operation type
+            this.zipf = distribution == Distribution.UNIFORM ? null
+                    : new ZipfGenerator(keys.length, random.nextLong());
+        }
+
+        void run() {
+            double readBelow = read;
+            double updateBelow = readBelow + update;
+            double insertBelow = updateBelow + insert;
+            long before = System.nanoTime();
+            while (!stop) {
+                for (int i = 0; i < CHECK_INTERVAL; i++) {
+                    double op = random.nextDouble();
+                    if (op < readBelow) {
+                        try {
+                            table.get(key(chooseIndex()));
+                        } catch (NoSuchElementException e) {
+                            notFound++;
+                        }
+                    } else if (op < updateBelow) {
+                        table.put(key(chooseIndex()), value);
+                    } else if (op < insertBelow) {
+                        table.put(key(inserted.getAndIncrement()), value);
+                    } else {
+                        table.remove(key(chooseIndex()));
+                    }
+                    long after = System.nanoTime();
+                    (op < readBelow ? reads : writes).record(after - before);
+                    before = after;
+                }
+                operations += CHECK_INTERVAL;
+            }
+        }
+
+        private int chooseIndex() {
+            int count = inserted.get();
+            switch (distribution) {
+            case UNIFORM:
+                return random.nextInt(count);
+            case ZIPFIAN:
+                return (int) Long.remainderUnsigned(fnv(zipf.next()), keys.length);
+            default:
+                return Math.max(0, count - 1 - zipf.next());
+            }
+        }
+
+        private String key(int index) {
+            return index < keys.length ? keys[index] : INSERT_PREFIX + index;
+        }
+    }
+
+    /**
+     * 64-bit FNV-1a over the bytes of rank, the scramble YCSB applies to
+     * zipfian ranks.
+     */
+    private static long fnv(int rank) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < 4; i++) {
+            hash ^= (rank >>> (i * 8)) & 0xFF;
+            hash *= 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "read=%.2f update=%.2f insert=%.2f delete=%.2f %s %dms", read, update,
+                insert, delete, distribution.name().toLowerCase(Locale.ROOT), durationMillis);
+    }
+}
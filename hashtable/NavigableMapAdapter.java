@@ -0,0 +1,42 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+
+/**
+ * Presents a java.util.NavigableMap such as TreeMap or
+ * ConcurrentSkipListMap as an OrderedTableADT, answering range searches
+ * from its head and tail views.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class NavigableMapAdapter<K, V> extends MapAdapter<K, V> implements OrderedTableADT<K, V> {
+
+    private final NavigableMap<K, V> map;
+
+    public NavigableMapAdapter(NavigableMap<K, V> map) {
+        super(map);
+        this.map = map;
+    }
+
+    @Override
+    public List<V> rangeSearch(K key, String comparator) {
+        if (key == null || comparator == null) {
+            return new ArrayList<>();
+        }
+        switch (comparator) {
+        case "<=":
+            return new ArrayList<>(map.headMap(key, true).values());
+        case ">=":
+            return new ArrayList<>(map.tailMap(key, true).values());
+        case "==":
+            List<V> found = new ArrayList<>(1);
+            if (map.containsKey(key)) {
+                found.add(map.get(key));
+            }
+            return found;
+        default:
+            return new ArrayList<>();
+        }
+    }
+}
@@ -0,0 +1,337 @@
+import java.lang.instrument.Instrumentation;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Retained size of an object graph: every object reachable from a root
+ * through instance fields and array elements, counted once, minus objects
+ * the caller excludes (for example keys that are also held elsewhere).
+ *
+ * Shallow sizes come from Instrumentation.getObjectSize when the class is
+ * loaded as a Java agent:
+ *
+ *     jar cfm sizer.jar manifest.txt ObjectSizer*.class
+ *     (manifest.txt: "Premain-Class: ObjectSizer")
+ *     java -javaagent:sizer.jar AnalysisTest keys.txt
+ *
+ * Otherwise they are computed from the HotSpot object layout, using the
+ * running JVM's compressed pointer and alignment settings. The two agree
+ * for the classes in this directory and for the JDK collections.
+ *
+ * On Java 9 and later the fields of JDK classes can only be read with
+ * --add-opens java.base/java.lang=ALL-UNNAMED and
+ * --add-opens java.base/java.util=ALL-UNNAMED. Without them Strings are
+ * sized from their length, and Maps, Map.Entries and Collections are
+ * followed through their public API, which reaches every node of a
+ * TreeMap but not the bucket array of a HashMap. Objects whose references
+ * cannot all be followed that way are counted by unreadableObjects.
+ */
+public final class ObjectSizer {
+
+    private static volatile Instrumentation instrumentation;
+
+    private static final int HEADER;
+    private static final int REFERENCE;
+    private static final int ALIGNMENT;
+    private static final boolean COMPACT_STRINGS;
+    private static final boolean JAVA_15_LAYOUT;
+
+    static {
+        boolean compressedOops = vmOption("UseCompressedOops", "true").equals("true");
+        boolean compressedClasses = vmOption("UseCompressedClassPointers", Boolean.toString(compressedOops))
+                .equals("true");
+        HEADER = compressedClasses ? 12 : 16;
+        REFERENCE = compressedOops ? 4 : 8;
+        ALIGNMENT = Integer.parseInt(vmOption("ObjectAlignmentInBytes", "8"));
+        int feature = javaFeatureVersion();
+        COMPACT_STRINGS = feature >= 9 && vmOption("CompactStrings", "true").equals("true");
+        // from JDK 15 subclass fields may fill gaps left by the superclass
+        JAVA_15_LAYOUT = feature >= 15;
+    }
+
+    private final Map<Class<?>, ClassLayout> layouts = new HashMap<>();
+    private final Set<Object> excluded = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+    private int unreadable;
+
+    /**
+     * Called by the JVM before main when started with -javaagent.
+     */
+    public static void premain(String args, Instrumentation inst) {
+        instrumentation = inst;
+    }
+
+    /**
+     * Called by the JVM when the agent is attached to a running process.
+     */
+    public static void agentmain(String args, Instrumentation inst) {
+        instrumentation = inst;
+    }
+
+    /**
+     * @return whether shallow sizes come from an Instrumentation agent
+     */
+    public static boolean hasInstrumentation() {
+        return instrumentation != null;
+    }
+
+    /**
+     * Leaves o, and anything reachable only through it, out of later
+     * deepSize calls.
+     */
+    public ObjectSizer exclude(Object o) {
+        if (o != null) {
+            excluded.add(o);
+        }
+        return this;
+    }
+
+    public ObjectSizer excludeAll(Iterable<?> objects) {
+        for (Object o : objects) {
+            exclude(o);
+        }
+        return this;
+    }
+
+    /**
+     * @return bytes of heap held by root and everything reachable from it
+     *          that is not excluded
+     */
+    public long deepSize(Object root) {
+        Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+        ArrayDeque<Object> stack = new ArrayDeque<>();
+        long total = 0;
+        if (root != null) {
+            stack.push(root);
+        }
+        while (!stack.isEmpty()) {
+            Object o = stack.pop();
+            if (excluded.contains(o) || o instanceof Class || !visited.add(o)) {
+                continue;
+            }
+            total += shallowSize(o);
+            Class<?> type = o.getClass();
+            if (type.isArray()) {
+                if (!type.getComponentType().isPrimitive()) {
+                    for (Object element : (Object[]) o) {
+                        if (element != null) {
+                            stack.push(element);
+                        }
+                    }
+                }
+                continue;
+            }
+            ClassLayout layout = layout(type);
+            if (layout.readable) {
+                for (Field f : layout.references) {
+                    Object child = read(f, o);
+                    if (child != null) {
+                        stack.push(child);
+                    }
+                }
+            } else {
+                total += followPublicApi(o, stack);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * @return bytes of o itself, without the objects it references
+     */
+    public long shallowSize(Object o) {
+        Instrumentation inst = instrumentation;
+        if (inst != null) {
+            return inst.getObjectSize(o);
+        }
+        Class<?> type = o.getClass();
+        if (type.isArray()) {
+            long base = align(HEADER + 4, 8);
+            return align(base + (long) Array.getLength(o) * elementSize(type.getComponentType()), ALIGNMENT);
+        }
+        return layout(type).shallowSize;
+    }
+
+    /**
+     * @return objects since this sizer was created whose references could
+     *          not all be followed, so a nonzero count means deepSize
+     *          results are lower bounds
+     */
+    public int unreadableObjects() {
+        return unreadable;
+    }
+
+    /**
+     * Pushes what can be reached from o without reflection.
+     *
+     * @return bytes of hidden objects that are sized here instead
+     */
+    private long followPublicApi(Object o, ArrayDeque<Object> stack) {
+        if (o instanceof String) {
+            int length = ((String) o).length();
+            int bytes = COMPACT_STRINGS && isLatin1((String) o) ? length : 2 * length;
+            return align(align(HEADER + 4, 8) + bytes, ALIGNMENT);
+        }
+        if (o instanceof Map.Entry) {
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            pushIfPresent(e.getKey(), stack);
+            pushIfPresent(e.getValue(), stack);
+        } else if (o instanceof Map) {
+            // TreeMap and LinkedHashMap entry sets hand out their own nodes
+            for (Object entry : ((Map<?, ?>) o).entrySet()) {
+                stack.push(entry);
+            }
+        } else if (o instanceof Collection) {
+            for (Object element : (Collection<?>) o) {
+                pushIfPresent(element, stack);
+            }
+        } else if (o instanceof AtomicReference) {
+            pushIfPresent(((AtomicReference<?>) o).get(), stack);
+        } else {
+            unreadable++;
+            return 0;
+        }
+        if (layout(o.getClass()).hasArrays) {
+            // a HashMap table or ArrayList backing array the API never shows
+            unreadable++;
+        }
+        return 0;
+    }
+
+    private static void pushIfPresent(Object o, ArrayDeque<Object> stack) {
+        if (o != null) {
+            stack.push(o);
+        }
+    }
+
+    private static boolean isLatin1(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) > 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Object read(Field f, Object o) {
+        try {
+            return f.get(o);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Field made accessible but not readable: " + f, e);
+        }
+    }
+
+    /**
+     * Instance size and reference fields of one class, found once.
+     */
+    private static final class ClassLayout {
+        final long shallowSize;
+        final Field[] references;
+        final boolean readable;
+        final boolean hasArrays;
+
+        ClassLayout(long shallowSize, Field[] references, boolean readable, boolean hasArrays) {
+            this.shallowSize = shallowSize;
+            this.references = references;
+            this.readable = readable;
+            this.hasArrays = hasArrays;
+        }
+    }
+
+    private ClassLayout layout(Class<?> type) {
+        ClassLayout layout = layouts.get(type);
+        if (layout == null) {
+            layout = computeLayout(type);
+            layouts.put(type, layout);
+        }
+        return layout;
+    }
+
+    private static ClassLayout computeLayout(Class<?> type) {
+        List<Field> references = new ArrayList<>();
+        long size = HEADER;
+        List<Class<?>> hierarchy = new ArrayList<>();
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            hierarchy.add(0, c);
+        }
+        for (Class<?> c : hierarchy) {
+            long fields = 0;
+            for (Field f : c.getDeclaredFields()) {
+                if (Modifier.isStatic(f.getModifiers())) {
+                    continue;
+                }
+                fields += elementSize(f.getType());
+                if (!f.getType().isPrimitive()) {
+                    references.add(f);
+                }
+            }
+            size += fields;
+            if (!JAVA_15_LAYOUT && fields > 0) {
+                // older layouts start each subclass block on a 4 byte boundary
+                size = align(size, 4);
+            }
+        }
+        boolean readable = true;
+        boolean hasArrays = false;
+        for (Field f : references) {
+            hasArrays |= f.getType().isArray();
+        }
+        for (Field f : references) {
+            try {
+                f.setAccessible(true);
+            } catch (RuntimeException e) {
+                // InaccessibleObjectException: a JDK package not opened
+                readable = false;
+                break;
+            }
+        }
+        return new ClassLayout(align(size, ALIGNMENT), references.toArray(new Field[0]), readable,
+                hasArrays);
+    }
+
+    private static int elementSize(Class<?> type) {
+        if (type == long.class || type == double.class) {
+            return 8;
+        }
+        if (type == int.class || type == float.class) {
+            return 4;
+        }
+        if (type == short.class || type == char.class) {
+            return 2;
+        }
+        if (type == byte.class || type == boolean.class) {
+            return 1;
+        }
+        return REFERENCE;
+    }
+
+    private static long align(long size, int alignment) {
+        return (size + alignment - 1) / alignment * alignment;
+    }
+
+    private static String vmOption(String name, String fallback) {
+        try {
+            return ManagementFactory.getPlatformMXBean(com.sun.management.HotSpotDiagnosticMXBean.class)
+                    .getVMOption(name).getValue();
+        } catch (RuntimeException e) {
+            // not HotSpot, or the option does not exist in this release
+            return fallback;
+        }
+    }
+
+    private static int javaFeatureVersion() {
+        String version = System.getProperty("java.specification.version");
+        return version.startsWith("1.") ? Integer.parseInt(version.substring(2)) : Integer.parseInt(version);
+    }
+}
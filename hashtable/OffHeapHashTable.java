@@ -0,0 +1,453 @@
+import java.io.Closeable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * HashTableADT that keeps every key and value outside the Java heap.
+ *
+ * Entries are encoded with a Codec and appended to an arena of direct
+ * ByteBuffer chunks as [key length][value length][key bytes][value bytes].
+ * The heap only holds the index: a long[] of arena addresses and an int[]
+ * of hashes, probed linearly. The collector therefore sees a handful of
+ * arrays no matter how many entries there are. Lookups encode the probe
+ * key once into a scratch buffer and compare bytes, so only the value
+ * returned by get is ever decoded.
+ *
+ * remove and overwriting put leave dead records in the arena. Once dead
+ * bytes pass compactRatio of the arena, the live records are copied into
+ * fresh chunks and the old ones are freed. close() releases all native
+ * memory right away instead of waiting for the buffers to be collected.
+ * The table must not be used after close().
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class OffHeapHashTable<K, V> implements HashTableADT<K, V>, Closeable {
+
+    static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+    // record header: key length and value length
+    private static final int HEADER = 2 * Integer.BYTES;
+
+    private final Codec<K> keyCodec;
+    private final Codec<V> valueCodec;
+    private final int chunkSize;
+    private final double compactRatio;
+
+    private List<ByteBuffer> chunks = new ArrayList<>();
+    private ByteBuffer current;        // chunk being appended to
+
+    // index: address 0 marks a free slot, otherwise (chunk + 1) << 32 | offset
+    private long[] addresses;
+    private int[] hashes;
+    private int mask;
+    private int num;
+
+    private long liveBytes;
+    private long deadBytes;
+    private int compactions;
+
+    private ByteBuffer scratch = ByteBuffer.allocate(256);
+    private boolean closed;
+
+    public OffHeapHashTable(Codec<K> keyCodec, Codec<V> valueCodec) {
+        this(keyCodec, valueCodec, 16, DEFAULT_CHUNK_SIZE, 0.5);
+    }
+
+    /**
+     * @param keyCodec encodes keys into the arena
+     * @param valueCodec encodes values into the arena
+     * @param initialCapacity number of entries to index without resizing
+     * @param chunkSize bytes per arena chunk; larger records get their own
+     * @param compactRatio fraction of dead arena bytes that triggers a
+     *          compaction
+     */
+    public OffHeapHashTable(Codec<K> keyCodec, Codec<V> valueCodec, int initialCapacity,
+            int chunkSize, double compactRatio) {
+        if (keyCodec == null || valueCodec == null) {
+            throw new NullPointerException("Codec required");
+        }
+        if (initialCapacity < 0 || chunkSize <= HEADER) {
+            throw new IllegalArgumentException("Illegal capacity or chunk size");
+        }
+        if (!(compactRatio > 0 && compactRatio < 1)) {
+            throw new IllegalArgumentException("Illegal compact ratio: " + compactRatio);
+        }
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        this.chunkSize = chunkSize;
+        this.compactRatio = compactRatio;
+        allocateIndex(HashTable.tableSizeFor(Math.max(4, initialCapacity * 2)));
+    }
+
+    private void allocateIndex(int capacity) {
+        addresses = new long[capacity];
+        hashes = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Table is closed");
+        }
+    }
+
+    /**
+     * @return a view of the record at address, positioned at its header
+     */
+    private ByteBuffer record(long address) {
+        ByteBuffer chunk = chunks.get((int) (address >>> 32) - 1);
+        ByteBuffer view = chunk.duplicate();
+        view.position((int) address);
+        return view;
+    }
+
+    /**
+     * Encodes key into the scratch buffer, growing it if needed.
+     *
+     * @return number of key bytes in scratch
+     */
+    private int encodeKey(K key) {
+        int length = keyCodec.encodedSize(key);
+        if (scratch.capacity() < length) {
+            scratch = ByteBuffer.allocate(Math.max(length, scratch.capacity() * 2));
+        }
+        scratch.clear();
+        keyCodec.encode(key, scratch);
+        return length;
+    }
+
+    private boolean keyEquals(long address, int keyLength) {
+        ByteBuffer chunk = chunks.get((int) (address >>> 32) - 1);
+        int offset = (int) address;
+        if (chunk.getInt(offset) != keyLength) {
+            return false;
+        }
+        int start = offset + HEADER;
+        for (int i = 0; i < keyLength; i++) {
+            if (chunk.get(start + i) != scratch.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the index slot of the key encoded in scratch, or the free slot
+     *          where it would go
+     */
+    private int slotOf(int hash, int keyLength) {
+        int i = hash & mask;
+        while (addresses[i] != 0) {
+            if (hashes[i] == hash && keyEquals(addresses[i], keyLength)) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private int recordSize(long address) {
+        ByteBuffer chunk = chunks.get((int) (address >>> 32) - 1);
+        int offset = (int) address;
+        return HEADER + chunk.getInt(offset) + chunk.getInt(offset + Integer.BYTES);
+    }
+
+    /**
+     * Appends the key in scratch and value to the arena.
+     *
+     * @return the address of the new record
+     */
+    private long append(int keyLength, V value) {
+        int valueLength = valueCodec.encodedSize(value);
+        int size = HEADER + keyLength + valueLength;
+        if (current == null || current.remaining() < size) {
+            current = ByteBuffer.allocateDirect(Math.max(chunkSize, size));
+            chunks.add(current);
+        }
+        long address = ((long) chunks.size() << 32) | current.position();
+        current.putInt(keyLength);
+        current.putInt(valueLength);
+        for (int i = 0; i < keyLength; i++) {
+            current.put(scratch.get(i));
+        }
+        valueCodec.encode(value, current);
+        liveBytes += size;
+        return address;
+    }
+
+    @Override
+    public V put(K key, V value) throws NullPointerException {
+        if (key == null) {
+            throw new NullPointerException("Invalid Key");
+        }
+        checkOpen();
+        int hash = HashTable.spread(key);
+        int keyLength = encodeKey(key);
+        int i = slotOf(hash, keyLength);
+        if (addresses[i] != 0) {
+            int oldSize = recordSize(addresses[i]);
+            liveBytes -= oldSize;
+            deadBytes += oldSize;
+        } else {
+            if (num + 1 > (mask + 1) / 2) {
+                resizeIndex();
+                i = slotOf(hash, keyLength);
+            }
+            num++;
+        }
+        hashes[i] = hash;
+        addresses[i] = append(keyLength, value);
+        maybeCompact();
+        return value;
+    }
+
+    @Override
+    public V get(K key) throws NoSuchElementException {
+        if (key == null) {
+            throw new NullPointerException("Invalid Key");
+        }
+        checkOpen();
+        int i = slotOf(HashTable.spread(key), encodeKey(key));
+        if (addresses[i] == 0) {
+            throw new NoSuchElementException("Key not found: " + key);
+        }
+        ByteBuffer view = record(addresses[i]);
+        int keyLength = view.getInt();
+        int valueLength = view.getInt();
+        view.position(view.position() + keyLength);
+        return valueCodec.decode(view, valueLength);
+    }
+
+    /**
+     * @param key key to look for
+     * @return true if the key has a mapping in this table
+     */
+    public boolean containsKey(K key) {
+        if (key == null) {
+            throw new NullPointerException("Invalid Key");
+        }
+        checkOpen();
+        return addresses[slotOf(HashTable.spread(key), encodeKey(key))] != 0;
+    }
+
+    @Override
+    public V remove(K key) throws NullPointerException {
+        if (key == null) {
+            throw new NullPointerException("Invalid Key");
+        }
+        checkOpen();
+        int i = slotOf(HashTable.spread(key), encodeKey(key));
+        if (addresses[i] == 0) {
+            return null;
+        }
+        ByteBuffer view = record(addresses[i]);
+        int keyLength = view.getInt();
+        int valueLength = view.getInt();
+        view.position(view.position() + keyLength);
+        V old = valueCodec.decode(view, valueLength);
+        int size = HEADER + keyLength + valueLength;
+        liveBytes -= size;
+        deadBytes += size;
+
+        // backward-shift deletion, same as PrimitiveHashTable
+        int hole = i;
+        int j = i;
+        for (;;) {
+            j = (j + 1) & mask;
+            if (addresses[j] == 0) {
+                break;
+            }
+            int home = hashes[j] & mask;
+            if (((j - home) & mask) >= ((j - hole) & mask)) {
+                addresses[hole] = addresses[j];
+                hashes[hole] = hashes[j];
+                hole = j;
+            }
+        }
+        addresses[hole] = 0;
+        hashes[hole] = 0;
+        num--;
+        maybeCompact();
+        return old;
+    }
+
+    private void resizeIndex() {
+        long[] oldAddresses = addresses;
+        int[] oldHashes = hashes;
+        allocateIndex(oldAddresses.length << 1);
+        for (int i = 0; i < oldAddresses.length; i++) {
+            if (oldAddresses[i] != 0) {
+                int j = oldHashes[i] & mask;
+                while (addresses[j] != 0) {
+                    j = (j + 1) & mask;
+                }
+                addresses[j] = oldAddresses[i];
+                hashes[j] = oldHashes[i];
+            }
+        }
+    }
+
+    private void maybeCompact() {
+        long total = liveBytes + deadBytes;
+        if (total > chunkSize && deadBytes > total * compactRatio) {
+            compact();
+        }
+    }
+
+    /**
+     * Copies every live record into new chunks, rewrites the index to point
+     * at the copies and frees the old chunks.
+     */
+    public void compact() {
+        checkOpen();
+        List<ByteBuffer> oldChunks = chunks;
+        chunks = new ArrayList<>();
+        current = null;
+        for (int i = 0; i <= mask; i++) {
+            long address = addresses[i];
+            if (address == 0) {
+                continue;
+            }
+            ByteBuffer source = oldChunks.get((int) (address >>> 32) - 1).duplicate();
+            int offset = (int) address;
+            int size = HEADER + source.getInt(offset) + source.getInt(offset + Integer.BYTES);
+            if (current == null || current.remaining() < size) {
+                current = ByteBuffer.allocateDirect(Math.max(chunkSize, size));
+                chunks.add(current);
+            }
+            addresses[i] = ((long) chunks.size() << 32) | current.position();
+            source.limit(offset + size).position(offset);
+            current.put(source);
+        }
+        for (ByteBuffer chunk : oldChunks) {
+            free(chunk);
+        }
+        deadBytes = 0;
+        compactions++;
+    }
+
+    @Override
+    public void clear() {
+        checkOpen();
+        for (ByteBuffer chunk : chunks) {
+            free(chunk);
+        }
+        chunks = new ArrayList<>();
+        current = null;
+        Arrays.fill(addresses, 0);
+        Arrays.fill(hashes, 0);
+        num = 0;
+        liveBytes = 0;
+        deadBytes = 0;
+    }
+
+    /**
+     * Frees all native memory held by the table. Calling close more than
+     * once has no effect.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        for (ByteBuffer chunk : chunks) {
+            free(chunk);
+        }
+        chunks = null;
+        current = null;
+        addresses = null;
+        hashes = null;
+        closed = true;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return num == 0;
+    }
+
+    @Override
+    public int size() {
+        return num;
+    }
+
+    /**
+     * @return bytes of native memory currently reserved by the arena
+     */
+    public long offHeapBytes() {
+        if (closed) {
+            return 0;
+        }
+        long total = 0;
+        for (ByteBuffer chunk : chunks) {
+            total += chunk.capacity();
+        }
+        return total;
+    }
+
+    /**
+     * @return bytes in the arena belonging to removed or overwritten records
+     */
+    public long deadBytes() {
+        return deadBytes;
+    }
+
+    /**
+     * @return number of compactions run so far
+     */
+    public int compactions() {
+        return compactions;
+    }
+
+    private static final Method INVOKE_CLEANER;
+    private static final Object UNSAFE;
+
+    static {
+        Method invokeCleaner = null;
+        Object unsafe = null;
+        try {
+            // Java 9 and later
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafe = theUnsafe.get(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            invokeCleaner = null;
+            unsafe = null;
+        }
+        INVOKE_CLEANER = invokeCleaner;
+        UNSAFE = unsafe;
+    }
+
+    /**
+     * Releases the native memory of a direct buffer now rather than when it
+     * is collected. Falls back to leaving it to the collector when the JVM
+     * offers no way to do that.
+     */
+    static void free(ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect()) {
+            return;
+        }
+        try {
+            if (INVOKE_CLEANER != null) {
+                INVOKE_CLEANER.invoke(UNSAFE, buffer);
+                return;
+            }
+            // Java 8: DirectByteBuffer.cleaner().clean()
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null) {
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // the buffer is still released once it becomes unreachable
+        }
+    }
+}
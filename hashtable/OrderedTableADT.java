@@ -0,0 +1,21 @@
+import java.util.List;
+
+/**
+ * A HashTableADT whose keys are kept in order, so it can also answer the
+ * one-sided range searches of application.BPTreeADT. The harness runs its
+ * range workload against every registered structure that implements this.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public interface OrderedTableADT<K, V> extends HashTableADT<K, V> {
+
+    /**
+     * As BPTreeADT.rangeSearch: comparator is one of "<=", "==" or ">=".
+     *
+     * @return the values whose keys compare to key as comparator says, in
+     *          no particular order; an empty list if key is null, nothing
+     *          matches or comparator is anything else
+     */
+    List<V> rangeSearch(K key, String comparator);
+}
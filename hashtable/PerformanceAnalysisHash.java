@@ -1,25 +1,69 @@
 import java.io.*;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.StreamSupport;
 
 public class PerformanceAnalysisHash implements PerformanceAnalysis {
 
-    // The input data from each file is stored in this/ per file
-    private ArrayList<String> inputData;
+    // The input data from each file is stored in this/ per file, or a view
+    // that builds each key from generator when one is used instead
+    private List<String> inputData;
+    private KeyGenerator generator;
+    private long operations;	//GET operations per structure in generator mode
     private String fileName;
-    private TreeMap testTree;
-    private HashTable testTable;
+    // what the PUT, GET, DELETE and range rows run against, and the
+    // instances compareInsertion filled, by name
+    private StructureRegistry structures = StructureRegistry.defaults();
+    private final Map<String, HashTableADT<String, String>> tables = new LinkedHashMap<>();
     private String test;
     private String insertReport;
     private String deleteReport;
     private String searchReport;
     private String printReport;
+    private String latencyReport;
+    private String scalingReport;
+    private String numericReport;
+    private String offHeapReport;
+    private String snapshotReport;
+    private String bulkReport;
+    private String scanReport;
+    private String statsReport;
+    private String cacheReport;
+    private String persistentReport;
+    private String bloomReport;
+    private String memoryReport;
+    private String workloadReport;
+    private String loaderReport;
+    private String rangeReport;
+    private String baselineReport;
+    private String baselineName;
+    // every trial of every PUT, GET and DELETE row, for ResultStore
+    private final ResultStore.Samples samples = new ResultStore.Samples();
+    private MixedWorkload workload = MixedWorkload.parse("b");
+    private int workloadThreads = Runtime.getRuntime().availableProcessors();
+    // per-operation latencies of the PUT, GET and DELETE rows, keyed by
+    // operation and structure in report order
+    private final Map<String, LatencyHistogram> latencies = new LinkedHashMap<>();
+    private double hitRatio = DEFAULT_HIT_RATIO;
+
+    // range searches per ordered structure in compareRange
+    static final int RANGE_QUERIES = 100;
+
+    // rounds of compareBulk, the last of which is reported
+    private static final int WARM_ROUNDS = 3;
+
+    // share of compareBloomFilter lookups that ask for a present key
+    static final double DEFAULT_HIT_RATIO = 0.1;
     
     public PerformanceAnalysisHash()
     {
     		test = "hello";
-    		testTree = new TreeMap<>();
-    		testTable = new HashTable<>();
     }
 
     public PerformanceAnalysisHash(String details_filename){
@@ -35,13 +79,54 @@ public class PerformanceAnalysisHash implements PerformanceAnalysis {
     			System.out.println("Invalid File");
     		}
     }
+    /**
+     * Uses keys computed by generator instead of a file. Nothing is loaded:
+     * each comparison builds the keys it touches as it goes, and the GET
+     * rows of compareSearch draw operations keys in the generator's access
+     * order, so the key space and the operation count scale separately.
+     * Building a key is part of each timed operation, as it is in YCSB.
+     *
+     * @param operations: GET operations per structure in compareSearch
+     */
+    public PerformanceAnalysisHash(KeyGenerator generator, long operations) {
+    		this();
+    		if (operations < 1)
+    		{
+    			throw new IllegalArgumentException("Illegal operation count: " + operations);
+    		}
+    		this.generator = generator;
+    		this.operations = operations;
+    		fileName = generator.toString();
+    		inputData = generator.asList();
+    }
+
     @Override
     public void compareDataStructures() {
         //TODO: Complete this function which compares the ds and generates the details
+    		// search runs before deletion so every GET is a hit, HashTable.get
+    		// throws NoSuchElementException for absent keys
     		compareInsertion();
-    		compareDeletion();
     		compareSearch();
-    		printReport = insertReport + "\n" + deleteReport + "\n" + searchReport + "\n";
+    		compareDeletion();
+    		compareRange();
+    		if (generator != null)
+    		{
+    			// the other comparisons copy the keys into arrays, which is what
+    			// generator mode is there to avoid; call them individually
+    			printReport = operationReport();
+    			return;
+    		}
+    		compareResizeLatency();
+    		compareNumericKeys();
+    		compareOffHeap();
+    		compareBulk();
+    		compareParallelScan();
+    		compareHashStats();
+    		compareCacheHitRate();
+    		comparePersistent();
+    		compareBloomFilter();
+    		compareMemory();
+    		printReport = operationReport();
     }
 
     @Override
@@ -49,101 +134,1475 @@ public class PerformanceAnalysisHash implements PerformanceAnalysis {
         //TODO: Complete this method
     		System.out.println("Performance Analysis Report");
     		System.out.println("------------------------------------------------------------------------");
-    		System.out.println(String.format("|%22s|%15s|%15s|%25s|%15s", "FileName", "Operation",
-    				 "Data Structure", "Time Taken (Micro Sec)", "Bytes Used"));
-    		System.out.println("------------------------------------------------------------------------");
-    		System.out.println(printReport);
-    		System.out.println("------------------------------------------------------------------------");
+    		if (printReport != null)
+    		{
+    			System.out.println(String.format("|%22s|%15s|%22s|%25s|%15s|%5s|%8s|%8s|%10s|%s", "FileName", "Operation",
+    					 "Data Structure", "Time Taken (Micro Sec)", "Bytes Allocated", "GCs", "GC ms", "JIT ms",
+    					 "Peak MB", "Noise"));
+    			System.out.println("------------------------------------------------------------------------");
+    			System.out.println(printReport);
+    			System.out.println("------------------------------------------------------------------------");
+    		}
+    		if (baselineReport != null)
+    		{
+    			System.out.println("Against Baseline " + baselineName + ", Mann-Whitney U p and Bootstrap "
+    					+ Math.round(ResultStore.CONFIDENCE * 100) + "% Interval of the Median Ratio");
+    			System.out.println("------------------------------------------------------------------------");
+    			System.out.println(String.format("|%22s|%10s|%12s|%8s|%14s|%14s|%9s|%17s|%8s|%s", "Data Structure",
+    					"Operation", "Metric", "Trials", "Baseline", "Current", "Change", "Ratio Interval", "p",
+    					"Verdict"));
+    			System.out.println(baselineReport);
+    			System.out.println("------------------------------------------------------------------------");
+    		}
+    		if (rangeReport != null)
+    		{
+    			System.out.println("Range Search, Alternating >= and <= From Random Input Keys");
+    			System.out.println("------------------------------------------------------------------------");
+    			System.out.println(String.format("|%22s|%10s|%25s|%15s|%15s", "Data Structure", "Queries",
+    					"Time Taken (Nano Sec)", "Nano Sec/Query", "Results/Query"));
+    			System.out.println(rangeReport);
+    			System.out.println("------------------------------------------------------------------------");
+    		}
+    		if (loaderReport != null)
+    		{
+    			System.out.println("Loading the Key File, BufferedReader vs Memory-Mapped");
+    			System.out.println("------------------------------------------------------------------------");
+    			System.out.println(String.format("|%22s|%15s|%15s|%15s|%12s", "Loader", "Time (Milli Sec)",
+    					"Peak Heap (MB)", "Retained (MB)", "Lines"));
+    			System.out.println(loaderReport);
+    			System.out.println("------------------------------------------------------------------------");
+    		}
+    		if (!latencies.isEmpty())
+    		{
+    			System.out.println("Per-Operation Latency (Nano Sec, Separate Pass, One Clock Read Included)");
+    			System.out.println("------------------------------------------------------------------------");
+    			System.out.println(String.format("|%22s|%10s|%10s|%10s|%10s|%10s|%12s", "Data Structure",
+    					"Operation", "p50", "p90", "p99", "p99.9", "max"));
+    			System.out.println(latencyPercentileRows());
+    			System.out.println("------------------------------------------------------------------------");
+    		}
+    		if (memoryReport != null)
+    		{
+    			System.out.println("Retained Heap (" + (ObjectSizer.hasInstrumentation() ? "Instrumentation" : "Object Layout")
+    					+ ") and Bytes Allocated per Operation");
+    			System.out.println("------------------------------------------------------------------------");
+    			System.out.println(String.format("|%22s|%15s|%15s|%15s|%15s|%15s", "Data Structure",
+    					"Bytes/Entry", "With Keys", "PUT Alloc/Op", "GET Alloc/Op", "DEL Alloc/Op"));
+    			System.out.println(memoryReport);
+    			System.out.println("------------------------------------------------------------------------");
+    		}
+    		if (statsReport != null)
+    		{
+    			System.out.println("HashTable Statistics After PUT and GET of Every Key");
+    			System.out.println("------------------------------------------------------------------------");
+    			System.out.println(String.format("|%22s|%48s", "Statistic", "Value"));
+    			System.out.println(statsReport);
+    			System.out.println("------------------------------------------------------------------------");
+    		}
+    		if (bloomReport != null)
+    		{
+    			System.out.println(String.format("Lookups With And Without Bloom Filter, Hit Ratio %.2f", hitRatio));
+    			System.out.println("------------------------------------------------------------------------");
+    			System.out.println(String.format("|%22s|%25s|%15s|%20s", "Data Structure",
+    					"Time Taken (Nano Sec)", "Nano Sec/Op", "Bloom Rejections"));
+    			System.out.println(bloomReport);
+    			System.out.println("------------------------------------------------------------------------");
+    		}
+    		if (cacheReport != null)
+    		{
+    			System.out.println("Cache Hit Rate Under Zipf(" + ZipfGenerator.DEFAULT_THETA + ") Requests");
+    			System.out.println("------------------------------------------------------------------------");
+    			System.out.println(String.format("|%22s|%12s|%10s|%12s|%15s", "Cache", "Capacity",
+    					"Hit Rate", "Evictions", "Nano Sec/Op"));
+    			System.out.println(cacheReport);
+    			System.out.println("------------------------------------------------------------------------");
+    		}
+    		if (bulkReport != null)
+    		{
+    			System.out.println("HashTable Bulk vs Single-Op Throughput");
+    			System.out.println("------------------------------------------------------------------------");
+    			System.out.println(String.format("|%22s|%15s|%25s|%15s", "Operation", "Mode",
+    					"Time Taken (Nano Sec)", "Ops/Sec"));
+    			System.out.println(bulkReport);
+    			System.out.println("------------------------------------------------------------------------");
+    		}
+    		if (scanReport != null)
+    		{
+    			System.out.println("Full-Scan Aggregation Over HashTable Entries");
+    			System.out.println("------------------------------------------------------------------------");
+    			System.out.println(String.format("|%22s|%10s|%25s|%15s", "Mode", "Threads",
+    					"Time Taken (Nano Sec)", "Entries/Sec"));
+    			System.out.println(scanReport);
+    			System.out.println("------------------------------------------------------------------------");
+    		}
+    		if (latencyReport != null)
+    		{
+    			System.out.println("PUT Latency Across Resizes (Nano Sec)");
+    			System.out.println("------------------------------------------------------------------------");
+    			System.out.println(String.format("|%22s|%10s|%10s|%10s|%12s|%12s", "Data Structure",
+    					"p50", "p99", "p99.9", "max", "resizes"));
+    			System.out.println(latencyReport);
+    			System.out.println("------------------------------------------------------------------------");
+    		}
+    		if (numericReport != null)
+    		{
+    			System.out.println("Numeric Keys, Boxed HashTable vs Primitive IntHashTable");
+    			System.out.println("------------------------------------------------------------------------");
+    			System.out.println(String.format("|%22s|%15s|%15s|%15s|%20s", "Data Structure",
+    					"PUT (Nano Sec)", "GET (Nano Sec)", "Bytes/Entry", "GET Alloc Bytes"));
+    			System.out.println(numericReport);
+    			System.out.println("------------------------------------------------------------------------");
+    		}
+    		if (persistentReport != null)
+    		{
+    			System.out.println("Mutable HashTable vs Persistent Hash Trie");
+    			System.out.println("------------------------------------------------------------------------");
+    			System.out.println(String.format("|%22s|%15s|%15s|%15s|%20s", "Data Structure",
+    					"PUT (Nano Sec)", "GET (Nano Sec)", "Bytes/Entry", "Snapshot (Nano Sec)"));
+    			System.out.println(persistentReport);
+    			System.out.println("------------------------------------------------------------------------");
+    		}
+    		if (offHeapReport != null)
+    		{
+    			System.out.println("On-Heap HashTable vs OffHeapHashTable, Full GC With Table Live");
+    			System.out.println("------------------------------------------------------------------------");
+    			System.out.println(String.format("|%22s|%15s|%15s|%15s|%20s", "Data Structure",
+    					"PUT (Nano Sec)", "GET (Nano Sec)", "GC (Milli Sec)", "Off-Heap Bytes"));
+    			System.out.println(offHeapReport);
+    			System.out.println("------------------------------------------------------------------------");
+    		}
+    		if (snapshotReport != null)
+    		{
+    			System.out.println("Snapshot Restart vs Rebuild From Text");
+    			System.out.println("------------------------------------------------------------------------");
+    			System.out.println(String.format("|%22s|%25s|%15s", "Step", "Time Taken (Micro Sec)", "Entries"));
+    			System.out.println(snapshotReport);
+    			System.out.println("------------------------------------------------------------------------");
+    		}
+    		if (workloadReport != null)
+    		{
+    			System.out.println("Mixed Workload, " + workload);
+    			System.out.println("------------------------------------------------------------------------");
+    			System.out.println(String.format("|%22s|%8s|%15s|%10s|%10s|%10s|%12s|%12s", "Data Structure",
+    					"Threads", "Ops/Sec", "p50 (ns)", "p99 (ns)", "p99.9 (ns)", "max (ns)", "Not Found"));
+    			System.out.println(workloadReport);
+    			System.out.println("------------------------------------------------------------------------");
+    		}
+    		if (scalingReport != null)
+    		{
+    			System.out.println("Thread Scaling, 90% GET / 10% PUT");
+    			System.out.println("------------------------------------------------------------------------");
+    			System.out.println(String.format("|%22s|%10s|%15s|%25s|%15s", "Data Structure", "Threads",
+    					"Operations", "Time Taken (Nano Sec)", "Ops/Sec"));
+    			System.out.println(scalingReport);
+    			System.out.println("------------------------------------------------------------------------");
+    		}
     }
 
-    @Override
-    public void compareInsertion() {
-        //TODO: Complete this method
-    		long treeMapStart = System.nanoTime();
-    		long treeMapStartMemory = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+    /**
+     * Loads every input key into a HashTable and a TreeMap, reads them all
+     * back and removes them, and reports retained heap per entry walked
+     * with ObjectSizer, once without the keys and values (which the input
+     * list also holds) and once with the keys, plus the bytes each kind of
+     * operation allocated on this thread. Unlike heap usage deltas neither
+     * depends on when the collector last ran.
+     */
+    public void compareMemory() {
+    		memoryReport = memoryRow("HASHTABLE", new HashTable<String, String>()) + "\n"
+    				+ memoryRow("TREE MAP", new MapAdapter<>(new TreeMap<String, String>()));
+    }
+
+    private String memoryRow(String name, HashTableADT<String, String> table) {
+    		String[] keys = inputKeys();
+    		long start = threadAllocatedBytes();
+    		for (int i = 0; i < keys.length; i++)
+    		{
+    			table.put(keys[i], test);
+    		}
+    		long put = allocatedSince(start);
+    		start = threadAllocatedBytes();
+    		for (int i = 0; i < keys.length; i++)
+    		{
+    			table.get(keys[i]);
+    		}
+    		long get = allocatedSince(start);
+
+    		// size the TreeMap itself, not the adapter around it
+    		Object root = table instanceof MapAdapter ? ((MapAdapter<String, String>) table).map() : table;
+    		ObjectSizer structureOnly = new ObjectSizer().excludeAll(Arrays.asList(keys)).exclude(test);
+    		long structure = structureOnly.deepSize(root);
+    		ObjectSizer withKeys = new ObjectSizer().exclude(test);
+    		long total = withKeys.deepSize(root);
+    		int size = table.size();
+
+    		start = threadAllocatedBytes();
+    		for (int i = 0; i < keys.length; i++)
+    		{
+    			table.remove(keys[i]);
+    		}
+    		long remove = allocatedSince(start);
+    		String row = String.format("|%22s|%15.1f|%15.1f|%15s|%15s|%15s", name, perEntry(structure, size),
+    				perEntry(total, size), perOp(put, keys.length), perOp(get, keys.length),
+    				perOp(remove, keys.length));
+    		return row + lowerBoundNote(structureOnly, withKeys);
+    }
+
+    /**
+     * @return a note line if any sizer met objects it could not follow, so
+     *          its sizes are lower bounds; empty otherwise
+     */
+    private static String lowerBoundNote(ObjectSizer... sizers) {
+    		for (ObjectSizer sizer : sizers)
+    		{
+    			if (sizer.unreadableObjects() > 0)
+    			{
+    				return "\n|" + String.format("%22s", "") + "| lower bound, rerun with --add-opens for the JDK packages walked, e.g. java.base/java.util=ALL-UNNAMED";
+    			}
+    		}
+    		return "";
+    }
+
+    private static double perEntry(long bytes, int size) {
+    		return size == 0 ? 0.0 : (double) bytes / size;
+    }
+
+    private static String perOp(long allocated, int ops) {
+    		return allocated < 0 || ops == 0 ? "n/a" : String.format("%.1f", (double) allocated / ops);
+    }
+
+    /**
+     * Loads file once with BufferedReader into Strings, as loadData does,
+     * and once with MappedKeyFile, which keeps one int per line and hands
+     * out ByteSlice views of the mapped bytes. Each is timed on its own
+     * and followed by filling a HashTable from it, with the peak heap
+     * (summed over the heap pools' peaks, above the heap in use when it
+     * starts) and the heap the loaded keys or table retain, walked with
+     * ObjectSizer; the mapped bytes themselves are off the heap. The
+     * mapped loader runs first, so a file too large for the String loader
+     * still gets its figures; a loader that runs out of memory says so.
+     */
+    public void compareLoaders(String file) {
+    		loaderReport = loaderRow("MAPPED", file, true, false) + "\n"
+    				+ loaderRow("BUFFEREDREADER", file, false, false) + "\n"
+    				+ loaderRow("MAPPED + PUT", file, true, true) + "\n"
+    				+ loaderRow("BUFFEREDREADER + PUT", file, false, true);
+    }
+
+    private String loaderRow(String name, String file, boolean mapped, boolean put) {
+    		PhaseTelemetry.resetPeakHeap();
+    		long heapBefore = PhaseTelemetry.peakHeap();
+    		long start = System.nanoTime();
+    		Object held;
+    		int lines;
+    		try
+    		{
+    			if (mapped)
+    			{
+    				MappedKeyFile keys = MappedKeyFile.open(file);
+    				lines = keys.size();
+    				held = keys;
+    				if (put)
+    				{
+    					HashTable<ByteSlice, String> table = new HashTable<>();
+    					for (int i = 0; i < lines; i++)
+    					{
+    						table.put(keys.key(i), test);
+    					}
+    					held = table;
+    				}
+    			}
+    			else
+    			{
+    				List<String> keys = readLines(file);
+    				lines = keys.size();
+    				held = keys;
+    				if (put)
+    				{
+    					HashTable<String, String> table = new HashTable<>();
+    					for (int i = 0; i < lines; i++)
+    					{
+    						table.put(keys.get(i), test);
+    					}
+    					held = table;
+    				}
+    			}
+    		}
+    		catch (OutOfMemoryError e)
+    		{
+    			return String.format("|%22s| out of memory after %d ms", name, (System.nanoTime() - start) / 1000000);
+    		}
+    		catch (IOException e)
+    		{
+    			return String.format("|%22s| %s", name, e.getMessage());
+    		}
+    		long time = System.nanoTime() - start;
+    		long peak = PhaseTelemetry.peakHeap() - heapBefore;
+    		ObjectSizer sizer = new ObjectSizer();
+    		long retained = sizer.deepSize(held);
+    		String row = String.format("|%22s|%15d|%15.1f|%15.1f|%12d", name, time / 1000000, peak / 1e6,
+    				retained / 1e6, lines) + lowerBoundNote(sizer);
+    		if (held instanceof MappedKeyFile)
+    		{
+    			try
+    			{
+    				((MappedKeyFile) held).close();
+    			}
+    			catch (IOException e)
+    			{
+    				// read-only; nothing was lost
+    			}
+    		}
+    		return row;
+    }
+
+    /**
+     * Builds a table of inputData.size() random int keys, once as a boxed
+     * HashTable<Integer, String> and once as an IntHashTable<String>, and
+     * reports put and get time, retained heap per entry walked with
+     * ObjectSizer (the boxed keys belong to the table and are counted; the
+     * shared value is not), and the bytes the get loop allocated on this
+     * thread.
+     */
+    public void compareNumericKeys() {
+    		int[] keys = new int[inputData.size()];
+    		java.util.Random random = new java.util.Random(42);
+    		for (int i = 0; i < keys.length; i++)
+    		{
+    			keys[i] = random.nextInt();
+    		}
+
+    		long putStart = System.nanoTime();
+    		HashTable<Integer, String> boxed = new HashTable<>();
+    		for (int i = 0; i < keys.length; i++)
+    		{
+    			boxed.put(keys[i], test);
+    		}
+    		long boxedPut = System.nanoTime() - putStart;
+    		ObjectSizer boxedSizer = new ObjectSizer().exclude(test);
+    		long boxedHeap = boxedSizer.deepSize(boxed);
+    		long allocStart = threadAllocatedBytes();
+    		long getStart = System.nanoTime();
+    		for (int i = 0; i < keys.length; i++)
+    		{
+    			boxed.get(keys[i]);
+    		}
+    		long boxedGet = System.nanoTime() - getStart;
+    		long boxedAlloc = threadAllocatedBytes() - allocStart;
+    		int boxedSize = boxed.size();
+    		boxed = null;
+
+    		putStart = System.nanoTime();
+    		IntHashTable<String> primitive = new IntHashTable<>();
+    		for (int i = 0; i < keys.length; i++)
+    		{
+    			primitive.put(keys[i], test);
+    		}
+    		long primitivePut = System.nanoTime() - putStart;
+    		ObjectSizer primitiveSizer = new ObjectSizer().exclude(test);
+    		long primitiveHeap = primitiveSizer.deepSize(primitive);
+    		allocStart = threadAllocatedBytes();
+    		getStart = System.nanoTime();
+    		for (int i = 0; i < keys.length; i++)
+    		{
+    			primitive.get(keys[i]);
+    		}
+    		long primitiveGet = System.nanoTime() - getStart;
+    		long primitiveAlloc = threadAllocatedBytes() - allocStart;
+    		int primitiveSize = primitive.size();
+
+    		numericReport = numericRow("HASHTABLE<Integer>", boxedPut, boxedGet, boxedHeap, boxedSize, boxedAlloc)
+    				+ "\n" + numericRow("INTHASHTABLE", primitivePut, primitiveGet, primitiveHeap,
+    						primitiveSize, primitiveAlloc) + lowerBoundNote(boxedSizer, primitiveSizer);
+    }
+
+    /**
+     * Loads the input keys into a HashTable, into a PersistentHashTable
+     * one published version per put, and into a PersistentHashTable
+     * through a single transient putAll, then reports put and get time,
+     * retained heap per entry walked with ObjectSizer, without the keys
+     * and values the input arrays also hold, and the cost of a consistent
+     * snapshot for readers. The mutable table has to be copied for that;
+     * the trie hands out its current version.
+     */
+    public void comparePersistent() {
+    		String[] keys = inputKeys();
+    		String[] values = inputValues();
+    		ObjectSizer sizer = new ObjectSizer().excludeAll(Arrays.asList(keys)).excludeAll(Arrays.asList(values));
+
+    		long start = System.nanoTime();
+    		HashTable<String, String> mutable = new HashTable<>();
+    		for (int i = 0; i < keys.length; i++)
+    		{
+    			mutable.put(keys[i], values[i]);
+    		}
+    		long put = System.nanoTime() - start;
+    		long heap = sizer.deepSize(mutable);
+    		long get = timeGets(mutable, keys);
+    		start = System.nanoTime();
+    		HashTable<String, String> copy = new HashTable<>();
+    		copy.ensureCapacity(mutable.size());
+    		for (java.util.Map.Entry<String, String> e : mutable.entries())
+    		{
+    			copy.put(e.getKey(), e.getValue());
+    		}
+    		long snapshot = System.nanoTime() - start;
+    		persistentReport = persistentRow("HASHTABLE (COPY)", put, get, heap, mutable.size(), snapshot) + "\n";
+    		mutable = null;
+    		copy = null;
+
+    		start = System.nanoTime();
+    		PersistentHashTable<String, String> trie = new PersistentHashTable<>();
+    		for (int i = 0; i < keys.length; i++)
+    		{
+    			trie.put(keys[i], values[i]);
+    		}
+    		put = System.nanoTime() - start;
+    		heap = sizer.deepSize(trie);
+    		get = timeGets(trie, keys);
+    		start = System.nanoTime();
+    		PersistentHashTable.Version<String, String> version = trie.snapshot();
+    		snapshot = System.nanoTime() - start;
+    		persistentReport += persistentRow("PERSISTENT (PUT)", put, get, heap, version.size(), snapshot) + "\n";
+    		trie = null;
+    		version = null;
+
+    		start = System.nanoTime();
+    		trie = new PersistentHashTable<>();
+    		trie.putAll(keys, values);
+    		put = System.nanoTime() - start;
+    		heap = sizer.deepSize(trie);
+    		get = timeGets(trie, keys);
+    		start = System.nanoTime();
+    		version = trie.snapshot();
+    		snapshot = System.nanoTime() - start;
+    		persistentReport += persistentRow("PERSISTENT (TRANSIENT)", put, get, heap, version.size(), snapshot)
+    				+ lowerBoundNote(sizer);
+    }
+
+    private static long timeGets(HashTableADT<String, String> table, String[] keys) {
+    		long start = System.nanoTime();
+    		for (int i = 0; i < keys.length; i++)
+    		{
+    			table.get(keys[i]);
+    		}
+    		return System.nanoTime() - start;
+    }
+
+    private static String persistentRow(String name, long put, long get, long heap, int size, long snapshot) {
+    		return String.format("|%22s|%15d|%15d|%15.1f|%20d", name, put, get,
+    				size == 0 ? 0.0 : (double) heap / size, snapshot);
+    }
+
+    private static String numericRow(String name, long put, long get, long heap, int size, long alloc) {
+    		return String.format("|%22s|%15d|%15d|%15.1f|%20s", name, put, get,
+    				size == 0 ? 0.0 : (double) heap / size, alloc < 0 ? "n/a" : Long.toString(alloc));
+    }
+
+    /**
+     * @return bytes allocated so far by the current thread, or -1 if the
+     *          JVM cannot report it
+     */
+    private static long threadAllocatedBytes() {
+    		java.lang.management.ThreadMXBean bean = java.lang.management.ManagementFactory.getThreadMXBean();
+    		if (bean instanceof com.sun.management.ThreadMXBean)
+    		{
+    			return ((com.sun.management.ThreadMXBean) bean)
+    					.getThreadAllocatedBytes(Thread.currentThread().getId());
+    		}
+    		return -1;
+    }
+
+    /**
+     * @param start: a threadAllocatedBytes result
+     * @return bytes this thread allocated since start, or -1 if unknown
+     */
+    private static long allocatedSince(long start) {
+    		return start < 0 ? -1 : threadAllocatedBytes() - start;
+    }
+
+    /**
+     * Loads the input keys into a HashTable and an OffHeapHashTable and,
+     * with each table still reachable, times a full collection through the
+     * GarbageCollectorMXBeans. The on-heap table's pause grows with the
+     * number of entries; the off-heap table only exposes its index arrays.
+     */
+    public void compareOffHeap() {
+    		HashTable<String, String> onHeap = new HashTable<>();
+    		long[] onHeapTimes = timeLiveTable(onHeap);
+    		offHeapReport = offHeapRow("HASHTABLE", onHeapTimes, 0) + "\n";
+    		onHeap = null;
+    		OffHeapHashTable<String, String> offHeap = new OffHeapHashTable<>(Codec.STRING, Codec.STRING);
+    		try
+    		{
+    			long[] offHeapTimes = timeLiveTable(offHeap);
+    			offHeapReport += offHeapRow("OFFHEAPTABLE", offHeapTimes, offHeap.offHeapBytes());
+    		}
+    		finally
+    		{
+    			offHeap.close();
+    		}
+    }
+
+    /**
+     * @return put time, get time, full collection time with table live,
+     *          and the table size
+     */
+    private long[] timeLiveTable(HashTableADT<String, String> table) {
+    		// start from a collected heap, so the timed collection only finds the table
+    		System.gc();
+    		long putStart = System.nanoTime();
     		for (int i = 0; i < inputData.size(); i++)
     		{
-    			String input = inputData.get(i);
-    			testTree.put(input, test);
+    			table.put(inputData.get(i), test);
     		}
-    		long treeMapEndMemory = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
-    		long treeMapUsedMemory = treeMapStartMemory - treeMapEndMemory;
-    		long treeMapTime = System.nanoTime() - treeMapStart;
-    		//
-    		long hashStart = System.nanoTime();
-    		long hashStartMemory = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+    		long put = System.nanoTime() - putStart;
+    		long getStart = System.nanoTime();
     		for (int i = 0; i < inputData.size(); i++)
     		{
-    			String input = inputData.get(i);
-    			testTable.put(input, test);
+    			table.get(inputData.get(i));
+    		}
+    		long get = System.nanoTime() - getStart;
+    		long gcBefore = collectionTime();
+    		System.gc();
+    		long gc = collectionTime() - gcBefore;
+    		// reading size() after the collection keeps the table reachable
+    		return new long[] { put, get, gc, table.size() };
+    }
+
+    private static String offHeapRow(String name, long[] times, long offHeapBytes) {
+    		return String.format("|%22s|%15d|%15d|%15d|%20d", name, times[0], times[1], times[2], offHeapBytes);
+    }
+
+    /**
+     * @return total milliseconds spent in collections so far, all collectors
+     */
+    private static long collectionTime() {
+    		long total = 0;
+    		for (java.lang.management.GarbageCollectorMXBean gc
+    				: java.lang.management.ManagementFactory.getGarbageCollectorMXBeans())
+    		{
+    			total += Math.max(0, gc.getCollectionTime());
+    		}
+    		return total;
+    }
+
+    /**
+     * Loads the input keys into two fresh HashTables, one with putAll and
+     * one with a put per key, then runs getAll/get and removeAll/remove
+     * over the same keys and reports the throughput of each mode. The
+     * whole comparison runs WARM_ROUNDS times and only the last round is
+     * reported, so neither mode pays for compiling the other.
+     */
+    public void compareBulk() {
+    		String[] keys = inputKeys();
+    		String[] values = inputValues();
+    		String[] results = new String[keys.length];
+    		long[] bulk = null;
+    		long[] single = null;
+    		for (int round = 0; round < WARM_ROUNDS; round++)
+    		{
+    			bulk = timeBulk(keys, values, results);
+    			single = timeSingle(keys, values, results);
+    		}
+    		bulkReport = bulkRow("PUT", "BULK", bulk[0], keys.length) + "\n"
+    				+ bulkRow("PUT", "SINGLE", single[0], keys.length) + "\n"
+    				+ bulkRow("GET", "BULK", bulk[1], keys.length) + "\n"
+    				+ bulkRow("GET", "SINGLE", single[1], keys.length) + "\n"
+    				+ bulkRow("DELETE", "BULK", bulk[2], keys.length) + "\n"
+    				+ bulkRow("DELETE", "SINGLE", single[2], keys.length);
+    }
+
+    /**
+     * @return putAll, getAll and removeAll time on a fresh HashTable
+     */
+    private static long[] timeBulk(String[] keys, String[] values, String[] results) {
+    		HashTable<String, String> table = new HashTable<>();
+    		long start = System.nanoTime();
+    		table.putAll(keys, values);
+    		long put = System.nanoTime() - start;
+    		start = System.nanoTime();
+    		table.getAll(keys, results);
+    		long get = System.nanoTime() - start;
+    		start = System.nanoTime();
+    		table.removeAll(keys);
+    		long remove = System.nanoTime() - start;
+    		return new long[] { put, get, remove };
+    }
+
+    /**
+     * @return put, get and remove loop times on a fresh HashTable
+     */
+    private static long[] timeSingle(String[] keys, String[] values, String[] results) {
+    		HashTable<String, String> table = new HashTable<>();
+    		long start = System.nanoTime();
+    		for (int i = 0; i < keys.length; i++)
+    		{
+    			table.put(keys[i], values[i]);
+    		}
+    		long put = System.nanoTime() - start;
+    		start = System.nanoTime();
+    		for (int i = 0; i < keys.length; i++)
+    		{
+    			results[i] = table.get(keys[i]);
+    		}
+    		long get = System.nanoTime() - start;
+    		start = System.nanoTime();
+    		for (int i = 0; i < keys.length; i++)
+    		{
+    			table.remove(keys[i]);
+    		}
+    		long remove = System.nanoTime() - start;
+    		return new long[] { put, get, remove };
+    }
+
+    private static String bulkRow(String operation, String mode, long nanos, int ops) {
+    		long opsPerSec = nanos == 0 ? 0 : (long) (ops * 1e9 / nanos);
+    		return String.format("|%22s|%15s|%25d|%15d", operation, mode, nanos, opsPerSec);
+    }
+
+    private String[] inputKeys() {
+    		return inputData.toArray(new String[inputData.size()]);
+    }
+
+    /**
+     * @return an array of the shared test value, one per input key
+     */
+    private String[] inputValues() {
+    		String[] values = new String[inputData.size()];
+    		Arrays.fill(values, test);
+    		return values;
+    }
+
+    /**
+     * @param hitRatio: share of compareBloomFilter lookups, 0 to 1, that
+     *          ask for a key present in the table
+     */
+    public void setHitRatio(double hitRatio) {
+    		if (!(hitRatio >= 0 && hitRatio <= 1))
+    		{
+    			throw new IllegalArgumentException("Hit ratio must be between 0 and 1: " + hitRatio);
+    		}
+    		this.hitRatio = hitRatio;
+    }
+
+    /**
+     * Fills one HashTable plain and one with enableBloomFilter, then runs
+     * inputData.size() containsKey calls against each, a hitRatio share of
+     * them for present keys and the rest for keys that were never added.
+     * Each table keeps its best of WARM_ROUNDS runs. The filter pays off
+     * when a miss would otherwise walk a chain or call an expensive
+     * equals; against a sparse table with cheap String hashes it mostly
+     * saves the bucket read.
+     */
+    public void compareBloomFilter() {
+    		int n = inputData.size();
+    		String[] lookups = new String[n];
+    		java.util.Random random = new java.util.Random(42);
+    		for (int i = 0; i < n; i++)
+    		{
+    			String key = inputData.get(random.nextInt(n));
+    			lookups[i] = random.nextDouble() < hitRatio ? key : key + "#absent";
+    		}
+    		HashTable<String, String> plain = new HashTable<>();
+    		plain.putAll(inputKeys(), inputValues());
+    		HashTable<String, String> filtered = new HashTable<>();
+    		filtered.enableBloomFilter();
+    		filtered.putAll(inputKeys(), inputValues());
+
+    		long plainTime = Long.MAX_VALUE;
+    		long filteredTime = Long.MAX_VALUE;
+    		for (int round = 0; round < WARM_ROUNDS; round++)
+    		{
+    			plainTime = Math.min(plainTime, timeContainsKey(plain, lookups));
+    			filteredTime = Math.min(filteredTime, timeContainsKey(filtered, lookups));
     		}
-    		long hashEndMemory = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
-    		long hashUsedMemory = hashStartMemory - hashEndMemory;
-    		long hashTime = System.nanoTime() - hashStart;
-    		
-    		insertReport = String.format("|%22s|%15s|%15s|%25s|%15s", fileName, "PUT", "HASHTABLE", hashTime, 
-    				hashUsedMemory) + "\n" + String.format("|%22s|%15s|%15s|%25s|%15s", fileName, "PUT", 
-    				"TREE MAP", treeMapTime, treeMapUsedMemory);
+    		// counted in an untimed pass, stats would slow the timed ones
+    		HashTableStats stats = filtered.enableStats();
+    		timeContainsKey(filtered, lookups);
+    		bloomReport = bloomRow("HASHTABLE", plainTime, n, "n/a") + "\n"
+    				+ bloomRow("HASHTABLE + BLOOM", filteredTime, n, Long.toString(stats.bloomRejections()));
+    }
+
+    private static long timeContainsKey(HashTable<String, String> table, String[] lookups) {
+    		long start = System.nanoTime();
+    		for (int i = 0; i < lookups.length; i++)
+    		{
+    			table.containsKey(lookups[i]);
+    		}
+    		return System.nanoTime() - start;
+    }
+
+    private static String bloomRow(String name, long nanos, int ops, String rejections) {
+    		return String.format("|%22s|%25d|%15d|%20s", name, nanos, ops == 0 ? 0 : nanos / ops, rejections);
+    }
+
+    /**
+     * Replays inputData.size() requests whose key ranks follow a Zipf
+     * distribution against caches holding 1% and 10% of the input keys.
+     * Each request is a lookup, followed by a put on a miss as a
+     * read-through cache would do. BoundedHashTable (CLOCK) is compared
+     * with an access-ordered LinkedHashMap, the usual LRU baseline. With
+     * no input keys the section is left empty.
+     */
+    public void compareCacheHitRate() {
+    		int items = inputData.size();
+    		if (items == 0)
+    		{
+    			cacheReport = "";
+    			return;
+    		}
+    		int[] ranks = new int[items];
+    		ZipfGenerator zipf = new ZipfGenerator(items, 42);
+    		for (int i = 0; i < items; i++)
+    		{
+    			ranks[i] = zipf.next();
+    		}
+    		StringBuilder sb = new StringBuilder();
+    		for (int percent : new int[] { 1, 10 })
+    		{
+    			int capacity = Math.max(1, items * percent / 100);
+    			BoundedHashTable<String, String> clock = new BoundedHashTable<>(capacity);
+    			long start = System.nanoTime();
+    			for (int i = 0; i < items; i++)
+    			{
+    				String key = inputData.get(ranks[i]);
+    				if (clock.getIfPresent(key) == null)
+    				{
+    					clock.put(key, test);
+    				}
+    			}
+    			long clockTime = System.nanoTime() - start;
+    			sb.append(cacheRow("BOUNDED (CLOCK)", capacity, clock.hitRate(), clock.evictions(),
+    					clockTime / items)).append("\n");
+
+    			final int limit = capacity;
+    			java.util.LinkedHashMap<String, String> lru = new java.util.LinkedHashMap<String, String>(16, 0.75f, true)
+    			{
+    				@Override
+    				protected boolean removeEldestEntry(java.util.Map.Entry<String, String> eldest)
+    				{
+    					return size() > limit;
+    				}
+    			};
+    			long hits = 0;
+    			start = System.nanoTime();
+    			for (int i = 0; i < items; i++)
+    			{
+    				String key = inputData.get(ranks[i]);
+    				if (lru.get(key) == null)
+    				{
+    					lru.put(key, test);
+    				}
+    				else
+    				{
+    					hits++;
+    				}
+    			}
+    			long lruTime = System.nanoTime() - start;
+    			long lruEvictions = items - hits - lru.size();
+    			sb.append(cacheRow("LINKEDHASHMAP (LRU)", capacity, (double) hits / items, lruEvictions,
+    					lruTime / items)).append("\n");
+    		}
+    		cacheReport = sb.toString().trim();
+    }
+
+    private static String cacheRow(String name, int capacity, double hitRate, long evictions, long nanosPerOp) {
+    		return String.format("|%22s|%12d|%10.4f|%12d|%15d", name, capacity, hitRate, evictions, nanosPerOp);
+    }
+
+    /**
+     * Loads and reads back the input keys in a HashTable with stats enabled
+     * and reports its probe, collision and resize counters along with the
+     * chain-length histogram. A good hash keeps the average probe count
+     * near 1 and the histogram close to a Poisson curve; colliding keys
+     * push buckets into the last, treeified column.
+     */
+    public void compareHashStats() {
+    		HashTable<String, String> table = new HashTable<>();
+    		HashTableStats stats = table.enableStats();
+    		for (int i = 0; i < inputData.size(); i++)
+    		{
+    			table.put(inputData.get(i), test);
+    		}
+    		for (int i = 0; i < inputData.size(); i++)
+    		{
+    			table.get(inputData.get(i));
+    		}
+    		int[] histogram = table.chainLengthHistogram();
+    		StringBuilder chains = new StringBuilder();
+    		for (int i = 0; i < histogram.length; i++)
+    		{
+    			chains.append(i).append(i == histogram.length - 1 ? "+:" : ":").append(histogram[i]).append(' ');
+    		}
+    		statsReport = statsRow("ENTRIES", table.size()) + "\n"
+    				+ statsRow("BUCKETS", table.capacity()) + "\n"
+    				+ statsRow("LOAD FACTOR", String.format("%.3f", table.currentLoad())) + "\n"
+    				+ statsRow("AVG GET PROBES", String.format("%.3f", stats.averageGetProbes())) + "\n"
+    				+ statsRow("MAX GET PROBES", stats.maxGetProbes()) + "\n"
+    				+ statsRow("COLLISIONS", stats.collisions()) + "\n"
+    				+ statsRow("RESIZES", stats.resizes()) + "\n"
+    				+ statsRow("RESIZE TIME (NANO SEC)", stats.resizeNanos()) + "\n"
+    				+ statsRow("CHAIN LENGTHS", chains.toString().trim());
+    }
+
+    private static String statsRow(String statistic, Object value) {
+    		return String.format("|%22s|%48s", statistic, value);
+    }
+
+    /**
+     * Sums the key lengths of every entry in a HashTable of the input keys
+     * with a sequential stream and with a parallel one, whose spliterator
+     * hands bucket ranges to the common fork-join pool. Each mode keeps its
+     * best of WARM_ROUNDS runs.
+     */
+    public void compareParallelScan() {
+    		HashTable<String, String> table = new HashTable<>();
+    		table.putAll(inputKeys(), inputValues());
+    		long sequential = Long.MAX_VALUE;
+    		long parallel = Long.MAX_VALUE;
+    		long expected = -1;
+    		for (int round = 0; round < WARM_ROUNDS; round++)
+    		{
+    			long start = System.nanoTime();
+    			long sum = StreamSupport.stream(table.entries().spliterator(), false)
+    					.mapToLong(e -> e.getKey().length()).sum();
+    			sequential = Math.min(sequential, System.nanoTime() - start);
+    			start = System.nanoTime();
+    			long parallelSum = StreamSupport.stream(table.entries().spliterator(), true)
+    					.mapToLong(e -> e.getKey().length()).sum();
+    			parallel = Math.min(parallel, System.nanoTime() - start);
+    			if (sum != parallelSum || (expected >= 0 && sum != expected))
+    			{
+    				throw new IllegalStateException("Scan totals disagree: " + sum + " vs " + parallelSum);
+    			}
+    			expected = sum;
+    		}
+    		scanReport = scanRow("SEQUENTIAL STREAM", 1, sequential, table.size()) + "\n"
+    				+ scanRow("PARALLEL STREAM", ForkJoinPool.getCommonPoolParallelism() + 1,
+    						parallel, table.size());
+    }
+
+    private static String scanRow(String mode, int threads, long nanos, int entries) {
+    		long perSec = nanos == 0 ? 0 : (long) (entries * 1e9 / nanos);
+    		return String.format("|%22s|%10d|%25d|%15d", mode, threads, nanos, perSec);
+    }
+
+    /**
+     * Snapshot mode: rebuilds a HashTable from the input file, saves it to
+     * snapshotPath, then reopens the snapshot and times the open and a first
+     * GET of every key against the mapped file. Opening only reads and
+     * checks the header, so its time does not grow with the table; pages are
+     * faulted in by the GET pass.
+     */
+    public void compareSnapshot(String snapshotPath) {
+    		StringBuilder sb = new StringBuilder();
+    		try
+    		{
+    			long start = System.nanoTime();
+    			loadData(fileName);
+    			HashTable<String, String> table = new HashTable<>();
+    			table.putAll(inputKeys(), inputValues());
+    			long rebuild = System.nanoTime() - start;
+    			sb.append(snapshotRow("REBUILD FROM TEXT", rebuild, table.size())).append("\n");
+
+    			start = System.nanoTime();
+    			table.saveSnapshot(snapshotPath, Codec.STRING, Codec.STRING);
+    			long save = System.nanoTime() - start;
+    			sb.append(snapshotRow("SAVE SNAPSHOT", save, table.size())).append("\n");
+    			table = null;
+
+    			start = System.nanoTime();
+    			MappedHashTable<String, String> mapped = HashTable.openSnapshot(snapshotPath, Codec.STRING, Codec.STRING);
+    			long open = System.nanoTime() - start;
+    			try
+    			{
+    				sb.append(snapshotRow("OPEN SNAPSHOT", open, mapped.size())).append("\n");
+    				start = System.nanoTime();
+    				for (int i = 0; i < inputData.size(); i++)
+    				{
+    					mapped.get(inputData.get(i));
+    				}
+    				long firstGets = System.nanoTime() - start;
+    				sb.append(snapshotRow("FIRST GETS (MAPPED)", firstGets, mapped.size())).append("\n");
+    				start = System.nanoTime();
+    				boolean valid = mapped.verify();
+    				long verify = System.nanoTime() - start;
+    				sb.append(snapshotRow(valid ? "VERIFY CHECKSUM" : "VERIFY FAILED", verify, mapped.size()));
+    			}
+    			finally
+    			{
+    				mapped.close();
+    			}
+    		}
+    		catch (IOException e)
+    		{
+    			e.printStackTrace();
+    			sb.append("Snapshot failed: ").append(e.getMessage());
+    		}
+    		snapshotReport = sb.toString();
+    }
+
+    private static String snapshotRow(String step, long nanos, int entries) {
+    		return String.format("|%22s|%25d|%15d", step, nanos / 1000, entries);
+    }
+
+    /**
+     * Thread-scaling mode: fills a ConcurrentHashTable with the input keys,
+     * then runs a read-heavy mix (90% get, 10% put) from 1, 2, 4 ... up to
+     * one thread per core and reports the aggregate throughput of each step.
+     * Every thread performs inputData.size() operations.
+     */
+    public void compareThreadScaling() {
+    		ConcurrentHashTable<String, String> shared = new ConcurrentHashTable<>();
+    		for (int i = 0; i < inputData.size(); i++)
+    		{
+    			shared.put(inputData.get(i), test);
+    		}
+    		StringBuilder sb = new StringBuilder();
+    		int cores = Runtime.getRuntime().availableProcessors();
+    		for (int threads = 1; ; threads = Math.min(threads * 2, cores))
+    		{
+    			long time = runReadHeavy(shared, threads);
+    			long ops = (long) threads * inputData.size();
+    			double opsPerSec = time == 0 ? 0 : ops * 1e9 / time;
+    			sb.append(String.format("|%22s|%10d|%15d|%25d|%15.0f", "CONCURRENT", threads, ops, time, opsPerSec))
+    					.append("\n");
+    			if (threads == cores)
+    			{
+    				break;
+    			}
+    		}
+    		scalingReport = sb.toString();
+    }
+
+    /**
+     * @param workload: mix, key distribution and duration for compareWorkload
+     * @param maxThreads: last thread count compareWorkload steps up to
+     */
+    public void setWorkload(MixedWorkload workload, int maxThreads) {
+    		if (workload == null)
+    		{
+    			throw new NullPointerException("Invalid Workload");
+    		}
+    		if (maxThreads < 1)
+    		{
+    			throw new IllegalArgumentException("Illegal thread count: " + maxThreads);
+    		}
+    		this.workload = workload;
+    		this.workloadThreads = maxThreads;
+    }
+
+    /**
+     * Workload mode: runs the configured MixedWorkload (YCSB workload B
+     * unless setWorkload was called) against every thread-safe registered
+     * structure, by default including ConcurrentHashMap and
+     * ConcurrentSkipListMap as baselines, from 1, 2,
+     * 4 ... up to the configured thread count, and reports throughput and
+     * latency of each step. Every step starts from a fresh table preloaded
+     * with the input keys, after one discarded single-threaded run of each.
+     */
+    public void compareWorkload() {
+    		String[] keys = inputKeys();
+    		List<StructureRegistry.Entry> shared = structures.threadSafe();
+    		// one discarded run each, so the first step does not time the JIT
+    		for (StructureRegistry.Entry entry : shared)
+    		{
+    			workload.run(entry.create(), keys, test, 1);
+    		}
+    		StringBuilder sb = new StringBuilder();
+    		for (int threads = 1; ; threads = Math.min(threads * 2, workloadThreads))
+    		{
+    			for (StructureRegistry.Entry entry : shared)
+    			{
+    				sb.append(workloadRow(entry.name(), entry.create(), keys, threads)).append("\n");
+    			}
+    			if (threads == workloadThreads)
+    			{
+    				break;
+    			}
+    		}
+    		workloadReport = sb.toString();
+    }
+
+    private String workloadRow(String name, HashTableADT<String, String> table, String[] keys, int threads) {
+    		MixedWorkload.Result result = workload.run(table, keys, test, threads);
+    		LatencyHistogram all = result.all();
+    		return String.format("|%22s|%8d|%15.0f|%10d|%10d|%10d|%12d|%12d", name, threads, result.opsPerSecond(),
+    				all.percentile(50), all.percentile(99), all.percentile(99.9), all.max(), result.notFound);
+    }
+
+    private long runReadHeavy(final ConcurrentHashTable<String, String> shared, int threads) {
+    		final java.util.concurrent.CountDownLatch startGate = new java.util.concurrent.CountDownLatch(1);
+    		Thread[] workers = new Thread[threads];
+    		for (int t = 0; t < threads; t++)
+    		{
+    			final int offset = t * 7919;
+    			workers[t] = new Thread(() -> {
+    				try
+    				{
+    					startGate.await();
+    				}
+    				catch (InterruptedException e)
+    				{
+    					return;
+    				}
+    				int n = inputData.size();
+    				for (int i = 0; i < n; i++)
+    				{
+    					String key = inputData.get((i + offset) % n);
+    					if (i % 10 == 0)
+    					{
+    						shared.put(key, test);
+    					}
+    					else
+    					{
+    						shared.get(key);
+    					}
+    				}
+    			});
+    			workers[t].start();
+    		}
+    		long start = System.nanoTime();
+    		startGate.countDown();
+    		for (Thread worker : workers)
+    		{
+    			try
+    			{
+    				worker.join();
+    			}
+    			catch (InterruptedException e)
+    			{
+    				Thread.currentThread().interrupt();
+    			}
+    		}
+    		return System.nanoTime() - start;
+    }
+
+    /**
+     * Times every put into a fresh HashTable, once rehashing the whole table
+     * on growth and once migrating incrementally, and reports the latency
+     * percentiles of each. The tables start at the default capacity so the
+     * run crosses every doubling up to the input size.
+     */
+    public void compareResizeLatency() {
+    		latencyReport = resizeLatencyRow("STOP-THE-WORLD", new HashTable<String, String>()) + "\n"
+    				+ resizeLatencyRow("INCREMENTAL", new HashTable<String, String>(7, 0.8, true));
+    }
+
+    private String resizeLatencyRow(String name, HashTable<String, String> table) {
+    		LatencyHistogram histogram = new LatencyHistogram();
+    		int resizes = 0;
+    		for (int i = 0; i < inputData.size(); i++)
+    		{
+    			int capacity = table.capacity();
+    			long start = System.nanoTime();
+    			table.put(inputData.get(i), test);
+    			histogram.record(System.nanoTime() - start);
+    			if (table.capacity() != capacity)
+    			{
+    				resizes++;
+    			}
+    		}
+    		return String.format("|%22s|%10d|%10d|%10d|%12d|%12d", name, histogram.percentile(50),
+    				histogram.percentile(99), histogram.percentile(99.9), histogram.max(), resizes);
+    }
+
+    /**
+     * @return an empty histogram for operation on structure name, replacing
+     *          any from an earlier run
+     */
+    private LatencyHistogram latencyHistogram(String operation, String name) {
+    		LatencyHistogram histogram = new LatencyHistogram();
+    		latencies.put(operation + "/" + name, histogram);
+    		return histogram;
+    }
+
+    private String latencyPercentileRows() {
+    		StringBuilder rows = new StringBuilder();
+    		for (Map.Entry<String, LatencyHistogram> e : latencies.entrySet())
+    		{
+    			String[] key = e.getKey().split("/", 2);
+    			LatencyHistogram h = e.getValue();
+    			rows.append(String.format("|%22s|%10s|%10d|%10d|%10d|%10d|%12d", key[1], key[0], h.percentile(50),
+    					h.percentile(90), h.percentile(99), h.percentile(99.9), h.max())).append("\n");
+    		}
+    		return rows.toString();
+    }
+
+    /**
+     * Writes the PUT, GET and DELETE latency percentiles as CSV, one row per
+     * structure and operation, in nanoseconds.
+     */
+    public void writeLatencyCsv(Writer out) throws IOException {
+    		out.write("structure,operation,count,mean,p50,p90,p99,p99.9,max\n");
+    		for (Map.Entry<String, LatencyHistogram> e : latencies.entrySet())
+    		{
+    			String[] key = e.getKey().split("/", 2);
+    			LatencyHistogram h = e.getValue();
+    			out.write(String.format(Locale.ROOT, "%s,%s,%d,%.1f,%d,%d,%d,%d,%d\n", key[1], key[0], h.count(), h.mean(),
+    					h.percentile(50), h.percentile(90), h.percentile(99), h.percentile(99.9), h.max()));
+    		}
+    		out.flush();
+    }
+
+    /**
+     * Writes the same figures as writeLatencyCsv as a JSON array.
+     */
+    public void writeLatencyJson(Writer out) throws IOException {
+    		out.write("[\n");
+    		String separator = "";
+    		for (Map.Entry<String, LatencyHistogram> e : latencies.entrySet())
+    		{
+    			String[] key = e.getKey().split("/", 2);
+    			LatencyHistogram h = e.getValue();
+    			out.write(separator + String.format(Locale.ROOT, "  {\"structure\": \"%s\", \"operation\": \"%s\", \"unit\": \"ns\", "
+    					+ "\"count\": %d, \"mean\": %.1f, \"p50\": %d, \"p90\": %d, \"p99\": %d, "
+    					+ "\"p99.9\": %d, \"max\": %d}", key[1], key[0], h.count(), h.mean(), h.percentile(50),
+    					h.percentile(90), h.percentile(99), h.percentile(99.9), h.max()));
+    			separator = ",\n";
+    		}
+    		out.write("\n]\n");
+    		out.flush();
+    }
+
+    /**
+     * @param structures: what compareDataStructures and compareWorkload
+     *          run against; StructureRegistry.defaults() unless set
+     */
+    public void setStructures(StructureRegistry structures) {
+    		if (structures == null)
+    		{
+    			throw new NullPointerException("Invalid StructureRegistry");
+    		}
+    		this.structures = structures;
+    		tables.clear();
+    }
+
+    /**
+     * Makes a new instance of every registered structure and loads every
+     * input key into each, through putAll where the structure has its own
+     * (see timeHashTable); compareBulk keeps the one put per key figures.
+     */
+    @Override
+    public void compareInsertion() {
+    		tables.clear();
+    		StringBuilder sb = new StringBuilder();
+    		for (StructureRegistry.Entry entry : structures.entries())
+    		{
+    			tables.put(entry.name(), entry.create());
+    			sb.append(sb.length() == 0 ? "" : "\n").append(timeHashTable("PUT", entry, tables.get(entry.name())));
+    		}
+    		insertReport = sb.toString();
     }
 
     @Override
     public void compareDeletion() {
-        //TODO: Complete this method
-    		long treeMapStart = System.nanoTime();
-		long treeMapStartMemory = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
-		for (int i = 0; i < inputData.size(); i++)
-		{
-			String input = inputData.get(i);
-			testTree.remove(input);
-		}
-		long treeMapEndMemory = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
-		long treeMapUsedMemory = treeMapStartMemory - treeMapEndMemory;
-		long treeMapTime = System.nanoTime() - treeMapStart;
-		//
-		long hashStart = System.nanoTime();
-		long hashStartMemory = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
-		for (int i = 0; i < inputData.size(); i++)
-		{
-			String input = inputData.get(i);
-			testTable.remove(input);
-		}
-		long hashEndMemory = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
-		long hashUsedMemory = hashStartMemory - hashEndMemory;
-		long hashTime = System.nanoTime() - hashStart;
-		
-		deleteReport = String.format("|%22s|%15s|%15s|%25s|%15s", fileName, "DELETE", "HASHTABLE", hashTime, 
-				hashUsedMemory) + "\n" + String.format("|%22s|%15s|%15s|%25s|%15s", fileName, "DELETE", 
-				"TREE MAP", treeMapTime, treeMapUsedMemory);
+    		deleteReport = timeTables("DELETE");
     }
 
     @Override
     public void compareSearch() {
-        //TODO: Complete this method
-    	long treeMapStart = System.nanoTime();
-		long treeMapStartMemory = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
-		for (int i = 0; i < inputData.size(); i++)
-		{
-			String input = inputData.get(i);
-			testTree.get(input);
-		}
-		long treeMapEndMemory = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
-		long treeMapUsedMemory = treeMapStartMemory - treeMapEndMemory;
-		long treeMapTime = System.nanoTime() - treeMapStart;
-		//
-		long hashStart = System.nanoTime();
-		long hashStartMemory = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
-		for (int i = 0; i < inputData.size(); i++)
-		{
-			String input = inputData.get(i);
-			testTable.get(input);
-		}
-		long hashEndMemory = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
-		long hashUsedMemory = hashStartMemory - hashEndMemory;
-		long hashTime = System.nanoTime() - hashStart;
-		
-		searchReport = String.format("|%22s|%15s|%15s|%25s|%15s", fileName, "GET", "HASHTABLE", hashTime, 
-				hashUsedMemory) + "\n" + String.format("|%22s|%15s|%15s|%25s|%15s", fileName, "GET", 
-				"TREE MAP", treeMapTime, treeMapUsedMemory);
+    		searchReport = timeTables("GET");
+    }
+
+    /**
+     * Runs operation against the instances compareInsertion filled. If it
+     * has not run, each instance is made and filled with every input key
+     * first, untimed, so GET finds every key as it would after PUT
+     * (HashTable.get throws NoSuchElementException for an absent key).
+     */
+    private String timeTables(String operation) {
+    		StringBuilder sb = new StringBuilder();
+    		for (StructureRegistry.Entry entry : structures.entries())
+    		{
+    			HashTableADT<String, String> table = tables.get(entry.name());
+    			if (table == null)
+    			{
+    				table = entry.create();
+    				for (int i = 0; i < inputData.size(); i++)
+    				{
+    					table.put(inputData.get(i), test);
+    				}
+    				tables.put(entry.name(), table);
+    			}
+    			sb.append(sb.length() == 0 ? "" : "\n").append(timeHashTable(operation, entry, table));
+    		}
+    		return sb.toString();
+    }
+
+    /**
+     * Repeats the PUT, GET and DELETE comparisons until each row has been
+     * timed trials times, counting the times compareDataStructures or an
+     * earlier call already ran them. Each trial starts from new instances;
+     * the report shows the last, and saveRun and compareBaseline use all.
+     */
+    public void runTrials(int trials) {
+    		if (trials < 1)
+    		{
+    			throw new IllegalArgumentException("Illegal trial count: " + trials);
+    		}
+    		// count passes here, since a pass over no keys records no samples
+    		for (int done = samples.trials(); done < trials; done++)
+    		{
+    			compareInsertion();
+    			compareSearch();
+    			compareDeletion();
+    		}
+    		printReport = operationReport();
+    }
+
+    /**
+     * @return the PUT, GET and DELETE rows of the latest trial
+     */
+    private String operationReport() {
+    		return insertReport + "\n" + searchReport + "\n" + deleteReport + "\n";
+    }
+
+    /**
+     * Saves every trial so far to the history file storePath under
+     * runName, replacing any run saved under that name before.
+     */
+    public void saveRun(String storePath, String runName) throws IOException {
+    		new ResultStore(storePath).save(runName, fileName, samples);
+    }
+
+    /**
+     * Compares the trials so far with the run saved as baselineName in
+     * storePath, structure by structure and operation by operation, for
+     * throughput, median and p99 latency and bytes allocated per
+     * operation. A row is a REGRESSION only if it is worse with p below
+     * ResultStore.ALPHA and a bootstrap interval that excludes no change;
+     * four trials on each side are the fewest that can show one.
+     *
+     * @return number of regressions, 0 if the baseline could not be read
+     */
+    public int compareBaseline(String storePath, String baselineName) {
+    		this.baselineName = baselineName;
+    		StringBuilder sb = new StringBuilder();
+    		int regressions = 0;
+    		try
+    		{
+    			ResultStore.Samples baseline = new ResultStore(storePath).load(baselineName);
+    			if (baseline.isEmpty())
+    			{
+    				baselineReport = "No run named " + baselineName + " in " + storePath;
+    				return 0;
+    			}
+    			if (!baseline.inputs().contains(fileName))
+    			{
+    				sb.append("Warning: baseline input was ").append(baseline.inputs()).append(", this run used ")
+    						.append(fileName).append("\n");
+    			}
+    			for (ResultStore.Comparison c : ResultStore.compare(baseline, samples))
+    			{
+    				if (c.isRegression())
+    				{
+    					regressions++;
+    				}
+    				sb.append(String.format(Locale.ROOT, "|%22s|%10s|%12s|%8s|%14.4g|%14.4g|%8.1f%%|%8.3f..%-7.3f|%8.4f|%s",
+    						c.series.structure, c.series.operation, c.series.metric.unit(),
+    						c.baselineTrials + "/" + c.currentTrials, c.baselineMedian, c.currentMedian,
+    						100 * c.change(), c.ratioLow, c.ratioHigh, c.p, c.verdict())).append("\n");
+    			}
+    			sb.append(regressions).append(regressions == 1 ? " regression" : " regressions");
+    		}
+    		catch (IOException | IllegalArgumentException e)
+    		{
+    			sb.append("Baseline failed: ").append(e.getMessage());
+    		}
+    		baselineReport = sb.toString();
+    		return regressions;
+    }
+
+    /**
+     * Fills a new instance of every registered OrderedTableADT with the
+     * input keys, then times RANGE_QUERIES range searches from input keys
+     * chosen at random, alternately ">=" and "<=", so on average each
+     * returns half the entries. The fill is not timed.
+     */
+    public void compareRange() {
+    		StringBuilder sb = new StringBuilder();
+    		java.util.Random random = new java.util.Random(42);
+    		int[] picks = new int[RANGE_QUERIES];
+    		for (int q = 0; q < picks.length && !inputData.isEmpty(); q++)
+    		{
+    			picks[q] = random.nextInt(inputData.size());
+    		}
+    		for (StructureRegistry.Entry entry : structures.entries())
+    		{
+    			HashTableADT<String, String> created = entry.create();
+    			if (!(created instanceof OrderedTableADT) || inputData.isEmpty())
+    			{
+    				continue;
+    			}
+    			OrderedTableADT<String, String> table = (OrderedTableADT<String, String>) created;
+    			for (int i = 0; i < inputData.size(); i++)
+    			{
+    				table.put(inputData.get(i), test);
+    			}
+    			long results = 0;
+    			long start = System.nanoTime();
+    			for (int q = 0; q < picks.length; q++)
+    			{
+    				results += table.rangeSearch(inputData.get(picks[q]), q % 2 == 0 ? ">=" : "<=").size();
+    			}
+    			long time = System.nanoTime() - start;
+    			sb.append(String.format("|%22s|%10d|%25d|%15d|%15d", entry.name(), picks.length, time,
+    					time / picks.length, results / picks.length)).append("\n");
+    		}
+    		rangeReport = sb.length() == 0 ? null : sb.toString();
+    }
+
+    /**
+     * Runs one operation over every input key against a HashTableADT
+     * implementation and formats the report row, or marks the row
+     * unsupported if the implementation throws UnsupportedOperationException.
+     * The timed pass reads the clock only around the whole loop, so the
+     * row's time and throughput carry no per-operation clock reads;
+     * recordLatencies measures each operation in a pass of its own. PUT
+     * loads the keys with one putAll if the structure overrides it, as
+     * HashTable does to presize and hash ahead; generator mode keeps a put
+     * per key rather than copy the keys into an array.
+     */
+    private String timeHashTable(String operation, StructureRegistry.Entry entry, HashTableADT<String, String> table) {
+    		String name = entry.name();
+    		long count = operationCount(operation);
+    		KeyGenerator.Cursor cursor = generator != null && operation.equals("GET") ? generator.cursor() : null;
+    		String[] bulkKeys = null;
+    		String[] bulkValues = null;
+    		if (operation.equals("PUT") && generator == null && hasBulkPut(table))
+    		{
+    			bulkKeys = inputKeys();
+    			bulkValues = inputValues();
+    		}
+    		PhaseTelemetry telemetry = PhaseTelemetry.start();
+    		long start = System.nanoTime();
+    		long startAlloc = threadAllocatedBytes();
+    		try
+    		{
+    			if (bulkKeys != null)
+    			{
+    				table.putAll(bulkKeys, bulkValues);
+    			}
+    			else
+    			{
+    				for (long i = 0; i < count; i++)
+    				{
+    					String input = cursor != null ? cursor.next() : inputData.get((int) i);
+    					if (operation.equals("PUT"))
+    					{
+    						table.put(input, test);
+    					}
+    					else if (operation.equals("GET"))
+    					{
+    						table.get(input);
+    					}
+    					else
+    					{
+    						table.remove(input);
+    					}
+    				}
+    			}
+    		}
+    		catch (UnsupportedOperationException e)
+    		{
+    			// a registered structure without this operation, BPTreeADT has no remove
+    			latencies.remove(operation + "/" + name);
+    			return String.format("|%22s|%15s|%22s|%25s|%15s", fileName, operation, name, "unsupported", "");
+    		}
+    		long time = System.nanoTime() - start;
+    		long allocated = allocatedSince(startAlloc);
+    		telemetry.stop();
+    		LatencyHistogram histogram = recordLatencies(operation, entry, table);
+    		if (count > 0)
+    		{
+    			samples.add(name, operation, ResultStore.Metric.THROUGHPUT, count * 1e9 / Math.max(1, time));
+    			samples.add(name, operation, ResultStore.Metric.LATENCY_P50, histogram.percentile(50));
+    			samples.add(name, operation, ResultStore.Metric.LATENCY_P99, histogram.percentile(99));
+    			if (allocated >= 0)
+    			{
+    				samples.add(name, operation, ResultStore.Metric.ALLOCATION, (double) allocated / count);
+    			}
+    		}
+    		return reportRow(operation, name, time, allocated, telemetry);
+    }
+
+    /**
+     * @return true if table has a putAll of its own rather than the
+     *          HashTableADT default of one put per key
+     */
+    private static boolean hasBulkPut(HashTableADT<?, ?> table) {
+    		try
+    		{
+    			return table.getClass().getMethod("putAll", Object[].class, Object[].class)
+    					.getDeclaringClass() != HashTableADT.class;
+    		}
+    		catch (NoSuchMethodException e)
+    		{
+    			return false;
+    		}
+    }
+
+    /**
+     * Repeats operation with one clock read per call and records each in
+     * the latency histogram, on an instance in the state the timed pass
+     * found: table itself for GET, which leaves it as it was, a new
+     * instance for PUT, and a new one filled with every key for DELETE.
+     */
+    private LatencyHistogram recordLatencies(String operation, StructureRegistry.Entry entry,
+    		HashTableADT<String, String> table) {
+    		LatencyHistogram histogram = latencyHistogram(operation, entry.name());
+    		if (!operation.equals("GET"))
+    		{
+    			table = entry.create();
+    			for (int i = 0; operation.equals("DELETE") && i < inputData.size(); i++)
+    			{
+    				table.put(inputData.get(i), test);
+    			}
+    		}
+    		long count = operationCount(operation);
+    		KeyGenerator.Cursor cursor = generator != null && operation.equals("GET") ? generator.cursor() : null;
+    		long before = System.nanoTime();
+    		for (long i = 0; i < count; i++)
+    		{
+    			String input = cursor != null ? cursor.next() : inputData.get((int) i);
+    			if (operation.equals("PUT"))
+    			{
+    				table.put(input, test);
+    			}
+    			else if (operation.equals("GET"))
+    			{
+    				table.get(input);
+    			}
+    			else
+    			{
+    				table.remove(input);
+    			}
+    			long after = System.nanoTime();
+    			histogram.record(after - before);
+    			before = after;
+    		}
+    		return histogram;
+    }
+
+    /**
+     * @return how many times the PUT, GET and DELETE rows run operation:
+     *          once per key, except generator mode GETs
+     */
+    private long operationCount(String operation) {
+    		return generator != null && operation.equals("GET") ? operations : inputData.size();
+    }
+
+    /**
+     * Formats a PUT, GET or DELETE row with what the collector and the JIT
+     * did during it; a row they may have distorted ends with the reason.
+     */
+    private String reportRow(String operation, String name, long time, long allocated, PhaseTelemetry telemetry) {
+    		String noise = telemetry.noise();
+    		return String.format("|%22s|%15s|%22s|%25s|%15s|%5d|%8d|%8s|%10.1f|%s", fileName, operation, name, time,
+    				allocated < 0 ? "n/a" : Long.toString(allocated), telemetry.collections(), telemetry.pauseMillis(),
+    				telemetry.compileMillis() < 0 ? "n/a" : Long.toString(telemetry.compileMillis()),
+    				telemetry.peakHeapBytes() / 1e6, noise.isEmpty() ? "" : "NOISY: " + noise);
     }
 
     /*
@@ -155,15 +1614,20 @@ public class PerformanceAnalysisHash implements PerformanceAnalysis {
     public void loadData(String filename) throws IOException {
 
         // Opens the given test file and stores the objects each line as a string
+        inputData = readLines(filename);
+    }
+
+    private static List<String> readLines(String filename) throws IOException {
         File file = new File(filename);
         BufferedReader br = new BufferedReader(new FileReader(file));
-        inputData = new ArrayList<>();
+        List<String> lines = new ArrayList<>();
         String line = br.readLine();
         while (line != null) {
-            inputData.add(line);
+            lines.add(line);
             line = br.readLine();
         }
         br.close();
+        return lines;
     }
     public static void main(String[] args)
     {
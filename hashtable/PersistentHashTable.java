@@ -0,0 +1,638 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * HashTableADT over an immutable hash array mapped trie, for tables that
+ * are read by many threads while one thread writes.
+ *
+ * The trie lives in Version objects. A Version never changes: with and
+ * without return a new Version that shares every node off the path to the
+ * changed key, so an update copies O(log32 n) small arrays instead of the
+ * table. A PersistentHashTable holds the current Version in an
+ * AtomicReference. Writers build the next Version and publish it with a
+ * compare-and-set, and readers take snapshot() and read it for as long as
+ * they like without locks, copies or interference from later writes.
+ *
+ * Bulk loads go through a Transient, which edits the nodes it created in
+ * place and only copies nodes still shared with a published Version; its
+ * persistent() call freezes the result into a new Version.
+ *
+ * Nodes use the compressed layout of Steindorfer and Vinju's CHAMP: one
+ * bitmap for entries stored inline and one for sub-nodes, with entries at
+ * the front of the array and sub-nodes at the back. Keys whose 32-bit
+ * spread hashes are equal end up in a collision node below the last level.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class PersistentHashTable<K, V> implements HashTableADT<K, V> {
+
+    private static final int BITS = 5;
+    private static final int HASH_BITS = 32;
+    private static final Object NOT_FOUND = new Object();
+
+    private final AtomicReference<Version<K, V>> current;
+
+    public PersistentHashTable() {
+        this.current = new AtomicReference<>(Version.<K, V>empty());
+    }
+
+    /**
+     * @return the Version readers see right now; it stays valid and
+     *          unchanged however the table is written afterwards
+     */
+    public Version<K, V> snapshot() {
+        return current.get();
+    }
+
+    /**
+     * Makes version the current one, replacing whatever was there.
+     */
+    public void publish(Version<K, V> version) {
+        if (version == null) {
+            throw new NullPointerException("Invalid Version");
+        }
+        current.set(version);
+    }
+
+    /**
+     * Publishes next only if expected is still current, for writers that
+     * derived next from a snapshot and must not overwrite another writer.
+     *
+     * @return true if next was published
+     */
+    public boolean compareAndPublish(Version<K, V> expected, Version<K, V> next) {
+        if (next == null) {
+            throw new NullPointerException("Invalid Version");
+        }
+        return current.compareAndSet(expected, next);
+    }
+
+    @Override
+    public V put(K key, V value) throws NullPointerException {
+        if (key == null) {
+            throw new NullPointerException("Invalid Key");
+        }
+        for (;;) {
+            Version<K, V> version = current.get();
+            Version<K, V> next = version.with(key, value);
+            if (next == version || current.compareAndSet(version, next)) {
+                return value;
+            }
+        }
+    }
+
+    @Override
+    public V get(K key) throws NoSuchElementException {
+        return current.get().get(key);
+    }
+
+    /**
+     * @return true if the current Version maps key
+     */
+    public boolean containsKey(K key) {
+        return current.get().containsKey(key);
+    }
+
+    @Override
+    public V remove(K key) throws NullPointerException {
+        if (key == null) {
+            throw new NullPointerException("Invalid Key");
+        }
+        for (;;) {
+            Version<K, V> version = current.get();
+            Object old = version.root.find(HashTable.spread(key), key, 0);
+            if (old == NOT_FOUND) {
+                return null;
+            }
+            if (current.compareAndSet(version, version.without(key))) {
+                @SuppressWarnings("unchecked")
+                V value = (V) old;
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Loads the whole batch into a Transient of the current Version and
+     * publishes the result once, so readers see either none or all of it.
+     */
+    @Override
+    public int putAll(K[] keys, V[] values) {
+        if (values.length < keys.length) {
+            throw new IllegalArgumentException("Fewer values than keys");
+        }
+        for (K key : keys) {
+            if (key == null) {
+                throw new NullPointerException("Invalid Key");
+            }
+        }
+        for (;;) {
+            Version<K, V> version = current.get();
+            Transient<K, V> builder = version.asTransient();
+            for (int i = 0; i < keys.length; i++) {
+                builder.put(keys[i], values[i]);
+            }
+            Version<K, V> next = builder.persistent();
+            if (current.compareAndSet(version, next)) {
+                return next.size() - version.size();
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        current.set(Version.<K, V>empty());
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return current.get().isEmpty();
+    }
+
+    @Override
+    public int size() {
+        return current.get().size();
+    }
+
+    /**
+     * An immutable mapping. Safe to share between threads without
+     * synchronization once it has been published or handed over.
+     */
+    public static final class Version<K, V> {
+
+        private static final Version<?, ?> EMPTY = new Version<>(BitmapNode.EMPTY, 0);
+
+        final Node root;
+        private final int size;
+
+        private Version(Node root, int size) {
+            this.root = root;
+            this.size = size;
+        }
+
+        @SuppressWarnings("unchecked")
+        public static <K, V> Version<K, V> empty() {
+            return (Version<K, V>) EMPTY;
+        }
+
+        /**
+         * @return the value for key
+         * @throws NoSuchElementException if key has no mapping
+         */
+        @SuppressWarnings("unchecked")
+        public V get(K key) {
+            if (key == null) {
+                throw new NullPointerException("Invalid Key");
+            }
+            Object value = root.find(HashTable.spread(key), key, 0);
+            if (value == NOT_FOUND) {
+                throw new NoSuchElementException("Key not found: " + key);
+            }
+            return (V) value;
+        }
+
+        public boolean containsKey(K key) {
+            if (key == null) {
+                throw new NullPointerException("Invalid Key");
+            }
+            return root.find(HashTable.spread(key), key, 0) != NOT_FOUND;
+        }
+
+        /**
+         * @return a Version that also maps key to value, or this one if it
+         *          already does
+         */
+        public Version<K, V> with(K key, V value) {
+            if (key == null) {
+                throw new NullPointerException("Invalid Key");
+            }
+            Change change = new Change();
+            Node newRoot = root.put(null, HashTable.spread(key), key, value, 0, change);
+            if (newRoot == root) {
+                return this;
+            }
+            return new Version<>(newRoot, change.added ? size + 1 : size);
+        }
+
+        /**
+         * @return a Version without a mapping for key, or this one if it
+         *          had none
+         */
+        public Version<K, V> without(K key) {
+            if (key == null) {
+                throw new NullPointerException("Invalid Key");
+            }
+            Change change = new Change();
+            Node newRoot = root.remove(null, HashTable.spread(key), key, 0, change);
+            if (!change.removed) {
+                return this;
+            }
+            return new Version<>(newRoot, size - 1);
+        }
+
+        /**
+         * @return a builder that starts from this Version and leaves it
+         *          untouched
+         */
+        public Transient<K, V> asTransient() {
+            return new Transient<>(root, size);
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public boolean isEmpty() {
+            return size == 0;
+        }
+    }
+
+    /**
+     * A single-threaded builder over a Version. Nodes it copies are tagged
+     * with its edit token and changed in place on later writes, so a bulk
+     * load allocates roughly one node per new trie position rather than a
+     * full path per key. Unusable after persistent().
+     */
+    public static final class Transient<K, V> {
+
+        private Object edit = new Object();
+        private Node root;
+        private int size;
+
+        private Transient(Node root, int size) {
+            this.root = root;
+            this.size = size;
+        }
+
+        private void ensureEditable() {
+            if (edit == null) {
+                throw new IllegalStateException("Transient used after persistent()");
+            }
+        }
+
+        public Transient<K, V> put(K key, V value) {
+            if (key == null) {
+                throw new NullPointerException("Invalid Key");
+            }
+            ensureEditable();
+            Change change = new Change();
+            root = root.put(edit, HashTable.spread(key), key, value, 0, change);
+            if (change.added) {
+                size++;
+            }
+            return this;
+        }
+
+        public Transient<K, V> remove(K key) {
+            if (key == null) {
+                throw new NullPointerException("Invalid Key");
+            }
+            ensureEditable();
+            Change change = new Change();
+            root = root.remove(edit, HashTable.spread(key), key, 0, change);
+            if (change.removed) {
+                size--;
+            }
+            return this;
+        }
+
+        public boolean containsKey(K key) {
+            ensureEditable();
+            return root.find(HashTable.spread(key), key, 0) != NOT_FOUND;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Freezes the builder into a Version. Nodes keep the old edit
+         * token, which no Transient holds any more, so they are never
+         * changed again.
+         */
+        public Version<K, V> persistent() {
+            ensureEditable();
+            edit = null;
+            return new Version<>(root, size);
+        }
+    }
+
+    /**
+     * What a put or remove did, filled in on the way down the trie.
+     */
+    private static final class Change {
+        boolean added;
+        boolean removed;
+    }
+
+    private abstract static class Node {
+
+        /**
+         * @return the value for key, or NOT_FOUND
+         */
+        abstract Object find(int hash, Object key, int shift);
+
+        /**
+         * @return the node to use in place of this one; this itself when
+         *          nothing changed or the change was made in place
+         */
+        abstract Node put(Object edit, int hash, Object key, Object value, int shift, Change change);
+
+        abstract Node remove(Object edit, int hash, Object key, int shift, Change change);
+
+        /**
+         * @return true if the node holds exactly one entry and no
+         *          sub-nodes, so its parent can store the entry inline
+         */
+        abstract boolean isSingleEntry();
+
+        abstract Object keyAt(int index);
+
+        abstract Object valueAt(int index);
+    }
+
+    private static final class BitmapNode extends Node {
+
+        static final BitmapNode EMPTY = new BitmapNode(null, 0, 0, new Object[0]);
+
+        private final Object edit;
+        private int dataMap;
+        private int nodeMap;
+        private Object[] content;   // key, value pairs, then sub-nodes in reverse
+
+        BitmapNode(Object edit, int dataMap, int nodeMap, Object[] content) {
+            this.edit = edit;
+            this.dataMap = dataMap;
+            this.nodeMap = nodeMap;
+            this.content = content;
+        }
+
+        private static int bit(int hash, int shift) {
+            return 1 << ((hash >>> shift) & 31);
+        }
+
+        private int dataIndex(int bit) {
+            return Integer.bitCount(dataMap & (bit - 1));
+        }
+
+        private int nodeSlot(int bit) {
+            return content.length - 1 - Integer.bitCount(nodeMap & (bit - 1));
+        }
+
+        /**
+         * @return this node if edit owns it, otherwise a copy owned by edit
+         */
+        private BitmapNode editable(Object edit) {
+            if (edit != null && this.edit == edit) {
+                return this;
+            }
+            return new BitmapNode(edit, dataMap, nodeMap, content.clone());
+        }
+
+        @Override
+        Object find(int hash, Object key, int shift) {
+            int bit = bit(hash, shift);
+            if ((dataMap & bit) != 0) {
+                int i = dataIndex(bit) << 1;
+                Object k = content[i];
+                return k == key || k.equals(key) ? content[i + 1] : NOT_FOUND;
+            }
+            if ((nodeMap & bit) != 0) {
+                return ((Node) content[nodeSlot(bit)]).find(hash, key, shift + BITS);
+            }
+            return NOT_FOUND;
+        }
+
+        @Override
+        Node put(Object edit, int hash, Object key, Object value, int shift, Change change) {
+            int bit = bit(hash, shift);
+            if ((dataMap & bit) != 0) {
+                int i = dataIndex(bit) << 1;
+                Object k = content[i];
+                if (k == key || k.equals(key)) {
+                    if (content[i + 1] == value) {
+                        return this;
+                    }
+                    BitmapNode node = editable(edit);
+                    node.content[i + 1] = value;
+                    return node;
+                }
+                // two keys share this position: push both one level down
+                Node sub = merge(edit, k, content[i + 1], HashTable.spread(k), key, value, hash,
+                        shift + BITS);
+                change.added = true;
+                return migrateToNode(edit, bit, i, sub);
+            }
+            if ((nodeMap & bit) != 0) {
+                int slot = nodeSlot(bit);
+                Node sub = (Node) content[slot];
+                Node newSub = sub.put(edit, hash, key, value, shift + BITS, change);
+                if (newSub == sub) {
+                    return this;
+                }
+                BitmapNode node = editable(edit);
+                node.content[slot] = newSub;
+                return node;
+            }
+            change.added = true;
+            int i = dataIndex(bit) << 1;
+            Object[] array = new Object[content.length + 2];
+            System.arraycopy(content, 0, array, 0, i);
+            array[i] = key;
+            array[i + 1] = value;
+            System.arraycopy(content, i, array, i + 2, content.length - i);
+            return update(edit, dataMap | bit, nodeMap, array);
+        }
+
+        @Override
+        Node remove(Object edit, int hash, Object key, int shift, Change change) {
+            int bit = bit(hash, shift);
+            if ((dataMap & bit) != 0) {
+                int i = dataIndex(bit) << 1;
+                Object k = content[i];
+                if (!(k == key || k.equals(key))) {
+                    return this;
+                }
+                change.removed = true;
+                Object[] array = new Object[content.length - 2];
+                System.arraycopy(content, 0, array, 0, i);
+                System.arraycopy(content, i + 2, array, i, content.length - i - 2);
+                return update(edit, dataMap ^ bit, nodeMap, array);
+            }
+            if ((nodeMap & bit) != 0) {
+                int slot = nodeSlot(bit);
+                Node sub = (Node) content[slot];
+                Node newSub = sub.remove(edit, hash, key, shift + BITS, change);
+                if (!change.removed) {
+                    return this;
+                }
+                if (newSub.isSingleEntry()) {
+                    return migrateToInline(edit, bit, slot, newSub.keyAt(0), newSub.valueAt(0));
+                }
+                BitmapNode node = editable(edit);
+                node.content[slot] = newSub;
+                return node;
+            }
+            return this;
+        }
+
+        /**
+         * Replaces the entry at data offset i with sub-node sub.
+         */
+        private Node migrateToNode(Object edit, int bit, int i, Node sub) {
+            int slot = content.length - 2 - Integer.bitCount(nodeMap & (bit - 1));
+            Object[] array = new Object[content.length - 1];
+            System.arraycopy(content, 0, array, 0, i);
+            System.arraycopy(content, i + 2, array, i, slot - i);
+            array[slot] = sub;
+            System.arraycopy(content, slot + 2, array, slot + 1, content.length - slot - 2);
+            return update(edit, dataMap ^ bit, nodeMap | bit, array);
+        }
+
+        /**
+         * Replaces the sub-node at slot with the single entry it holds.
+         */
+        private Node migrateToInline(Object edit, int bit, int slot, Object key, Object value) {
+            int i = Integer.bitCount(dataMap & (bit - 1)) << 1;
+            Object[] array = new Object[content.length + 1];
+            System.arraycopy(content, 0, array, 0, i);
+            array[i] = key;
+            array[i + 1] = value;
+            System.arraycopy(content, i, array, i + 2, slot - i);
+            System.arraycopy(content, slot + 1, array, slot + 2, content.length - slot - 1);
+            return update(edit, dataMap | bit, nodeMap ^ bit, array);
+        }
+
+        private Node update(Object edit, int dataMap, int nodeMap, Object[] array) {
+            if (edit != null && this.edit == edit) {
+                this.dataMap = dataMap;
+                this.nodeMap = nodeMap;
+                this.content = array;
+                return this;
+            }
+            return new BitmapNode(edit, dataMap, nodeMap, array);
+        }
+
+        /**
+         * @return a node holding both entries, below shift bits of hash
+         */
+        static Node merge(Object edit, Object k0, Object v0, int h0, Object k1, Object v1, int h1,
+                int shift) {
+            if (shift >= HASH_BITS) {
+                return new CollisionNode(edit, h0, new Object[] { k0, v0, k1, v1 });
+            }
+            int m0 = (h0 >>> shift) & 31;
+            int m1 = (h1 >>> shift) & 31;
+            if (m0 != m1) {
+                Object[] array = m0 < m1 ? new Object[] { k0, v0, k1, v1 } : new Object[] { k1, v1, k0, v0 };
+                return new BitmapNode(edit, (1 << m0) | (1 << m1), 0, array);
+            }
+            Node sub = merge(edit, k0, v0, h0, k1, v1, h1, shift + BITS);
+            return new BitmapNode(edit, 0, 1 << m0, new Object[] { sub });
+        }
+
+        @Override
+        boolean isSingleEntry() {
+            return nodeMap == 0 && Integer.bitCount(dataMap) == 1;
+        }
+
+        @Override
+        Object keyAt(int index) {
+            return content[index << 1];
+        }
+
+        @Override
+        Object valueAt(int index) {
+            return content[(index << 1) + 1];
+        }
+    }
+
+    /**
+     * Entries whose full 32-bit hashes are equal, searched linearly.
+     */
+    private static final class CollisionNode extends Node {
+
+        private final Object edit;
+        private final int hash;
+        private Object[] content;   // key, value pairs
+
+        CollisionNode(Object edit, int hash, Object[] content) {
+            this.edit = edit;
+            this.hash = hash;
+            this.content = content;
+        }
+
+        private int indexOf(Object key) {
+            for (int i = 0; i < content.length; i += 2) {
+                if (content[i] == key || content[i].equals(key)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        Object find(int hash, Object key, int shift) {
+            int i = indexOf(key);
+            return i < 0 ? NOT_FOUND : content[i + 1];
+        }
+
+        @Override
+        Node put(Object edit, int hash, Object key, Object value, int shift, Change change) {
+            int i = indexOf(key);
+            Object[] array;
+            if (i >= 0) {
+                if (content[i + 1] == value) {
+                    return this;
+                }
+                array = edit != null && this.edit == edit ? content : content.clone();
+                array[i + 1] = value;
+            } else {
+                change.added = true;
+                array = Arrays.copyOf(content, content.length + 2);
+                array[content.length] = key;
+                array[content.length + 1] = value;
+            }
+            return update(edit, array);
+        }
+
+        @Override
+        Node remove(Object edit, int hash, Object key, int shift, Change change) {
+            int i = indexOf(key);
+            if (i < 0) {
+                return this;
+            }
+            change.removed = true;
+            Object[] array = new Object[content.length - 2];
+            System.arraycopy(content, 0, array, 0, i);
+            System.arraycopy(content, i + 2, array, i, content.length - i - 2);
+            // with one entry left the parent takes it inline
+            return update(edit, array);
+        }
+
+        private Node update(Object edit, Object[] array) {
+            if (edit != null && this.edit == edit) {
+                content = array;
+                return this;
+            }
+            return new CollisionNode(edit, hash, array);
+        }
+
+        @Override
+        boolean isSingleEntry() {
+            return content.length == 2;
+        }
+
+        @Override
+        Object keyAt(int index) {
+            return content[index << 1];
+        }
+
+        @Override
+        Object valueAt(int index) {
+            return content[(index << 1) + 1];
+        }
+    }
+}
@@ -0,0 +1,202 @@
+import java.lang.management.CompilationMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Locale;
+
+/**
+ * What the JVM did while one benchmark phase ran: collections and their
+ * pause time from the GarbageCollectorMXBeans, JIT compilation time from
+ * the CompilationMXBean, and peak heap from the MemoryPoolMXBeans.
+ *
+ * A phase is flagged as noisy when collector pauses or compilation take
+ * more than NOISE_SHARE of its elapsed time, or a full collection ran
+ * during it; its timing then says as much about the runtime as about the
+ * data structure. Compilation runs on background threads, so its time only
+ * competes with the phase, but on a machine with few cores it competes for
+ * the same CPU.
+ *
+ * Usage: PhaseTelemetry t = PhaseTelemetry.start(); ...; t.stop();
+ */
+public final class PhaseTelemetry {
+
+    /** share of a phase's time above which GC or JIT makes it noisy */
+    static final double NOISE_SHARE = 0.05;
+
+    private final long startNanos;
+    private final long startPauseCollections;
+    private final long startPauseMillis;
+    private final long startOldCollections;
+    private final long startCycles;
+    private final long startCompileMillis;
+
+    private long elapsedNanos = -1;
+    private long pauseCollections;
+    private long pauseMillis;
+    private long oldCollections;
+    private long concurrentCycles;
+    private long compileMillis;
+    private long peakHeap;
+
+    private PhaseTelemetry() {
+        resetPeakHeap();
+        long[] gc = collectorTotals();
+        startPauseCollections = gc[0];
+        startPauseMillis = gc[1];
+        startOldCollections = gc[2];
+        startCycles = gc[3];
+        startCompileMillis = compilationMillis();
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * Resets the heap pools' peaks and takes the starting counts.
+     */
+    public static PhaseTelemetry start() {
+        return new PhaseTelemetry();
+    }
+
+    /**
+     * Takes the closing counts; call once, straight after the phase.
+     */
+    public PhaseTelemetry stop() {
+        elapsedNanos = System.nanoTime() - startNanos;
+        long[] gc = collectorTotals();
+        pauseCollections = gc[0] - startPauseCollections;
+        pauseMillis = gc[1] - startPauseMillis;
+        oldCollections = gc[2] - startOldCollections;
+        concurrentCycles = gc[3] - startCycles;
+        long compile = compilationMillis();
+        compileMillis = compile < 0 || startCompileMillis < 0 ? -1 : compile - startCompileMillis;
+        peakHeap = peakHeap();
+        return this;
+    }
+
+    /**
+     * @return {pause collections, pause millis, old generation collections,
+     *          concurrent cycles} summed over every collector
+     */
+    private static long[] collectorTotals() {
+        long[] totals = new long[4];
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            long count = Math.max(0, gc.getCollectionCount());
+            String name = gc.getName();
+            // G1, ZGC and Shenandoah report concurrent work on beans of its
+            // own whose time is not a pause
+            if (name.contains("Concurrent") || name.contains("Cycles")) {
+                totals[3] += count;
+                continue;
+            }
+            totals[0] += count;
+            totals[1] += Math.max(0, gc.getCollectionTime());
+            if (name.contains("Old") || name.contains("MarkSweep") || name.contains("MarkCompact")) {
+                totals[2] += count;
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * @return total JIT time so far, or -1 if the JVM does not track it
+     */
+    private static long compilationMillis() {
+        CompilationMXBean jit = ManagementFactory.getCompilationMXBean();
+        if (jit == null || !jit.isCompilationTimeMonitoringSupported()) {
+            return -1;
+        }
+        return jit.getTotalCompilationTime();
+    }
+
+    static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /**
+     * @return sum of the heap pools' peak usage since resetPeakHeap; the
+     *          pools peak at different moments, so this is an upper bound
+     */
+    static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    public long elapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * @return stop-the-world collections during the phase
+     */
+    public long collections() {
+        return pauseCollections;
+    }
+
+    /**
+     * @return collector pause time during the phase, in milliseconds
+     */
+    public long pauseMillis() {
+        return pauseMillis;
+    }
+
+    /**
+     * @return full or old generation collections during the phase
+     */
+    public long oldCollections() {
+        return oldCollections;
+    }
+
+    /**
+     * @return concurrent collector cycles during the phase
+     */
+    public long concurrentCycles() {
+        return concurrentCycles;
+    }
+
+    /**
+     * @return JIT compilation time during the phase, or -1 if unknown
+     */
+    public long compileMillis() {
+        return compileMillis;
+    }
+
+    public long peakHeapBytes() {
+        return peakHeap;
+    }
+
+    /**
+     * @return why the phase's timing is unreliable, such as "GC 12%" or
+     *          "JIT 30%, FULL GC", or an empty string if nothing stood out
+     */
+    public String noise() {
+        if (elapsedNanos < 0) {
+            throw new IllegalStateException("Phase not stopped");
+        }
+        double millis = Math.max(elapsedNanos / 1e6, 1e-3);
+        StringBuilder reasons = new StringBuilder();
+        if (pauseMillis > NOISE_SHARE * millis) {
+            reasons.append(String.format(Locale.ROOT, "GC %.0f%%", 100 * pauseMillis / millis));
+        }
+        if (compileMillis > NOISE_SHARE * millis) {
+            reasons.append(reasons.length() > 0 ? ", " : "")
+                    .append(String.format(Locale.ROOT, "JIT %.0f%%", Math.min(100, 100 * compileMillis / millis)));
+        }
+        if (oldCollections > 0) {
+            reasons.append(reasons.length() > 0 ? ", " : "").append("FULL GC");
+        }
+        return reasons.toString();
+    }
+
+    public boolean isNoisy() {
+        return !noise().isEmpty();
+    }
+}
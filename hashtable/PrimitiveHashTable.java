@@ -0,0 +1,152 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * What IntHashTable and LongHashTable share: the values array, sizing,
+ * the sentinel key's separate mapping, and backward-shift removal.
+ *
+ * Keys live in a flat primitive array in the subclass with linear probing
+ * and values in a parallel array here. A slot is free when its key is the
+ * sentinel; a mapping for the sentinel itself is kept in a field. Finding
+ * a key stays in the subclass, so comparing keys never boxes; this class
+ * only moves keys through the slot methods below.
+ *
+ * @param <K> boxed key type
+ * @param <V> value type
+ */
+abstract class PrimitiveHashTable<K, V> implements HashTableADT<K, V> {
+
+    private final double loadFactor;
+    Object[] values;
+    int mask;
+    int threshold;
+    int num;          // entries stored in the arrays
+    private boolean hasEmptyKey;
+    private V emptyKeyValue;
+
+    /**
+     * @param initialCapacity number of entries to hold without resizing
+     * @param loadFactor fraction of slots that may be filled, below 1
+     */
+    PrimitiveHashTable(int initialCapacity, double loadFactor) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Illegal capacity: " + initialCapacity);
+        }
+        if (!(loadFactor > 0 && loadFactor < 1)) {
+            throw new IllegalArgumentException("Illegal load factor: " + loadFactor);
+        }
+        this.loadFactor = loadFactor;
+    }
+
+    /**
+     * Sizes the table for initialCapacity entries; subclass constructors
+     * call it once their sentinel is set.
+     */
+    final void allocateFor(int initialCapacity) {
+        allocate(HashTable.tableSizeFor((int) Math.ceil(Math.max(2, initialCapacity) / loadFactor)));
+    }
+
+    final void allocate(int capacity) {
+        allocateKeys(capacity);
+        values = new Object[capacity];
+        mask = capacity - 1;
+        threshold = (int) Math.min(capacity * loadFactor, capacity - 1);
+    }
+
+    /** Replaces the key array with capacity free slots. */
+    abstract void allocateKeys(int capacity);
+
+    /** @return true if slot holds the sentinel */
+    abstract boolean isFree(int slot);
+
+    /** @return the slot the key in slot hashes to */
+    abstract int homeOf(int slot);
+
+    /** Copies the key in from to to. */
+    abstract void moveKey(int from, int to);
+
+    /** Puts the sentinel in slot. */
+    abstract void freeKey(int slot);
+
+    /** Puts the sentinel in every slot. */
+    abstract void freeKeys();
+
+    final V putEmptyKey(V value) {
+        hasEmptyKey = true;
+        emptyKeyValue = value;
+        return value;
+    }
+
+    final V getEmptyKey(Object key) {
+        if (!hasEmptyKey) {
+            throw new NoSuchElementException("Key not found: " + key);
+        }
+        return emptyKeyValue;
+    }
+
+    final boolean hasEmptyKey() {
+        return hasEmptyKey;
+    }
+
+    final V removeEmptyKey() {
+        V old = emptyKeyValue;
+        hasEmptyKey = false;
+        emptyKeyValue = null;
+        return old;
+    }
+
+    /**
+     * Removes the entry in slot i, pulling later entries of its run back
+     * into the hole unless their home slot lies cyclically after the hole,
+     * so no tombstones are left.
+     *
+     * @return the value that was in slot i
+     */
+    @SuppressWarnings("unchecked")
+    final V removeSlot(int i) {
+        V old = (V) values[i];
+        int hole = i;
+        int j = i;
+        for (;;) {
+            j = (j + 1) & mask;
+            if (isFree(j)) {
+                break;
+            }
+            int home = homeOf(j);
+            if (((j - home) & mask) >= ((j - hole) & mask)) {
+                moveKey(j, hole);
+                values[hole] = values[j];
+                hole = j;
+            }
+        }
+        freeKey(hole);
+        values[hole] = null;
+        num--;
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        freeKeys();
+        Arrays.fill(values, null);
+        num = 0;
+        removeEmptyKey();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public int size() {
+        return hasEmptyKey ? num + 1 : num;
+    }
+
+    /**
+     * @return the number of key slots currently allocated
+     */
+    public int capacity() {
+        return values.length;
+    }
+}
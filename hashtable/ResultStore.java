@@ -0,0 +1,370 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A history of benchmark runs in a local CSV file, one line per sample:
+ *
+ *   run,timestamp,input,structure,operation,metric,trial,value
+ *
+ * where run is the name the run was saved under, input is the key file or
+ * generator it used, and each trial of a PUT, GET or DELETE row adds one
+ * value per Metric. Saving under a name already in the file replaces that
+ * run, so accepting a change is saving the new run as the baseline.
+ *
+ * compare checks a run against a baseline series by series with the
+ * Mann-Whitney U test and a bootstrap interval of the ratio of medians.
+ * Neither assumes normal timings, which a collection or a compilation in
+ * one trial is enough to break. A series only counts as changed when both
+ * agree: p below ALPHA and an interval that excludes a ratio of 1.
+ */
+public class ResultStore {
+
+    /**
+     * What each trial of a PUT, GET or DELETE row records.
+     */
+    public enum Metric {
+        THROUGHPUT("ops/s", true),
+        LATENCY_P50("p50 ns", false),
+        LATENCY_P99("p99 ns", false),
+        ALLOCATION("alloc B/op", false);
+
+        private final String unit;
+        private final boolean higherIsBetter;
+
+        Metric(String unit, boolean higherIsBetter) {
+            this.unit = unit;
+            this.higherIsBetter = higherIsBetter;
+        }
+
+        public String unit() {
+            return unit;
+        }
+
+        public boolean higherIsBetter() {
+            return higherIsBetter;
+        }
+    }
+
+    static final double ALPHA = 0.05;
+    static final double CONFIDENCE = 0.95;
+    static final int RESAMPLES = 2000;
+    private static final String HEADER = "run,timestamp,input,structure,operation,metric,trial,value";
+
+    /**
+     * The samples of one run, by structure, operation and metric, in the
+     * order they were first recorded.
+     */
+    public static final class Samples {
+        private final Map<Series, List<Double>> values = new LinkedHashMap<>();
+        private final Set<String> inputs = new LinkedHashSet<>();
+
+        public void add(String structure, String operation, Metric metric, double value) {
+            Series series = new Series(structure, operation, metric);
+            List<Double> list = values.get(series);
+            if (list == null) {
+                list = new ArrayList<>();
+                values.put(series, list);
+            }
+            list.add(value);
+        }
+
+        public double[] values(Series series) {
+            List<Double> list = values.get(series);
+            double[] array = new double[list == null ? 0 : list.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = list.get(i);
+            }
+            return array;
+        }
+
+        public Set<Series> series() {
+            return values.keySet();
+        }
+
+        /**
+         * @return the most trials any series has
+         */
+        public int trials() {
+            int trials = 0;
+            for (List<Double> list : values.values()) {
+                trials = Math.max(trials, list.size());
+            }
+            return trials;
+        }
+
+        /**
+         * @return the inputs the run used, as stored
+         */
+        public Set<String> inputs() {
+            return inputs;
+        }
+
+        public boolean isEmpty() {
+            return values.isEmpty();
+        }
+    }
+
+    /**
+     * One structure, operation and metric.
+     */
+    public static final class Series {
+        public final String structure;
+        public final String operation;
+        public final Metric metric;
+
+        Series(String structure, String operation, Metric metric) {
+            this.structure = structure;
+            this.operation = operation;
+            this.metric = metric;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Series)) {
+                return false;
+            }
+            Series other = (Series) o;
+            return structure.equals(other.structure) && operation.equals(other.operation)
+                    && metric == other.metric;
+        }
+
+        @Override
+        public int hashCode() {
+            // by name, so the bootstrap seed is the same in every JVM
+            return Objects.hash(structure, operation, metric.name());
+        }
+    }
+
+    /**
+     * How one series of the current run compares with the baseline.
+     */
+    public static final class Comparison {
+        public final Series series;
+        public final int baselineTrials;
+        public final int currentTrials;
+        public final double baselineMedian;
+        public final double currentMedian;
+        /** bootstrap interval of current median / baseline median */
+        public final double ratioLow;
+        public final double ratioHigh;
+        public final double p;
+
+        Comparison(Series series, double[] baseline, double[] current) {
+            this.series = series;
+            this.baselineTrials = baseline.length;
+            this.currentTrials = current.length;
+            this.baselineMedian = Statistics.median(baseline);
+            this.currentMedian = Statistics.median(current);
+            double[] interval = Statistics.bootstrapRatioInterval(baseline, current, CONFIDENCE, RESAMPLES,
+                    series.hashCode());
+            this.ratioLow = interval[0];
+            this.ratioHigh = interval[1];
+            this.p = Statistics.mannWhitneyP(baseline, current);
+        }
+
+        /**
+         * @return false if the trial counts are too small for any
+         *          difference to reach ALPHA
+         */
+        public boolean hasPower() {
+            return Statistics.mannWhitneyMinP(baselineTrials, currentTrials) < ALPHA;
+        }
+
+        public boolean isSignificant() {
+            return p < ALPHA && !Double.isNaN(ratioLow) && (ratioLow > 1 || ratioHigh < 1);
+        }
+
+        /**
+         * @return current median relative to the baseline's, for example
+         *          -0.12 for 12% lower; NaN if the baseline median is 0
+         */
+        public double change() {
+            return baselineMedian == 0 ? (currentMedian == 0 ? 0 : Double.NaN) : currentMedian / baselineMedian - 1;
+        }
+
+        public boolean isRegression() {
+            return isSignificant() && (series.metric.higherIsBetter() ? ratioHigh < 1 : ratioLow > 1);
+        }
+
+        /**
+         * @return "REGRESSION", "IMPROVEMENT", "no change", or "too few
+         *          trials" when no difference could have been detected
+         */
+        public String verdict() {
+            if (isSignificant()) {
+                return isRegression() ? "REGRESSION" : "IMPROVEMENT";
+            }
+            return hasPower() ? "no change" : "too few trials";
+        }
+    }
+
+    private final File file;
+
+    public ResultStore(String path) {
+        this.file = new File(path);
+    }
+
+    /**
+     * @return names of the runs in the file, oldest first
+     */
+    public Set<String> runs() throws IOException {
+        Set<String> runs = new LinkedHashSet<>();
+        for (String[] row : rows()) {
+            runs.add(row[0]);
+        }
+        return runs;
+    }
+
+    /**
+     * @return the samples saved under run, empty if there is no such run
+     */
+    public Samples load(String run) throws IOException {
+        Samples samples = new Samples();
+        for (String[] row : rows()) {
+            if (row[0].equals(run)) {
+                samples.inputs.add(row[2]);
+                samples.add(row[3], row[4], Metric.valueOf(row[5]), Double.parseDouble(row[7]));
+            }
+        }
+        return samples;
+    }
+
+    /**
+     * Writes samples under run, replacing any run of that name, and keeps
+     * every other run as it was.
+     *
+     * @param input the key file or generator the samples came from
+     */
+    public void save(String run, String input, Samples samples) throws IOException {
+        if (run == null || run.isEmpty()) {
+            throw new IllegalArgumentException("Invalid run name: " + run);
+        }
+        List<String[]> kept = new ArrayList<>();
+        for (String[] row : rows()) {
+            if (!row[0].equals(run)) {
+                kept.add(row);
+            }
+        }
+        String timestamp = java.time.Instant.now().toString();
+        File temp = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp");
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(temp))) {
+            out.write(HEADER);
+            out.newLine();
+            for (String[] row : kept) {
+                writeRow(out, row);
+            }
+            for (Series series : samples.series()) {
+                double[] values = samples.values(series);
+                for (int trial = 0; trial < values.length; trial++) {
+                    writeRow(out, new String[] { run, timestamp, input, series.structure, series.operation,
+                            series.metric.name(), Integer.toString(trial + 1),
+                            String.format(Locale.ROOT, "%.6g", values[trial]) });
+                }
+            }
+        }
+        // the old history stays whole until the new one is complete, and
+        // replacing it is a single atomic rename
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Compares every series the two runs share.
+     */
+    public static List<Comparison> compare(Samples baseline, Samples current) {
+        List<Comparison> comparisons = new ArrayList<>();
+        for (Series series : current.series()) {
+            double[] before = baseline.values(series);
+            if (before.length > 0) {
+                comparisons.add(new Comparison(series, before, current.values(series)));
+            }
+        }
+        return comparisons;
+    }
+
+    private List<String[]> rows() throws IOException {
+        List<String[]> rows = new ArrayList<>();
+        if (!file.exists()) {
+            return rows;
+        }
+        try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+            String line = in.readLine();
+            if (line != null && !line.equals(HEADER)) {
+                throw new IOException(file + " is not a result history, expected header " + HEADER);
+            }
+            int number = 1;
+            while ((line = in.readLine()) != null) {
+                number++;
+                if (line.isEmpty()) {
+                    continue;
+                }
+                String[] row = parseRow(line);
+                if (row.length != 8) {
+                    throw new IOException(file + ":" + number + ": expected 8 fields, found " + row.length);
+                }
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    private static void writeRow(BufferedWriter out, String[] row) throws IOException {
+        for (int i = 0; i < row.length; i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            String field = row[i];
+            if (field.indexOf(',') >= 0 || field.indexOf('"') >= 0) {
+                out.write('"' + field.replace("\"", "\"\"") + '"');
+            } else {
+                out.write(field);
+            }
+        }
+        out.newLine();
+    }
+
+    /**
+     * Splits a line written by writeRow, undoing its quoting.
+     */
+    private static String[] parseRow(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields.toArray(new String[0]);
+    }
+}
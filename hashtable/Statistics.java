@@ -0,0 +1,345 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Summary statistics for benchmark samples: mean, standard deviation,
+ * percentiles and Student's t confidence intervals, the same quantities
+ * JMH reports for each benchmark, plus the Mann-Whitney U test and
+ * bootstrap intervals ResultStore uses to tell two runs apart without
+ * assuming their timings are normally distributed.
+ */
+public final class Statistics {
+
+    // largest sample size mannWhitneyP computes exactly; the counts of
+    // orderings, up to C(50, 25), stay below 2^53 and so exact in a double
+    static final int EXACT_LIMIT = 25;
+
+    private Statistics() {
+    }
+
+    public static double mean(double[] samples) {
+        double sum = 0;
+        for (double x : samples) {
+            sum += x;
+        }
+        return samples.length == 0 ? Double.NaN : sum / samples.length;
+    }
+
+    /**
+     * @return sample standard deviation, NaN for fewer than two samples
+     */
+    public static double standardDeviation(double[] samples) {
+        if (samples.length < 2) {
+            return Double.NaN;
+        }
+        double mean = mean(samples);
+        double squares = 0;
+        for (double x : samples) {
+            squares += (x - mean) * (x - mean);
+        }
+        return Math.sqrt(squares / (samples.length - 1));
+    }
+
+    /**
+     * @param p percentile in [0, 100]
+     * @return the percentile by linear interpolation between closest ranks
+     */
+    public static double percentile(double[] samples, double p) {
+        if (samples.length == 0) {
+            return Double.NaN;
+        }
+        double[] sorted = samples.clone();
+        Arrays.sort(sorted);
+        double rank = p / 100 * (sorted.length - 1);
+        int lo = (int) Math.floor(rank);
+        int hi = (int) Math.ceil(rank);
+        return sorted[lo] + (sorted[hi] - sorted[lo]) * (rank - lo);
+    }
+
+    public static double median(double[] samples) {
+        return percentile(samples, 50);
+    }
+
+    /**
+     * Two-sided Mann-Whitney U test of whether one sample tends to be
+     * larger than the other. Exact for samples of up to EXACT_LIMIT each
+     * without ties, otherwise the normal approximation with tie and
+     * continuity corrections.
+     *
+     * @return the p-value, 1 if either sample is empty
+     */
+    public static double mannWhitneyP(double[] a, double[] b) {
+        int n1 = a.length;
+        int n2 = b.length;
+        if (n1 == 0 || n2 == 0) {
+            return 1;
+        }
+        int n = n1 + n2;
+        double[] pooled = new double[n];
+        System.arraycopy(a, 0, pooled, 0, n1);
+        System.arraycopy(b, 0, pooled, n1, n2);
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (x, y) -> Double.compare(pooled[x], pooled[y]));
+        // midranks, and sum(t^3 - t) over groups of t tied values
+        double rankSumA = 0;
+        double ties = 0;
+        for (int i = 0; i < n; ) {
+            int j = i;
+            while (j + 1 < n && pooled[order[j + 1]] == pooled[order[i]]) {
+                j++;
+            }
+            double rank = (i + j) / 2.0 + 1;
+            for (int k = i; k <= j; k++) {
+                if (order[k] < n1) {
+                    rankSumA += rank;
+                }
+            }
+            double t = j - i + 1;
+            ties += t * t * t - t;
+            i = j + 1;
+        }
+        double u = rankSumA - n1 * (n1 + 1) / 2.0;
+        if (ties == 0 && n1 <= EXACT_LIMIT && n2 <= EXACT_LIMIT) {
+            double[] cdf = uDistribution(n1, n2);
+            int k = (int) u;
+            double below = cdf[k];
+            double above = 1 - (k > 0 ? cdf[k - 1] : 0);
+            return Math.min(1, 2 * Math.min(below, above));
+        }
+        double mean = n1 * (double) n2 / 2;
+        double variance = n1 * (double) n2 / 12 * ((n + 1) - ties / ((double) n * (n - 1)));
+        if (variance <= 0) {
+            return 1;
+        }
+        double z = Math.max(0, Math.abs(u - mean) - 0.5) / Math.sqrt(variance);
+        return Math.min(1, 2 * (1 - normalCdf(z)));
+    }
+
+    /**
+     * @return P(U <= u) for u = 0 .. n1 * n2 when there are no ties, from
+     *          the Gaussian binomial coefficient [n1 + n2, n1], whose
+     *          q^u coefficient counts the orderings with U = u
+     */
+    private static double[] uDistribution(int n1, int n2) {
+        int max = n1 * n2;
+        double[] counts = new double[max + 1];
+        counts[0] = 1;
+        // product over i of (1 - q^(n2 + i)) / (1 - q^i)
+        for (int i = 1; i <= n1; i++) {
+            int shift = n2 + i;
+            for (int u = max; u >= shift; u--) {
+                counts[u] -= counts[u - shift];
+            }
+            for (int u = i; u <= max; u++) {
+                counts[u] += counts[u - i];
+            }
+        }
+        double total = 0;
+        for (double c : counts) {
+            total += c;
+        }
+        double[] cdf = new double[max + 1];
+        double running = 0;
+        for (int u = 0; u <= max; u++) {
+            running += counts[u];
+            cdf[u] = running / total;
+        }
+        return cdf;
+    }
+
+    /**
+     * @return the smallest two-sided p-value mannWhitneyP can return for
+     *          samples of these sizes; if it is above the significance
+     *          level, no difference can be detected however large
+     */
+    public static double mannWhitneyMinP(int n1, int n2) {
+        if (n1 == 0 || n2 == 0) {
+            return 1;
+        }
+        // 2 / C(n1 + n2, n1), built up in doubles
+        double orderings = 1;
+        for (int i = 1; i <= Math.min(n1, n2); i++) {
+            orderings = orderings * (Math.max(n1, n2) + i) / i;
+        }
+        return Math.min(1, 2 / orderings);
+    }
+
+    /**
+     * Percentile bootstrap interval of median(current) / median(baseline):
+     * resamples both with replacement and takes the middle confidence
+     * share of the ratios.
+     *
+     * @param confidence for example 0.95
+     * @param seed fixes the resampling, so a comparison can be repeated
+     * @return {low, high}, or NaNs if either sample is empty or a
+     *          resampled baseline median is 0
+     */
+    public static double[] bootstrapRatioInterval(double[] baseline, double[] current, double confidence,
+            int resamples, long seed) {
+        if (baseline.length == 0 || current.length == 0) {
+            return new double[] { Double.NaN, Double.NaN };
+        }
+        Random random = new Random(seed);
+        double[] ratios = new double[resamples];
+        double[] b = new double[baseline.length];
+        double[] c = new double[current.length];
+        for (int r = 0; r < resamples; r++) {
+            for (int i = 0; i < b.length; i++) {
+                b[i] = baseline[random.nextInt(baseline.length)];
+            }
+            for (int i = 0; i < c.length; i++) {
+                c[i] = current[random.nextInt(current.length)];
+            }
+            double denominator = median(b);
+            if (denominator == 0) {
+                // 0 to 0 is no change; anything else from 0 has no ratio
+                if (median(c) != 0) {
+                    return new double[] { Double.NaN, Double.NaN };
+                }
+                ratios[r] = 1;
+            } else {
+                ratios[r] = median(c) / denominator;
+            }
+        }
+        double tail = (1 - confidence) / 2 * 100;
+        return new double[] { percentile(ratios, tail), percentile(ratios, 100 - tail) };
+    }
+
+    /**
+     * @return P(Z <= z) for the standard normal, from the complementary
+     *          error function's Chebyshev fit (error below 1.2e-7)
+     */
+    public static double normalCdf(double z) {
+        double x = Math.abs(z) / Math.sqrt(2);
+        double t = 1 / (1 + 0.5 * x);
+        double erfc = t * Math.exp(-x * x - 1.26551223 + t * (1.00002368 + t * (0.37409196 + t * (0.09678418
+                + t * (-0.18628806 + t * (0.27886807 + t * (-1.13520398 + t * (1.48851587
+                + t * (-0.82215223 + t * 0.17087277)))))))));
+        return z >= 0 ? 1 - erfc / 2 : erfc / 2;
+    }
+
+    /**
+     * Half-width of the two-sided confidence interval of the mean, as JMH
+     * prints after the score.
+     *
+     * @param confidence for example 0.999
+     * @return NaN for fewer than two samples
+     */
+    public static double confidenceError(double[] samples, double confidence) {
+        if (samples.length < 2) {
+            return Double.NaN;
+        }
+        double t = studentTQuantile(1 - (1 - confidence) / 2, samples.length - 1);
+        return t * standardDeviation(samples) / Math.sqrt(samples.length);
+    }
+
+    /**
+     * @return x such that P(T <= x) = p for Student's t with df degrees of
+     *          freedom, found by bisection on the distribution function
+     */
+    public static double studentTQuantile(double p, int df) {
+        if (!(p > 0 && p < 1) || df < 1) {
+            throw new IllegalArgumentException("p=" + p + " df=" + df);
+        }
+        if (p < 0.5) {
+            return -studentTQuantile(1 - p, df);
+        }
+        double lo = 0;
+        double hi = 1;
+        while (studentTCdf(hi, df) < p) {
+            hi *= 2;
+        }
+        for (int i = 0; i < 100; i++) {
+            double mid = (lo + hi) / 2;
+            if (studentTCdf(mid, df) < p) {
+                lo = mid;
+            } else {
+                hi = mid;
+            }
+        }
+        return (lo + hi) / 2;
+    }
+
+    /**
+     * @return P(T <= t) for Student's t with df degrees of freedom
+     */
+    public static double studentTCdf(double t, int df) {
+        double x = df / (df + t * t);
+        double tail = 0.5 * regularizedBeta(x, df / 2.0, 0.5);
+        return t >= 0 ? 1 - tail : tail;
+    }
+
+    /**
+     * @return the regularized incomplete beta function I_x(a, b)
+     */
+    static double regularizedBeta(double x, double a, double b) {
+        if (x <= 0) {
+            return 0;
+        }
+        if (x >= 1) {
+            return 1;
+        }
+        double front = Math.exp(logGamma(a + b) - logGamma(a) - logGamma(b)
+                + a * Math.log(x) + b * Math.log(1 - x));
+        // the continued fraction converges quickly on this side only
+        if (x < (a + 1) / (a + b + 2)) {
+            return front * betaFraction(x, a, b) / a;
+        }
+        return 1 - front * betaFraction(1 - x, b, a) / b;
+    }
+
+    /**
+     * Lentz's method for the continued fraction of the incomplete beta.
+     */
+    private static double betaFraction(double x, double a, double b) {
+        final double tiny = 1e-300;
+        double c = 1;
+        double d = 1 - (a + b) * x / (a + 1);
+        d = 1 / (Math.abs(d) < tiny ? tiny : d);
+        double h = d;
+        for (int m = 1; m <= 300; m++) {
+            int m2 = 2 * m;
+            double aa = m * (b - m) * x / ((a + m2 - 1) * (a + m2));
+            d = 1 + aa * d;
+            d = 1 / (Math.abs(d) < tiny ? tiny : d);
+            c = 1 + aa / c;
+            c = Math.abs(c) < tiny ? tiny : c;
+            h *= d * c;
+            aa = -(a + m) * (a + b + m) * x / ((a + m2) * (a + m2 + 1));
+            d = 1 + aa * d;
+            d = 1 / (Math.abs(d) < tiny ? tiny : d);
+            c = 1 + aa / c;
+            c = Math.abs(c) < tiny ? tiny : c;
+            double delta = d * c;
+            h *= delta;
+            if (Math.abs(delta - 1) < 1e-15) {
+                break;
+            }
+        }
+        return h;
+    }
+
+    /**
+     * Lanczos approximation of ln(Gamma(x)) for x > 0.
+     */
+    static double logGamma(double x) {
+        final double[] coefficients = {
+            676.5203681218851, -1259.1392167224028, 771.32342877765313,
+            -176.61502916214059, 12.507343278686905, -0.13857109526572012,
+            9.9843695780195716e-6, 1.5056327351493116e-7
+        };
+        if (x < 0.5) {
+            return Math.log(Math.PI / Math.abs(Math.sin(Math.PI * x))) - logGamma(1 - x);
+        }
+        x -= 1;
+        double sum = 0.99999999999980993;
+        for (int i = 0; i < coefficients.length; i++) {
+            sum += coefficients[i] / (x + i + 1);
+        }
+        double t = x + coefficients.length - 0.5;
+        return 0.5 * Math.log(2 * Math.PI) + (x + 0.5) * Math.log(t) - t + Math.log(sum);
+    }
+}
@@ -0,0 +1,14 @@
+/**
+ * Adds structures to a StructureRegistry from outside this directory.
+ * Implementations are found with java.util.ServiceLoader: list the class
+ * name in META-INF/services/StructureProvider on the class path and give it
+ * a public no-argument constructor.
+ */
+public interface StructureProvider {
+
+    /**
+     * Registers this provider's structures, for example
+     * registry.register("MYTABLE", MyTable::new, false).
+     */
+    void register(StructureRegistry registry);
+}
@@ -0,0 +1,244 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.ServiceLoader;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Supplier;
+
+/**
+ * The data structures PerformanceAnalysisHash benchmarks, by name, in
+ * report order. Each is registered with a factory that makes a new empty
+ * instance, so every comparison starts from a fresh one, and with whether
+ * it may be shared between threads, which decides if the mixed workload
+ * runs against it. Structures that implement OrderedTableADT also run the
+ * range workload.
+ *
+ * Structures come from three places:
+ *   defaults()           this directory's tables, the JDK maps, and
+ *                        application.BPTree if it is on the class path
+ *   StructureProvider    any found by ServiceLoader, added by defaults()
+ *   register(spec)       a class named on the command line
+ */
+public class StructureRegistry {
+
+    /**
+     * One registered structure.
+     */
+    public static final class Entry {
+        private final String name;
+        private final Supplier<? extends HashTableADT<String, String>> factory;
+        private final boolean threadSafe;
+
+        Entry(String name, Supplier<? extends HashTableADT<String, String>> factory, boolean threadSafe) {
+            this.name = name;
+            this.factory = factory;
+            this.threadSafe = threadSafe;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        /**
+         * @return a new empty instance
+         */
+        public HashTableADT<String, String> create() {
+            return factory.get();
+        }
+
+        public boolean isThreadSafe() {
+            return threadSafe;
+        }
+    }
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+    /**
+     * @return the structures the harness compares unless told otherwise,
+     *          followed by those of every StructureProvider on the class
+     *          path
+     */
+    public static StructureRegistry defaults() {
+        StructureRegistry registry = new StructureRegistry();
+        registry.register("HASHTABLE", HashTable::new, false);
+        registry.register("SWISSTABLE", SwissHashTable::new, false);
+        registry.register("CONCURRENT", ConcurrentHashTable::new, true);
+        registry.register("PERSISTENT", PersistentHashTable::new, true);
+        registry.register("TREE MAP", () -> new NavigableMapAdapter<>(new TreeMap<String, String>()), false);
+        registry.register("CONCURRENTHASHMAP", () -> new MapAdapter<>(new ConcurrentHashMap<String, String>()), true);
+        registry.register("CONCURRENTSKIPLISTMAP",
+                () -> new NavigableMapAdapter<>(new ConcurrentSkipListMap<String, String>()), true);
+        if (BPTreeAdapter.isAvailable()) {
+            registry.register("BPTREE=application.BPTree");
+        }
+        for (StructureProvider provider : ServiceLoader.load(StructureProvider.class)) {
+            provider.register(registry);
+        }
+        return registry;
+    }
+
+    /**
+     * Adds a structure, or replaces the one registered under name.
+     */
+    public void register(String name, Supplier<? extends HashTableADT<String, String>> factory,
+            boolean threadSafe) {
+        if (name == null || name.trim().isEmpty()) {
+            throw new IllegalArgumentException("Invalid structure name: " + name);
+        }
+        if (factory == null) {
+            throw new NullPointerException("Invalid factory");
+        }
+        entries.put(name, new Entry(name, factory, threadSafe));
+    }
+
+    /**
+     * Registers a class by name from a spec "NAME=class[:arg][,threadsafe]",
+     * for example "BPTREE=application.BPTree:32". The class may be
+     *   a HashTableADT   used as it is
+     *   a java.util.Map  wrapped in a MapAdapter, or a NavigableMapAdapter
+     *                    if it is a NavigableMap
+     *   a BPTreeADT      wrapped in a BPTreeAdapter, arg being the
+     *                    branching factor (BPTreeAdapter's default if none)
+     * A HashTableADT or Map is made with its int constructor if arg is
+     * given and its no-argument constructor otherwise. Structures are taken
+     * not to be thread safe unless the spec ends in ",threadsafe".
+     *
+     * @throws IllegalArgumentException if the spec is malformed or the class
+     *          cannot be found, made or adapted
+     */
+    public void register(String spec) {
+        String[] settings = spec.split(",");
+        boolean threadSafe = false;
+        for (int i = 1; i < settings.length; i++) {
+            if (!settings[i].trim().equalsIgnoreCase("threadsafe")) {
+                throw new IllegalArgumentException("Unknown structure setting: " + settings[i]);
+            }
+            threadSafe = true;
+        }
+        String[] parts = settings[0].split("=", 2);
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Expected NAME=class[:arg][,threadsafe]: " + spec);
+        }
+        String name = parts[0].trim();
+        String[] target = parts[1].trim().split(":", 2);
+        String className = target[0];
+        final Integer arg = target.length == 2 ? Integer.valueOf(target[1].trim()) : null;
+        Class<?> type;
+        try {
+            type = Class.forName(className);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException("No such class: " + className, e);
+        }
+        if (isBPTree(type)) {
+            final int branchingFactor = arg != null ? arg : BPTreeAdapter.DEFAULT_BRANCHING_FACTOR;
+            // fail here rather than at the first create
+            new BPTreeAdapter<String, String>(className, branchingFactor);
+            register(name, () -> new BPTreeAdapter<String, String>(className, branchingFactor), threadSafe);
+            return;
+        }
+        if (!HashTableADT.class.isAssignableFrom(type) && !Map.class.isAssignableFrom(type)) {
+            throw new IllegalArgumentException(className + " is not a HashTableADT, Map or BPTreeADT");
+        }
+        final Class<?> cls = type;
+        Supplier<HashTableADT<String, String>> factory = () -> adapt(instantiate(cls, arg));
+        factory.get();
+        register(name, factory, threadSafe);
+    }
+
+    private static boolean isBPTree(Class<?> type) {
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            for (Class<?> i : c.getInterfaces()) {
+                if (i.getName().equals(BPTreeAdapter.ADT_NAME)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static Object instantiate(Class<?> type, Integer arg) {
+        try {
+            if (arg != null) {
+                return type.getConstructor(int.class).newInstance(arg);
+            }
+            return type.getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Cannot create " + type.getName() + ": " + e, e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static HashTableADT<String, String> adapt(Object instance) {
+        if (instance instanceof HashTableADT) {
+            return (HashTableADT<String, String>) instance;
+        }
+        if (instance instanceof NavigableMap) {
+            return new NavigableMapAdapter<>((NavigableMap<String, String>) instance);
+        }
+        return new MapAdapter<>((Map<String, String>) instance);
+    }
+
+    /**
+     * Keeps only the named structures, in the order given.
+     *
+     * @param names comma separated, matched ignoring case
+     * @throws IllegalArgumentException if a name is not registered
+     */
+    public void retain(String names) {
+        Map<String, Entry> kept = new LinkedHashMap<>();
+        for (String name : names.split(",")) {
+            Entry entry = find(name.trim());
+            if (entry == null) {
+                throw new IllegalArgumentException("Unknown structure " + name.trim() + ", expected one of "
+                        + entries.keySet());
+            }
+            kept.put(entry.name(), entry);
+        }
+        entries.clear();
+        entries.putAll(kept);
+    }
+
+    private Entry find(String name) {
+        Entry entry = entries.get(name);
+        if (entry != null) {
+            return entry;
+        }
+        for (Entry e : entries.values()) {
+            if (e.name().toUpperCase(Locale.ROOT).equals(name.toUpperCase(Locale.ROOT))) {
+                return e;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return every structure, in registration order
+     */
+    public List<Entry> entries() {
+        return Collections.unmodifiableList(new ArrayList<>(entries.values()));
+    }
+
+    /**
+     * @return the structures that may be shared between threads
+     */
+    public List<Entry> threadSafe() {
+        List<Entry> safe = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            if (entry.isThreadSafe()) {
+                safe.add(entry);
+            }
+        }
+        return safe;
+    }
+
+    @Override
+    public String toString() {
+        return entries.keySet().toString();
+    }
+}
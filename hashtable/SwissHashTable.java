@@ -0,0 +1,319 @@
+import java.util.NoSuchElementException;
+
+/**
+ * Open-addressing implementation of HashTableADT modelled on SwissTable.
+ *
+ * Keys and values live in parallel arrays, so an entry costs two array
+ * slots instead of a HashNode. Every slot has a control byte: EMPTY,
+ * DELETED (a tombstone left by remove) or the low 7 bits of the key's hash.
+ * Control bytes are packed eight to a long, and a lookup compares all
+ * eight slots of a group at once with SWAR bit tricks before touching any
+ * key, so most probes read a single long and at most one key.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class SwissHashTable<K, V> implements HashTableADT<K, V> {
+
+    static final int GROUP_WIDTH = 8;
+
+    static final int EMPTY = 0x80;
+    static final int DELETED = 0xFE;
+
+    private static final long LSBS = 0x0101010101010101L;
+    private static final long MSBS = 0x8080808080808080L;
+    private static final long ALL_EMPTY = EMPTY * LSBS;
+
+    private long[] ctrl;      // GROUP_WIDTH control bytes per long
+    private Object[] keys;
+    private Object[] values;
+    private int groupMask;    // number of groups - 1, a power of two minus one
+    private int num;          // live entries
+    private int growthLeft;   // EMPTY slots that may still be filled before a rehash
+
+    public SwissHashTable() {
+        this(16);
+    }
+
+    /**
+     * @param initialCapacity number of entries to hold without rehashing
+     */
+    public SwissHashTable(int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("Illegal capacity: " + initialCapacity);
+        }
+        allocate(groupsFor(initialCapacity));
+    }
+
+    private static int groupsFor(int entries) {
+        // keep the table at most 7/8 full
+        long slots = Math.max(GROUP_WIDTH, (long) entries * 8 / 7 + 1);
+        long groups = (slots + GROUP_WIDTH - 1) / GROUP_WIDTH;
+        int n = 1;
+        while (n < groups) {
+            n <<= 1;
+        }
+        return n;
+    }
+
+    private void allocate(int groups) {
+        ctrl = new long[groups];
+        java.util.Arrays.fill(ctrl, ALL_EMPTY);
+        keys = new Object[groups * GROUP_WIDTH];
+        values = new Object[groups * GROUP_WIDTH];
+        groupMask = groups - 1;
+        growthLeft = maxLoad(groups) - num;
+    }
+
+    private static int maxLoad(int groups) {
+        return groups * GROUP_WIDTH / 8 * 7;
+    }
+
+    /**
+     * Multiplicative mix so that both the group index (high bits) and the
+     * 7-bit tag (low bits) depend on the whole hashCode.
+     */
+    private static int hash(Object key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int h1(int hash) {
+        return hash >>> 7;
+    }
+
+    private static int h2(int hash) {
+        return hash & 0x7F;
+    }
+
+    /**
+     * @return a mask with the high bit set in every byte of group equal to
+     *          tag. May report a false positive in a byte just above a true
+     *          match; callers always confirm against the key.
+     */
+    static long matchTag(long group, int tag) {
+        long x = group ^ (LSBS * tag);
+        return (x - LSBS) & ~x & MSBS;
+    }
+
+    /**
+     * EMPTY is the only control byte with bit 7 set and bit 1 clear.
+     */
+    static long matchEmpty(long group) {
+        return group & (~group << 6) & MSBS;
+    }
+
+    /**
+     * EMPTY and DELETED are the only control bytes with bit 7 set and bit 0
+     * clear.
+     */
+    static long matchEmptyOrDeleted(long group) {
+        return group & (~group << 7) & MSBS;
+    }
+
+    private int ctrlAt(int slot) {
+        return (int) (ctrl[slot >>> 3] >>> ((slot & 7) << 3)) & 0xFF;
+    }
+
+    private void setCtrl(int slot, int value) {
+        int shift = (slot & 7) << 3;
+        int g = slot >>> 3;
+        ctrl[g] = (ctrl[g] & ~(0xFFL << shift)) | ((long) value << shift);
+    }
+
+    /**
+     * @return the slot holding key, or -1 if it is absent
+     */
+    private int find(Object key, int hash) {
+        int tag = h2(hash);
+        int g = h1(hash) & groupMask;
+        for (int step = 1; ; step++) {
+            long group = ctrl[g];
+            long matches = matchTag(group, tag);
+            while (matches != 0) {
+                int slot = (g << 3) + (Long.numberOfTrailingZeros(matches) >>> 3);
+                Object k = keys[slot];
+                if (k != null && (k == key || k.equals(key))) {
+                    return slot;
+                }
+                matches &= matches - 1;
+            }
+            if (matchEmpty(group) != 0 || step > groupMask) {
+                return -1;
+            }
+            // triangular probing visits every group of a power-of-two table
+            g = (g + step) & groupMask;
+        }
+    }
+
+    /**
+     * @return the first EMPTY or DELETED slot on the probe sequence of hash
+     */
+    private int findInsertSlot(int hash) {
+        int g = h1(hash) & groupMask;
+        for (int step = 1; ; step++) {
+            long free = matchEmptyOrDeleted(ctrl[g]);
+            if (free != 0) {
+                return (g << 3) + (Long.numberOfTrailingZeros(free) >>> 3);
+            }
+            g = (g + step) & groupMask;
+        }
+    }
+
+    /**
+     * Rebuilds the table, dropping every tombstone. The table doubles when
+     * live entries fill more than half of the maximum load, otherwise it is
+     * rebuilt at the same size.
+     */
+    private void rehash() {
+        int groups = groupMask + 1;
+        if (num > maxLoad(groups) / 2) {
+            groups <<= 1;
+        }
+        long[] oldCtrl = ctrl;
+        Object[] oldKeys = keys;
+        Object[] oldValues = values;
+        int live = num;
+        num = 0;
+        allocate(groups);
+        for (int g = 0; g < oldCtrl.length; g++) {
+            // full slots are the ones with the high bit clear
+            long full = ~oldCtrl[g] & MSBS;
+            while (full != 0) {
+                int slot = (g << 3) + (Long.numberOfTrailingZeros(full) >>> 3);
+                insertAt(findInsertSlot(hash(oldKeys[slot])), oldKeys[slot],
+                        oldValues[slot], hash(oldKeys[slot]));
+                full &= full - 1;
+            }
+        }
+        assert num == live;
+    }
+
+    private void insertAt(int slot, Object key, Object value, int hash) {
+        if (ctrlAt(slot) == EMPTY) {
+            growthLeft--;
+        }
+        setCtrl(slot, h2(hash));
+        keys[slot] = key;
+        values[slot] = value;
+        num++;
+    }
+
+    @Override
+    public V put(K key, V value) throws NullPointerException {
+        if (key == null) {
+            throw new NullPointerException("Invalid Key");
+        }
+        int hash = hash(key);
+        int tag = h2(hash);
+        int g = h1(hash) & groupMask;
+        int insertSlot = -1;
+        // one probe pass both looks for the key and remembers the first
+        // free slot, which is where findInsertSlot would land as well
+        for (int step = 1; ; step++) {
+            long group = ctrl[g];
+            long matches = matchTag(group, tag);
+            while (matches != 0) {
+                int slot = (g << 3) + (Long.numberOfTrailingZeros(matches) >>> 3);
+                Object k = keys[slot];
+                if (k != null && (k == key || k.equals(key))) {
+                    values[slot] = value;
+                    return value;
+                }
+                matches &= matches - 1;
+            }
+            if (insertSlot < 0) {
+                long free = matchEmptyOrDeleted(group);
+                if (free != 0) {
+                    insertSlot = (g << 3) + (Long.numberOfTrailingZeros(free) >>> 3);
+                }
+            }
+            if (matchEmpty(group) != 0 || step > groupMask) {
+                break;
+            }
+            g = (g + step) & groupMask;
+        }
+        if (growthLeft == 0 && ctrlAt(insertSlot) == EMPTY) {
+            rehash();
+            insertSlot = findInsertSlot(hash);
+        }
+        insertAt(insertSlot, key, value, hash);
+        return value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(K key) throws NoSuchElementException {
+        if (key == null) {
+            throw new NullPointerException("Invalid Key");
+        }
+        int slot = find(key, hash(key));
+        if (slot < 0) {
+            throw new NoSuchElementException("Key not found: " + key);
+        }
+        return (V) values[slot];
+    }
+
+    /**
+     * @param key key to look for
+     * @return true if the key has a mapping in this table
+     */
+    public boolean containsKey(K key) {
+        if (key == null) {
+            throw new NullPointerException("Invalid Key");
+        }
+        return find(key, hash(key)) >= 0;
+    }
+
+    @Override
+    public void clear() {
+        java.util.Arrays.fill(ctrl, ALL_EMPTY);
+        java.util.Arrays.fill(keys, null);
+        java.util.Arrays.fill(values, null);
+        num = 0;
+        growthLeft = maxLoad(groupMask + 1);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return num == 0;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(K key) throws NullPointerException {
+        if (key == null) {
+            throw new NullPointerException("Invalid Key");
+        }
+        int slot = find(key, hash(key));
+        if (slot < 0) {
+            return null;
+        }
+        V old = (V) values[slot];
+        keys[slot] = null;
+        values[slot] = null;
+        // A group that still has an EMPTY slot never filled up, so no probe
+        // sequence continues past it and the slot can go back to EMPTY.
+        // Otherwise a tombstone keeps later groups reachable.
+        if (matchEmpty(ctrl[slot >>> 3]) != 0) {
+            setCtrl(slot, EMPTY);
+            growthLeft++;
+        } else {
+            setCtrl(slot, DELETED);
+        }
+        num--;
+        return old;
+    }
+
+    @Override
+    public int size() {
+        return num;
+    }
+
+    /**
+     * @return the number of slots currently allocated
+     */
+    public int capacity() {
+        return keys.length;
+    }
+}
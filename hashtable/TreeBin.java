@@ -0,0 +1,304 @@
+/**
+ * A HashTable bucket that holds its nodes in an AVL tree instead of a
+ * chain. HashTable switches a bucket to a TreeBin once the chain reaches
+ * TREEIFY_THRESHOLD and back to a chain when it drops to
+ * UNTREEIFY_THRESHOLD, so a bucket full of colliding keys costs O(log n)
+ * per lookup instead of O(n).
+ *
+ * Tree order is by hash, then by class name, then by compareTo when both
+ * keys are Comparable instances of the same class. Keys that tie on all of
+ * that (equal hash, same non-Comparable class) share one tree node and are
+ * chained through HashNode.next inside it.
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+class TreeBin<K, V> extends HashTable.HashNode<K, V> {
+
+    /**
+     * A tree position: every HashNode in group compares equal under the
+     * tree order. The first node of the group supplies hash and key.
+     */
+    static final class TreeNode<K, V> {
+        HashTable.HashNode<K, V> group;
+        TreeNode<K, V> left;
+        TreeNode<K, V> right;
+        int height = 1;
+
+        TreeNode(HashTable.HashNode<K, V> group) {
+            this.group = group;
+        }
+    }
+
+    private TreeNode<K, V> root;
+    private int count;
+
+    TreeBin() {
+        super(0, null, null, null);
+    }
+
+    /**
+     * Builds a bin out of a chain linked through next.
+     */
+    static <K, V> TreeBin<K, V> of(HashTable.HashNode<K, V> chain) {
+        TreeBin<K, V> bin = new TreeBin<>();
+        while (chain != null) {
+            HashTable.HashNode<K, V> next = chain.next;
+            bin.insert(chain);
+            chain = next;
+        }
+        return bin;
+    }
+
+    int count() {
+        return count;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    static int compare(int h1, Object k1, int h2, Object k2) {
+        if (h1 != h2) {
+            return h1 < h2 ? -1 : 1;
+        }
+        Class<?> c1 = k1.getClass();
+        Class<?> c2 = k2.getClass();
+        if (c1 != c2) {
+            return c1.getName().compareTo(c2.getName());
+        }
+        if (k1 instanceof Comparable) {
+            return ((Comparable) k1).compareTo(k2);
+        }
+        return 0;
+    }
+
+    HashTable.HashNode<K, V> find(int hash, K key) {
+        TreeNode<K, V> t = root;
+        while (t != null) {
+            int c = compare(hash, key, t.group.hash, t.group.k);
+            if (c < 0) {
+                t = t.left;
+            } else if (c > 0) {
+                t = t.right;
+            } else {
+                for (HashTable.HashNode<K, V> e = t.group; e != null; e = e.next) {
+                    if (e.hash == hash && (e.k == key || e.k.equals(key))) {
+                        return e;
+                    }
+                }
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return tree nodes and group members find(hash, key) compares
+     */
+    int probes(int hash, K key) {
+        int probes = 0;
+        TreeNode<K, V> t = root;
+        while (t != null) {
+            probes++;
+            int c = compare(hash, key, t.group.hash, t.group.k);
+            if (c < 0) {
+                t = t.left;
+            } else if (c > 0) {
+                t = t.right;
+            } else {
+                // the tree node already counted the group's first member
+                for (HashTable.HashNode<K, V> e = t.group; e.next != null; e = e.next) {
+                    if (e.hash == hash && (e.k == key || e.k.equals(key))) {
+                        break;
+                    }
+                    probes++;
+                }
+                break;
+            }
+        }
+        return probes;
+    }
+
+    /**
+     * Adds node, which must not already be in the bin.
+     */
+    void insert(HashTable.HashNode<K, V> node) {
+        node.next = null;
+        root = insert(root, node);
+        count++;
+    }
+
+    private TreeNode<K, V> insert(TreeNode<K, V> t, HashTable.HashNode<K, V> node) {
+        if (t == null) {
+            return new TreeNode<>(node);
+        }
+        int c = compare(node.hash, node.k, t.group.hash, t.group.k);
+        if (c < 0) {
+            t.left = insert(t.left, node);
+        } else if (c > 0) {
+            t.right = insert(t.right, node);
+        } else {
+            node.next = t.group;
+            t.group = node;
+            return t;
+        }
+        return balance(t);
+    }
+
+    /**
+     * @return the removed node, or null if key is not in the bin
+     */
+    HashTable.HashNode<K, V> remove(int hash, K key) {
+        HashTable.HashNode<K, V>[] removed = newHolder();
+        root = remove(root, hash, key, removed);
+        if (removed[0] != null) {
+            count--;
+        }
+        return removed[0];
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <K, V> HashTable.HashNode<K, V>[] newHolder() {
+        return (HashTable.HashNode<K, V>[]) new HashTable.HashNode[1];
+    }
+
+    private TreeNode<K, V> remove(TreeNode<K, V> t, int hash, K key,
+            HashTable.HashNode<K, V>[] removed) {
+        if (t == null) {
+            return null;
+        }
+        int c = compare(hash, key, t.group.hash, t.group.k);
+        if (c < 0) {
+            t.left = remove(t.left, hash, key, removed);
+        } else if (c > 0) {
+            t.right = remove(t.right, hash, key, removed);
+        } else {
+            HashTable.HashNode<K, V> prev = null;
+            for (HashTable.HashNode<K, V> e = t.group; e != null; prev = e, e = e.next) {
+                if (e.hash == hash && (e.k == key || e.k.equals(key))) {
+                    if (prev == null) {
+                        t.group = e.next;
+                    } else {
+                        prev.next = e.next;
+                    }
+                    e.next = null;
+                    removed[0] = e;
+                    break;
+                }
+            }
+            if (t.group != null) {
+                return t;
+            }
+            if (t.left == null) {
+                return t.right;
+            }
+            if (t.right == null) {
+                return t.left;
+            }
+            // replace the emptied node with its in-order successor
+            TreeNode<K, V> successor = t.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            t.group = successor.group;
+            t.right = removeMin(t.right);
+        }
+        return balance(t);
+    }
+
+    private TreeNode<K, V> removeMin(TreeNode<K, V> t) {
+        if (t.left == null) {
+            return t.right;
+        }
+        t.left = removeMin(t.left);
+        return balance(t);
+    }
+
+    /**
+     * Empties the bin into a chain linked through next, in tree order.
+     */
+    HashTable.HashNode<K, V> toList() {
+        HashTable.HashNode<K, V>[] tail = newHolder();
+        HashTable.HashNode<K, V> head = appendInOrder(root, null, tail);
+        root = null;
+        count = 0;
+        return head;
+    }
+
+    private HashTable.HashNode<K, V> appendInOrder(TreeNode<K, V> t, HashTable.HashNode<K, V> head,
+            HashTable.HashNode<K, V>[] tail) {
+        if (t == null) {
+            return head;
+        }
+        head = appendInOrder(t.left, head, tail);
+        HashTable.HashNode<K, V> e = t.group;
+        while (e != null) {
+            HashTable.HashNode<K, V> next = e.next;
+            e.next = null;
+            if (tail[0] == null) {
+                head = e;
+            } else {
+                tail[0].next = e;
+            }
+            tail[0] = e;
+            e = next;
+        }
+        return appendInOrder(t.right, head, tail);
+    }
+
+    /**
+     * Passes every node to action in tree order without changing the bin.
+     */
+    void forEachNode(java.util.function.Consumer<HashTable.HashNode<K, V>> action) {
+        forEachNode(root, action);
+    }
+
+    private static <K, V> void forEachNode(TreeNode<K, V> t,
+            java.util.function.Consumer<HashTable.HashNode<K, V>> action) {
+        while (t != null) {
+            forEachNode(t.left, action);
+            for (HashTable.HashNode<K, V> e = t.group; e != null; e = e.next) {
+                action.accept(e);
+            }
+            t = t.right;
+        }
+    }
+
+    private static int height(TreeNode<?, ?> t) {
+        return t == null ? 0 : t.height;
+    }
+
+    private static <K, V> TreeNode<K, V> balance(TreeNode<K, V> t) {
+        int diff = height(t.left) - height(t.right);
+        if (diff > 1) {
+            if (height(t.left.left) < height(t.left.right)) {
+                t.left = rotateLeft(t.left);
+            }
+            t = rotateRight(t);
+        } else if (diff < -1) {
+            if (height(t.right.right) < height(t.right.left)) {
+                t.right = rotateRight(t.right);
+            }
+            t = rotateLeft(t);
+        } else {
+            t.height = Math.max(height(t.left), height(t.right)) + 1;
+        }
+        return t;
+    }
+
+    private static <K, V> TreeNode<K, V> rotateRight(TreeNode<K, V> t) {
+        TreeNode<K, V> l = t.left;
+        t.left = l.right;
+        l.right = t;
+        t.height = Math.max(height(t.left), height(t.right)) + 1;
+        l.height = Math.max(height(l.left), height(l.right)) + 1;
+        return l;
+    }
+
+    private static <K, V> TreeNode<K, V> rotateLeft(TreeNode<K, V> t) {
+        TreeNode<K, V> r = t.right;
+        t.right = r.left;
+        r.left = t;
+        t.height = Math.max(height(t.left), height(t.right)) + 1;
+        r.height = Math.max(height(r.left), height(r.right)) + 1;
+        return r;
+    }
+}
@@ -0,0 +1,83 @@
+import java.util.Random;
+
+/**
+ * Draws ranks 0 .. items-1 from a Zipf distribution, where rank r is
+ * requested in proportion to 1 / (r + 1)^theta. This is the generator from
+ * Gray et al., "Quickly Generating Billion-Record Synthetic Databases",
+ * also used by YCSB: the zeta constant is summed once up front and every
+ * draw after that is O(1) and allocation-free.
+ *
+ * With theta near 1 a few ranks take most of the requests, which is the
+ * access pattern a cache is meant for.
+ */
+public class ZipfGenerator {
+
+    /** skew YCSB uses for its zipfian workloads */
+    public static final double DEFAULT_THETA = 0.99;
+
+    private final int items;
+    private final double theta;
+    private final double alpha;
+    private final double zetaN;
+    private final double eta;
+    private final double halfPowTheta;
+    private final Random random;
+
+    public ZipfGenerator(int items, long seed) {
+        this(items, DEFAULT_THETA, seed);
+    }
+
+    /**
+     * @param items number of distinct ranks
+     * @param theta skew, in (0, 1); larger is more skewed
+     * @param seed seed for the underlying Random, so runs repeat
+     */
+    public ZipfGenerator(int items, double theta, long seed) {
+        if (items < 1) {
+            throw new IllegalArgumentException("Illegal item count: " + items);
+        }
+        if (!(theta > 0 && theta < 1)) {
+            throw new IllegalArgumentException("Illegal theta: " + theta);
+        }
+        this.items = items;
+        this.theta = theta;
+        this.random = new Random(seed);
+        this.alpha = 1 / (1 - theta);
+        this.zetaN = zeta(items, theta);
+        double zeta2 = zeta(2, theta);
+        this.eta = (1 - Math.pow(2.0 / items, 1 - theta)) / (1 - zeta2 / zetaN);
+        this.halfPowTheta = 1 + Math.pow(0.5, theta);
+    }
+
+    private static double zeta(int n, double theta) {
+        double sum = 0;
+        for (int i = 1; i <= n; i++) {
+            sum += 1 / Math.pow(i, theta);
+        }
+        return sum;
+    }
+
+    /**
+     * @return the next rank, 0 being the most popular
+     */
+    public int next() {
+        double u = random.nextDouble();
+        double uz = u * zetaN;
+        if (uz < 1) {
+            return 0;
+        }
+        if (uz < halfPowTheta) {
+            return Math.min(1, items - 1);
+        }
+        int rank = (int) (items * Math.pow(eta * u - eta + 1, alpha));
+        return Math.min(rank, items - 1);
+    }
+
+    public int items() {
+        return items;
+    }
+
+    public double theta() {
+        return theta;
+    }
+}